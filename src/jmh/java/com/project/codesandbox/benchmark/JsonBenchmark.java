@@ -0,0 +1,100 @@
+package com.project.codesandbox.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.codesandbox.model.ExecuteCodeRequest;
+import com.project.codesandbox.model.ExecuteCodeResponse;
+import com.project.codesandbox.model.JudgeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求和响应的 JSON 序列化，与 Spring MVC 使用相同的 Jackson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    /**
+     * 用例数
+     */
+    @Param({"10", "1000", "10000"})
+    private int cases;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ExecuteCodeRequest request;
+
+    private ExecuteCodeResponse response;
+
+    private byte[] requestJson;
+
+    private byte[] responseJson;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> inputList = new ArrayList<>(cases);
+        List<String> outputList = new ArrayList<>(cases);
+        List<Integer> caseStatusList = new ArrayList<>(cases);
+        for (int i = 0; i < cases; i++) {
+            inputList.add(i + " " + (i * 31));
+            outputList.add(String.valueOf(i + i * 31));
+            caseStatusList.add(2);
+        }
+        request = ExecuteCodeRequest.builder()
+                .code("public class Main { public static void main(String[] args) { } }")
+                .language("java")
+                .inputList(inputList)
+                .build();
+        JudgeInfo judgeInfo = new JudgeInfo();
+        judgeInfo.setMessage("成功");
+        judgeInfo.setTime(120L);
+        judgeInfo.setMemory(20480L);
+        response = ExecuteCodeResponse.builder()
+                .outputList(outputList)
+                .message("成功")
+                .status(2)
+                .judgeInfo(judgeInfo)
+                .caseStatusList(caseStatusList)
+                .build();
+        requestJson = objectMapper.writeValueAsBytes(request);
+        responseJson = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ExecuteCodeRequest readRequest() throws IOException {
+        return objectMapper.readValue(requestJson, ExecuteCodeRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws IOException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public ExecuteCodeResponse readResponse() throws IOException {
+        return objectMapper.readValue(responseJson, ExecuteCodeResponse.class);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,38 @@
+package com.project.codesandbox.benchmark;
+
+import com.project.codesandbox.enums.LanguageEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次请求都会按语言名查找枚举
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LanguageEnumBenchmark {
+
+    /**
+     * 第一个、最后一个以及不存在的语言
+     */
+    @Param({"java", "go", "rust"})
+    private String language;
+
+    @Benchmark
+    public LanguageEnum getEnumByValue() {
+        return LanguageEnum.getEnumByValue(language);
+    }
+}
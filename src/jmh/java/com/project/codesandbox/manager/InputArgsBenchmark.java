@@ -0,0 +1,56 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.LanguageEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 传参方式下用例输入拆分并追加到运行命令
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputArgsBenchmark {
+
+    /**
+     * 每个用例的参数个数
+     */
+    @Param({"2", "64", "1024"})
+    private int args;
+
+    private String input;
+
+    private String[] runCmd;
+
+    @Setup
+    public void setup() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < args; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(i * 7919);
+        }
+        input = text.toString();
+        runCmd = LanguageEnum.JAVA.getRunCmd();
+    }
+
+    @Benchmark
+    public String[] appendInputArgs() {
+        return DockerSandboxArgs.appendInputArgs(runCmd, input);
+    }
+}
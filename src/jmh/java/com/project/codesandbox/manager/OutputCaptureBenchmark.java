@@ -0,0 +1,126 @@
+package com.project.codesandbox.manager;
+
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import com.project.codesandbox.enums.CheckModeEnum;
+import com.project.codesandbox.model.ExecuteResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 程序输出的收集：回调中的帧收集、流式比对、评测代理帧解码以及 readStream 按行拼接
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputCaptureBenchmark {
+
+    /**
+     * 输出行数，每行约 16 字节
+     */
+    @Param({"100", "10000"})
+    private int lines;
+
+    /**
+     * 每个 Docker 帧的大小
+     */
+    @Param({"512", "8192"})
+    private int frameSize;
+
+    private byte[] output;
+
+    private String expected;
+
+    private List<Frame> frames;
+
+    private List<byte[]> agentChunks;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(i).append(' ').append(i * 31L).append('\n');
+        }
+        expected = text.toString();
+        output = expected.getBytes(StandardCharsets.UTF_8);
+        frames = new ArrayList<>();
+        for (int offset = 0; offset < output.length; offset += frameSize) {
+            byte[] payload = new byte[Math.min(frameSize, output.length - offset)];
+            System.arraycopy(output, offset, payload, 0, payload.length);
+            frames.add(new Frame(StreamType.STDOUT, payload));
+        }
+
+        // 评测代理一个用例的输出：元信息、标准输出、错误输出三帧
+        ByteArrayOutputStream agentOutput = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(agentOutput);
+        byte[] meta = "{\"status\": \"ok\", \"exitCode\": 0, \"time\": 12, \"memory\": 2048}".getBytes(StandardCharsets.UTF_8);
+        out.writeInt(meta.length);
+        out.write(meta);
+        out.writeInt(output.length);
+        out.write(output);
+        out.writeInt(0);
+        out.flush();
+        byte[] encoded = agentOutput.toByteArray();
+        agentChunks = new ArrayList<>();
+        for (int offset = 0; offset < encoded.length; offset += frameSize) {
+            byte[] chunk = new byte[Math.min(frameSize, encoded.length - offset)];
+            System.arraycopy(encoded, offset, chunk, 0, chunk.length);
+            agentChunks.add(chunk);
+        }
+    }
+
+    @Benchmark
+    public String collectFrames() {
+        BoundedOutputBuffer stdout = new BoundedOutputBuffer(Integer.MAX_VALUE);
+        for (Frame frame : frames) {
+            stdout.write(frame.getPayload());
+        }
+        return stdout.toString(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public boolean compareFrames() {
+        OutputComparator comparator = new OutputComparator(CheckModeEnum.IGNORE_WHITESPACE, expected, 0);
+        for (Frame frame : frames) {
+            comparator.write(frame.getPayload());
+        }
+        return comparator.finish();
+    }
+
+    @Benchmark
+    public int decodeAgentFrames() throws IOException {
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(Long.MAX_VALUE);
+        int decoded = 0;
+        for (byte[] chunk : agentChunks) {
+            List<ExecuteResult> results = decoder.feed(chunk);
+            decoded += results.size();
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public String readStream() throws IOException {
+        return DockerSandboxInteract.readStream(new ByteArrayInputStream(output));
+    }
+}
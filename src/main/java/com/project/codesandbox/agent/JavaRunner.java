@@ -0,0 +1,465 @@
+package com.project.codesandbox.agent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FilePermission;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ReflectPermission;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.LinkPermission;
+import java.security.Permission;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 容器内常驻的 Java 运行器，与评测代理使用相同的输入输出帧格式，一个 JVM 依次运行全部用例
+ * 每个用例用新的类加载器加载提交的类，丢弃加载器即清空静态状态；标准输入输出按用例重定向，
+ * 时间为用例启动的全部线程的 CPU 时间之和，内存为用例期间各堆内存池峰值相对开始时占用的增量
+ * 只依赖 JDK，按 Java 8 编译后复制进容器，不能引用项目中的其他类
+ *
+ * 用法：JavaRunner [选项] -- 主类名
+ * 选项与 judge_agent.py 相同：--time-limit --max-stdout --max-stderr --args --merge-stderr --newline --fail-fast，
+ * 另有 --frame-fd 指定写协议帧的描述符（由启动脚本复制出标准输出），缺省写标准输出
+ */
+public class JavaRunner {
+
+    private static final long POLL_MILLIS = 10;
+
+    private static long timeLimit = 3000;
+
+    private static int maxStdout = 1 << 20;
+
+    private static int maxStderr = 64 << 10;
+
+    private static boolean args;
+
+    private static boolean mergeStderr;
+
+    private static boolean newline;
+
+    private static boolean failFast;
+
+    private static int frameFd = -1;
+
+    /**
+     * 当前用例的线程组，只拦截该组内线程调用的 System.exit
+     */
+    private static volatile ThreadGroup caseGroup;
+
+    public static void main(String[] argv) throws Exception {
+        int split = Arrays.asList(argv).indexOf("--");
+        if (split < 0 || split + 1 >= argv.length) {
+            System.err.println("usage: JavaRunner [options] -- MainClass");
+            System.exit(2);
+        }
+        for (int i = 0; i < split; i++) {
+            switch (argv[i]) {
+                case "--time-limit":
+                    timeLimit = Long.parseLong(argv[++i]);
+                    break;
+                case "--max-stdout":
+                    maxStdout = Integer.parseInt(argv[++i]);
+                    break;
+                case "--max-stderr":
+                    maxStderr = Integer.parseInt(argv[++i]);
+                    break;
+                case "--args":
+                    args = true;
+                    break;
+                case "--merge-stderr":
+                    mergeStderr = true;
+                    break;
+                case "--newline":
+                    newline = true;
+                    break;
+                case "--fail-fast":
+                    failFast = true;
+                    break;
+                case "--frame-fd":
+                    frameFd = Integer.parseInt(argv[++i]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        String mainClass = argv[split + 1];
+
+        DataInputStream in = new DataInputStream(new FileInputStream(FileDescriptor.in));
+        // 协议描述符在安装安全管理器之前打开，之后用例代码无权再打开或写入描述符
+        DataOutputStream out = new DataOutputStream(frameFd < 0
+                ? new FileOutputStream(FileDescriptor.out)
+                : new FileOutputStream("/proc/self/fd/" + frameFd));
+        int count = in.readInt();
+        List<byte[]> inputs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            inputs.add(data);
+        }
+        installExitGuard();
+
+        URL[] classPath = {new File(".").getAbsoluteFile().toURI().toURL()};
+        for (byte[] data : inputs) {
+            CaseResult result = runCase(classPath, mainClass, data);
+            writeFrame(out, ("{\"status\":\"" + result.status + "\",\"exitCode\":" + result.exitCode
+                    + ",\"time\":" + result.time + ",\"memory\":" + result.memory + "}").getBytes(StandardCharsets.UTF_8));
+            writeFrame(out, result.stdout.toByteArray());
+            writeFrame(out, mergeStderr ? new byte[0] : result.stderr.toByteArray());
+            out.flush();
+            if (result.abandoned) {
+                // 用户线程无法安全停止，结束 JVM，后续用例不再运行
+                Runtime.getRuntime().halt(0);
+            }
+            if (failFast && (!"ok".equals(result.status) || result.exitCode != 0)) {
+                break;
+            }
+        }
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static CaseResult runCase(URL[] classPath, String mainClass, byte[] data) throws InterruptedException {
+        CaseResult result = new CaseResult();
+        result.stdout = new LimitedOutputStream(maxStdout);
+        result.stderr = mergeStderr ? result.stdout : new LimitedOutputStream(maxStderr);
+        String[] mainArgs = new String[0];
+        byte[] stdin = data;
+        if (args) {
+            String text = new String(data, StandardCharsets.UTF_8);
+            if (!text.trim().isEmpty()) {
+                List<String> parts = new ArrayList<>(Arrays.asList(text.split(" ", -1)));
+                while (!parts.isEmpty() && parts.get(parts.size() - 1).isEmpty()) {
+                    parts.remove(parts.size() - 1);
+                }
+                mainArgs = parts.toArray(new String[0]);
+            }
+            stdin = new byte[0];
+        } else if (newline) {
+            stdin = Arrays.copyOf(data, data.length + 1);
+            stdin[data.length] = '\n';
+        }
+
+        // 不强制 GC，以重置峰值时各堆内存池的占用为基线，峰值减去基线即本用例新增的内存
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        List<Long> baselines = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+                baselines.add(pool.getUsage().getUsed());
+            }
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Map<Thread, Long> cpuByThread = new ConcurrentHashMap<>();
+
+        InputStream systemIn = System.in;
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        PrintStream caseOut = new PrintStream(result.stdout, false);
+        PrintStream caseErr = mergeStderr ? caseOut : new PrintStream(result.stderr, false);
+        ThreadGroup group = new ThreadGroup("case");
+        URLClassLoader loader = new URLClassLoader(classPath, JavaRunner.class.getClassLoader().getParent());
+        String[] finalArgs = mainArgs;
+        Thread thread = new Thread(group, () -> {
+            try {
+                Method main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+                main.invoke(null, (Object) finalArgs);
+            } catch (InvocationTargetException e) {
+                handleThrowable(result, e.getCause());
+            } catch (Throwable e) {
+                handleThrowable(result, e);
+            } finally {
+                cpuByThread.put(Thread.currentThread(), threadBean.getCurrentThreadCpuTime());
+            }
+        }, "main");
+        thread.setContextClassLoader(loader);
+
+        System.setIn(new ByteArrayInputStream(stdin));
+        System.setOut(caseOut);
+        System.setErr(caseErr);
+        caseGroup = group;
+        long deadline = System.currentTimeMillis() + timeLimit;
+        try {
+            thread.start();
+            // 与 java 启动器一致，main 返回后等待用例中其他非守护线程结束
+            while (hasLiveThreads(group)) {
+                if (result.stdout.exceeded || result.stderr.exceeded) {
+                    result.status = "ole";
+                    result.abandoned = true;
+                    break;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    result.status = "timeout";
+                    result.exitCode = 137;
+                    result.time = timeLimit;
+                    result.abandoned = true;
+                    break;
+                }
+                thread.join(POLL_MILLIS);
+                sampleCpu(group, threadBean, cpuByThread);
+            }
+        } finally {
+            caseGroup = null;
+            caseOut.flush();
+            caseErr.flush();
+            System.setIn(systemIn);
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+        if (!result.abandoned && (result.stdout.exceeded || result.stderr.exceeded)) {
+            result.status = "ole";
+        }
+        if (!"timeout".equals(result.status)) {
+            sampleCpu(group, threadBean, cpuByThread);
+            long cpu = 0;
+            for (long threadCpu : cpuByThread.values()) {
+                cpu += threadCpu;
+            }
+            result.time = cpu / 1000000;
+        }
+        long peak = 0;
+        for (int i = 0; i < heapPools.size(); i++) {
+            peak += Math.max(0, heapPools.get(i).getPeakUsage().getUsed() - baselines.get(i));
+        }
+        result.memory = peak / 1024;
+        try {
+            loader.close();
+        } catch (Exception ignored) {
+            // 类加载器关闭失败不影响结果
+        }
+        return result;
+    }
+
+    private static void handleThrowable(CaseResult result, Throwable e) {
+        if (e instanceof ExitException) {
+            result.exitCode = ((ExitException) e).status;
+            return;
+        }
+        if (e instanceof OutOfMemoryError) {
+            result.status = "mle";
+            result.exitCode = 1;
+            return;
+        }
+        // 与 java 启动器对未捕获异常的处理一致
+        System.err.print("Exception in thread \"main\" ");
+        e.printStackTrace();
+        result.exitCode = 1;
+    }
+
+    /**
+     * 记录用例线程组中各线程当前的 CPU 时间，已结束的线程保留最后一次采样的值，
+     * 在两次采样之间启动并结束的线程不计入
+     */
+    private static void sampleCpu(ThreadGroup group, ThreadMXBean threadBean, Map<Thread, Long> cpuByThread) {
+        Thread[] threads = new Thread[group.activeCount() + 8];
+        int count = group.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            long cpu = threadBean.getThreadCpuTime(threads[i].getId());
+            if (cpu > 0) {
+                cpuByThread.merge(threads[i], cpu, Math::max);
+            }
+        }
+    }
+
+    private static boolean hasLiveThreads(ThreadGroup group) {
+        Thread[] threads = new Thread[group.activeCount() + 8];
+        int count = group.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive() && !threads[i].isDaemon()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 拦截用例线程调用的 System.exit，并禁止用例代码伪造协议帧，JDK 18 及以上需要以 -Djava.security.manager=allow 启动
+     * （由服务端的启动脚本按 JDK 版本添加），无法安装时用例调用 System.exit 会结束运行器，服务端改为逐个用例运行
+     * 安全管理器和 Policy 自 JDK 17 起标记为待移除，JDK 18 起未指定 allow 时 setSecurityManager 抛出 UnsupportedOperationException，
+     * 在已移除安全管理器的 JDK 上同样抛出该异常，此时按无法安装处理
+     */
+    @SuppressWarnings("removal")
+    private static void installExitGuard() {
+        try {
+            Policy.setPolicy(new RunnerPolicy(Policy.getPolicy(), JavaRunner.class.getProtectionDomain()));
+            System.setSecurityManager(new ExitGuard());
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // 当前 JDK 不允许安装
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws java.io.IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    static class CaseResult {
+
+        private String status = "ok";
+
+        private int exitCode;
+
+        private long time;
+
+        private long memory;
+
+        private boolean abandoned;
+
+        private LimitedOutputStream stdout;
+
+        private LimitedOutputStream stderr;
+    }
+
+    /**
+     * 超过上限后丢弃写入并标记，由运行器结束用例
+     */
+    static class LimitedOutputStream extends OutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final int limit;
+
+        private volatile boolean exceeded;
+
+        LimitedOutputStream(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            int room = limit - buffer.size();
+            if (length > room) {
+                buffer.write(bytes, offset, Math.max(0, room));
+                exceeded = true;
+                return;
+            }
+            buffer.write(bytes, offset, length);
+        }
+
+        private synchronized byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    static class ExitException extends SecurityException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ExitException(int status) {
+            super("System.exit(" + status + ")");
+            this.status = status;
+        }
+    }
+
+    /**
+     * 运行器自身的类拥有全部权限，其余代码（包括用例类）沿用默认策略
+     */
+    @SuppressWarnings("removal")
+    static class RunnerPolicy extends Policy {
+
+        private final Policy base;
+
+        private final ProtectionDomain runnerDomain;
+
+        RunnerPolicy(Policy base, ProtectionDomain runnerDomain) {
+            this.base = base;
+            this.runnerDomain = runnerDomain;
+        }
+
+        @Override
+        public boolean implies(ProtectionDomain domain, Permission permission) {
+            return domain == runnerDomain || base.implies(domain, permission);
+        }
+    }
+
+    /**
+     * 仅在 {@link #installExitGuard()} 安装成功时生效
+     */
+    @SuppressWarnings("removal")
+    static class ExitGuard extends SecurityManager {
+
+        @Override
+        public void checkExit(int status) {
+            ThreadGroup group = caseGroup;
+            if (group != null && group.parentOf(Thread.currentThread().getThreadGroup())) {
+                throw new ExitException(status);
+            }
+        }
+
+        /**
+         * 其余权限不做限制，只有能触及协议描述符或运行器自身状态的权限按访问控制上下文检查：
+         * 用例类由 URLClassLoader 按默认策略授权，不具备这些权限，JDK 在特权块中的调用（如 lambda 引导）不受影响
+         */
+        @Override
+        public void checkPermission(Permission perm) {
+            if (isGuarded(perm)) {
+                super.checkPermission(perm);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            if (isGuarded(perm)) {
+                super.checkPermission(perm, context);
+            }
+        }
+
+        /**
+         * 写描述符、写 /proc 与 /dev 下的文件（/proc/self/fd、/dev/stdout 等）、创建链接、启动进程、加载本地库、
+         * 绕过访问检查反射运行器的静态字段、替换安全管理器
+         */
+        private static boolean isGuarded(Permission perm) {
+            String name = perm.getName();
+            if (perm instanceof RuntimePermission) {
+                return "writeFileDescriptor".equals(name) || "setSecurityManager".equals(name)
+                        || name.startsWith("loadLibrary.");
+            }
+            if (perm instanceof ReflectPermission) {
+                return "suppressAccessChecks".equals(name);
+            }
+            if (perm instanceof LinkPermission) {
+                return true;
+            }
+            if (perm instanceof FilePermission) {
+                String actions = perm.getActions();
+                if (actions.contains("execute")) {
+                    return true;
+                }
+                if (!actions.contains("write")) {
+                    return false;
+                }
+                String path = "<<ALL FILES>>".equals(name) ? "/" : new File(name).getAbsoluteFile().toPath().normalize().toString();
+                return "/".equals(path) || "/proc".equals(path) || path.startsWith("/proc/")
+                        || "/dev".equals(path) || path.startsWith("/dev/");
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.project.codesandbox.agent;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 宿主机 Java 编译进程，由服务以限定堆大小的独立 JVM 启动，一个进程依次处理编译请求
+ * 编译超时或内存耗尽时服务直接结束进程，不影响服务自身的 JVM；源码和类文件都只在内存中
+ * 只依赖 JDK，不能引用项目中的其他类
+ *
+ * 用法：JavacWorker 类文件总大小上限 javac选项...
+ * 请求：4 字节大端文件数，之后每个文件为 路径帧 + 内容帧，每帧为 4 字节大端长度 + 内容
+ * 响应：4 字节状态，0 为成功，之后为 4 字节类文件数和每个类文件的 路径帧 + 内容帧；1 为编译错误，之后为一帧错误信息
+ */
+public class JavacWorker {
+
+    public static final int STATUS_SUCCESS = 0;
+
+    public static final int STATUS_ERROR = 1;
+
+    private static final String WARMUP_SOURCE = "public class Main { public static void main(String[] args) { System.out.println(args.length); } }";
+
+    public static void main(String[] args) throws IOException {
+        long maxClassBytes = Long.parseLong(args[0]);
+        List<String> options = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("JavacWorker: no system Java compiler");
+            System.exit(3);
+        }
+        // 先编译一次，加载编译器的类并触发 JIT
+        compile(compiler, options, maxClassBytes,
+                Collections.singletonMap("Main.java", WARMUP_SOURCE.getBytes(StandardCharsets.UTF_8)));
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        while (true) {
+            int count;
+            try {
+                count = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            Map<String, byte[]> sources = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String path = new String(readFrame(in), StandardCharsets.UTF_8);
+                sources.put(path, readFrame(in));
+            }
+            Outcome outcome = compile(compiler, options, maxClassBytes, sources);
+            if (outcome.classFiles != null) {
+                out.writeInt(STATUS_SUCCESS);
+                out.writeInt(outcome.classFiles.size());
+                for (Map.Entry<String, byte[]> classFile : outcome.classFiles.entrySet()) {
+                    writeFrame(out, classFile.getKey().getBytes(StandardCharsets.UTF_8));
+                    writeFrame(out, classFile.getValue());
+                }
+            } else {
+                out.writeInt(STATUS_ERROR);
+                writeFrame(out, outcome.diagnostics.getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+        }
+    }
+
+    private static Outcome compile(JavaCompiler compiler, List<String> options, long maxClassBytes, Map<String, byte[]> sources) throws IOException {
+        List<JavaFileObject> compilationUnits = new ArrayList<>();
+        for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+            compilationUnits.add(new SourceFile(source.getKey(), new String(source.getValue(), StandardCharsets.UTF_8)));
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        ClassOutput classOutput = new ClassOutput(maxClassBytes);
+        boolean success;
+        try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+             MemoryFileManager fileManager = new MemoryFileManager(standardFileManager, classOutput)) {
+            success = Boolean.TRUE.equals(compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits).call());
+        } catch (RuntimeException e) {
+            if (classOutput.exceeded) {
+                return new Outcome(null, "编译产物超过上限");
+            }
+            throw e;
+        }
+        if (classOutput.exceeded) {
+            return new Outcome(null, "编译产物超过上限");
+        }
+        if (!success) {
+            return new Outcome(null, formatDiagnostics(diagnostics.getDiagnostics()));
+        }
+        return new Outcome(classOutput.toClassFiles(), null);
+    }
+
+    /**
+     * 按 javac 命令行的格式输出错误：文件:行号: error: 信息，之后是源码行、列位置和信息的其余行
+     */
+    private static String formatDiagnostics(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        StringBuilder output = new StringBuilder();
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            errors++;
+            JavaFileObject source = diagnostic.getSource();
+            String fileName = source instanceof SourceFile ? ((SourceFile) source).path : String.valueOf(source);
+            // 多行信息的第一行之后先输出源码行，与 javac 一致
+            String[] message = diagnostic.getMessage(Locale.ROOT).split("\n", 2);
+            output.append(fileName).append(':').append(diagnostic.getLineNumber()).append(": error: ")
+                    .append(message[0]).append('\n');
+            if (source instanceof SourceFile && diagnostic.getLineNumber() > 0) {
+                String[] lines = ((SourceFile) source).code.split("\n", -1);
+                if (diagnostic.getLineNumber() <= lines.length) {
+                    output.append(lines[(int) diagnostic.getLineNumber() - 1]).append('\n');
+                    if (diagnostic.getColumnNumber() > 0) {
+                        char[] indent = new char[(int) diagnostic.getColumnNumber() - 1];
+                        Arrays.fill(indent, ' ');
+                        output.append(indent).append("^\n");
+                    }
+                }
+            }
+            if (message.length > 1) {
+                output.append(message[1]).append('\n');
+            }
+        }
+        output.append(errors).append(errors == 1 ? " error" : " errors").append('\n');
+        return output.toString();
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * 编译结果，成功时 classFiles 为 相对路径 -> 类文件，失败时 diagnostics 为错误信息
+     */
+    static class Outcome {
+
+        private final Map<String, byte[]> classFiles;
+
+        private final String diagnostics;
+
+        Outcome(Map<String, byte[]> classFiles, String diagnostics) {
+            this.classFiles = classFiles;
+            this.diagnostics = diagnostics;
+        }
+    }
+
+    /**
+     * 内存中的源码文件
+     */
+    static class SourceFile extends SimpleJavaFileObject {
+
+        private final String path;
+
+        private final String code;
+
+        SourceFile(String path, String code) {
+            super(URI.create("string:///" + path), Kind.SOURCE);
+            this.path = path;
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * 写入内存的类文件
+     */
+    static class ClassFile extends SimpleJavaFileObject {
+
+        private final ClassOutput classOutput;
+
+        private final String path;
+
+        ClassFile(ClassOutput classOutput, String path, Kind kind) {
+            super(URI.create("mem:///" + path), kind);
+            this.classOutput = classOutput;
+            this.path = path;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return classOutput.open(path);
+        }
+    }
+
+    /**
+     * 一次编译输出的全部类文件，总大小超过上限时拒绝写入
+     */
+    static class ClassOutput {
+
+        private final long maxBytes;
+
+        private final Map<String, ByteArrayOutputStream> classFiles = new LinkedHashMap<>();
+
+        private long totalBytes;
+
+        private boolean exceeded;
+
+        ClassOutput(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        OutputStream open(String path) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            classFiles.put(path, buffer);
+            return new LimitedStream(this, buffer);
+        }
+
+        Map<String, byte[]> toClassFiles() {
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            for (Map.Entry<String, ByteArrayOutputStream> classFile : classFiles.entrySet()) {
+                files.put(classFile.getKey(), classFile.getValue().toByteArray());
+            }
+            return files;
+        }
+    }
+
+    /**
+     * 按 ClassOutput 的总量限制写入单个类文件
+     */
+    static class LimitedStream extends OutputStream {
+
+        private final ClassOutput classOutput;
+
+        private final ByteArrayOutputStream buffer;
+
+        LimitedStream(ClassOutput classOutput, ByteArrayOutputStream buffer) {
+            this.classOutput = classOutput;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            classOutput.totalBytes += length;
+            if (classOutput.totalBytes > classOutput.maxBytes) {
+                classOutput.exceeded = true;
+                throw new IOException("编译产物超过上限");
+            }
+            buffer.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * 类文件写入内存，其余查找交给标准文件管理器
+     */
+    static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private final ClassOutput classOutput;
+
+        MemoryFileManager(JavaFileManager fileManager, ClassOutput classOutput) {
+            super(fileManager);
+            this.classOutput = classOutput;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new ClassFile(classOutput, className.replace('.', '/') + kind.extension, kind);
+        }
+    }
+}
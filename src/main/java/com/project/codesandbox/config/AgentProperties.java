@@ -0,0 +1,55 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 容器内评测代理配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.agent")
+public class AgentProperties {
+
+    /**
+     * 是否通过评测代理一次运行全部用例，关闭或代理不可用时逐个用例 exec
+     */
+    private boolean enabled = true;
+
+    /**
+     * 代理启动命令，镜像中需要有 python3
+     */
+    private String interpreter = "python3";
+
+    /**
+     * 除用例本身的时间上限外，为代理整体预留的时间，单位毫秒
+     */
+    private long graceMillis = 5000;
+
+    /**
+     * Java 提交是否由常驻运行器在一个 JVM 中运行全部用例，关闭时每个用例单独启动 JVM
+     */
+    private boolean javaRunner = true;
+
+    /**
+     * 运行器的 JVM 参数，镜像为 JDK 12 及以上时启动脚本会自动加上 -Djava.security.manager=allow
+     */
+    private List<String> javaRunnerOptions = new ArrayList<>(Collections.singletonList("-Dfile.encoding=UTF-8"));
+
+    /**
+     * Python 提交是否由代理作为 zygote 预先导入标准库并编译脚本，每个用例 fork 子进程运行，关闭时每个用例单独启动解释器
+     */
+    private boolean pythonZygote = true;
+
+    /**
+     * 代理运行用例进程所用的 uid:gid，与代理不同的用户无法打开代理的 /proc/&lt;pid&gt;/fd/1 伪造输出帧；
+     * 需要容器以 root 执行代理，否则代理拒绝运行并退化为逐个用例 exec，为空时不切换用户；
+     * 本机进程引擎不使用该配置，整个沙箱已由 nsjail 以非特权用户运行
+     */
+    private String runAs = "65534:65534";
+}
@@ -0,0 +1,35 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 工具链构建缓存配置
+ * 每个守护进程上为每种语言准备一个 Docker 卷，由服务自己的预热容器写入，沙箱容器只读挂载
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.build-cache")
+public class BuildCacheProperties {
+
+    /**
+     * 是否挂载并预热构建缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 卷名前缀，实际卷名为 前缀-语言
+     */
+    private String volumePrefix = "codesandbox-build-cache";
+
+    /**
+     * 预热容器的超时时间，单位毫秒
+     */
+    private long warmTimeoutMillis = 180000;
+
+    /**
+     * 检查未预热的守护进程的间隔，单位毫秒
+     */
+    private long checkIntervalMillis = 60000;
+}
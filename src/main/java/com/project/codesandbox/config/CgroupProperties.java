@@ -0,0 +1,30 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * cgroup v2 资源统计配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.cgroup")
+public class CgroupProperties {
+
+    /**
+     * 宿主机 cgroup v2 挂载点，沙箱服务运行在宿主机上时直接读取容器的 cgroup 文件
+     */
+    private String hostRoot = "/sys/fs/cgroup";
+
+    /**
+     * 是否优先读取宿主机上的 cgroup 文件，关闭或找不到容器目录时改为在容器内读取
+     */
+    private boolean hostAccess = true;
+
+    /**
+     * 本机守护进程的容器读不到宿主机 cgroup 文件时，是否在容器内执行 cat 读取；每个用例多两次 exec，且内存峰值无法重置，只统计 CPU 时间和 OOM
+     * 远程守护进程的容器无法读取宿主机文件，总是在容器内读取，不受该配置影响
+     */
+    private boolean execFallback = false;
+}
@@ -0,0 +1,29 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 输出比对配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.check")
+public class CheckProperties {
+
+    /**
+     * float 方式未指定误差时使用的默认误差
+     */
+    private double defaultFloatTolerance = 1e-6;
+
+    /**
+     * 检查器编译的时间上限，单位毫秒
+     */
+    private long checkerCompileTimeoutMillis = 30000;
+
+    /**
+     * 检查器单次运行的时间上限，单位毫秒
+     */
+    private long checkerTimeoutMillis = 10000;
+}
@@ -0,0 +1,31 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 编译缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.compile-cache")
+public class CompileCacheProperties {
+
+    /**
+     * 是否启用编译缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存目录，默认为 user.dir/compileCache
+     */
+    private String dir = System.getProperty("user.dir") + File.separator + "compileCache";
+
+    /**
+     * 缓存占用磁盘的上限，单位字节，超过后按 LRU 淘汰
+     */
+    private long maxBytes = 256L * 1024 * 1024;
+}
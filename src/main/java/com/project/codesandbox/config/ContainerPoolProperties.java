@@ -0,0 +1,49 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 容器池配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.pool")
+public class ContainerPoolProperties {
+
+    /**
+     * 是否启用容器池，关闭后每次请求都新建并销毁容器
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每种语言保持的最少空闲容器数
+     */
+    private int minIdle = 1;
+
+    /**
+     * 每种语言的容器上限（空闲 + 借出）
+     */
+    private int maxSize = 4;
+
+    /**
+     * 单个容器最多被借用的次数，超过后回收
+     */
+    private int maxUses = 50;
+
+    /**
+     * 借用容器的最长等待时间，单位毫秒
+     */
+    private long leaseTimeoutMillis = 5000;
+
+    /**
+     * 重置容器 /box 目录的超时时间，单位毫秒
+     */
+    private long resetTimeoutMillis = 3000;
+
+    /**
+     * 后台补充、巡检容器的间隔，单位毫秒
+     */
+    private long maintainIntervalMillis = 10000;
+}
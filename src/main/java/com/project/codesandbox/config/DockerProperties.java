@@ -0,0 +1,75 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Docker 客户端配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.docker")
+public class DockerProperties {
+
+    /**
+     * Docker 守护进程地址列表（tcp:// 或 unix://），容器按负载分布到各守护进程；为空时使用 DOCKER_HOST 环境变量或默认的 unix socket
+     */
+    private List<String> hosts = new ArrayList<>();
+
+    /**
+     * 守护进程健康检查间隔，单位毫秒
+     */
+    private long healthCheckIntervalMillis = 5000;
+
+    /**
+     * 连接池最大连接数，attach 的 exec 会占用连接直到结束
+     */
+    private int maxConnections = 200;
+
+    /**
+     * 建立连接的超时时间，单位毫秒
+     */
+    private long connectTimeoutMillis = 3000;
+
+    /**
+     * 等待响应数据的超时时间，单位毫秒，需要大于编译等长时间无输出的 exec
+     * 调用超过期限后中断无法打断阻塞的 socket 读取，执行调用的线程要到该超时才会结束
+     */
+    private long responseTimeoutMillis = 60000;
+
+    /**
+     * 单次调用的默认期限，单位毫秒
+     */
+    private long callTimeoutMillis = 10000;
+
+    /**
+     * 每个守护进程同时进行的调用数上限，超过期限仍未结束的调用继续占用，守护进程无响应时执行调用的线程数不会无限增长
+     */
+    private int maxConcurrentCalls = 64;
+
+    /**
+     * 按操作覆盖调用期限，例如 copyIn: 30000
+     */
+    private Map<String, Long> callTimeouts = new HashMap<>();
+
+    /**
+     * 交互式执行时编译的期限，单位毫秒
+     */
+    private long compileTimeoutMillis = 30000;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private int breakerFailureThreshold = 5;
+
+    /**
+     * 熔断持续时间，之后放行一次试探调用，单位毫秒
+     */
+    private long breakerOpenMillis = 10000;
+}
@@ -0,0 +1,27 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 沙箱引擎选择配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.engine")
+public class EngineProperties {
+
+    /**
+     * 未单独配置的语言使用的引擎：docker 或 native
+     */
+    private String defaultEngine = "docker";
+
+    /**
+     * 语言 -> 引擎，例如 cpp: native
+     */
+    private Map<String, String> languages = new HashMap<>();
+}
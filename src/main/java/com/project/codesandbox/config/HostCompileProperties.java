@@ -0,0 +1,55 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 宿主机 Java 编译配置，在独立的编译进程中通过 javax.tools 编译，只把类文件复制进沙箱
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.host-compile")
+public class HostCompileProperties {
+
+    /**
+     * 是否在宿主机编译 Java，关闭、服务运行在 JRE 上或超出下列限制时在沙箱内 javac 编译
+     */
+    private boolean enabled = true;
+
+    /**
+     * 编译进程数
+     */
+    private int threads = 2;
+
+    /**
+     * 等待编译的任务数上限，排满后在沙箱内编译
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * 单次编译超时时间，单位毫秒，从编译进程收到请求开始计算，超时后结束该进程并在沙箱内编译
+     */
+    private long timeoutMillis = 10000;
+
+    /**
+     * 目标版本，传给 --release；为空时按沙箱镜像预热时 javac -version 的版本确定，确定之前在沙箱内编译，
+     * Java 只使用本机进程引擎时不会预热镜像，需要显式配置
+     */
+    private String release;
+
+    /**
+     * 源码总大小上限，单位字节，超过时在沙箱内编译
+     */
+    private long maxSourceBytes = 1024 * 1024;
+
+    /**
+     * 类文件总大小上限，单位字节，超过时按编译错误返回
+     */
+    private long maxClassBytes = 16 * 1024 * 1024;
+
+    /**
+     * 编译进程的最大堆内存，传给 -Xmx，内存耗尽时进程退出并在沙箱内编译
+     */
+    private String workerMaxHeap = "256m";
+}
@@ -0,0 +1,48 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 异步任务配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.job")
+public class JobProperties {
+
+    /**
+     * 执行任务的线程数
+     */
+    private int workers = 4;
+
+    /**
+     * 等待队列容量，队列已满时拒绝提交
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * 已完成任务的保留时间，单位毫秒，超时后无法再查询
+     */
+    private long retentionMillis = 10 * 60 * 1000;
+
+    /**
+     * 最多保留的已完成任务数，超过时最早完成的任务提前移除
+     */
+    private int maxRetainedJobs = 1000;
+
+    /**
+     * 回调请求超时时间，单位毫秒
+     */
+    private int callbackTimeoutMillis = 3000;
+
+    /**
+     * 允许回调的主机名，支持 *.example.com 匹配子域名；为空时不允许回调，提交带回调地址的任务直接返回错误
+     * 只按主机名匹配，不解析 IP，避免提交方借回调访问内网服务
+     */
+    private List<String> callbackAllowedHosts = new ArrayList<>();
+}
@@ -0,0 +1,54 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 自适应并发限制配置（AIMD）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.limiter")
+public class LimiterProperties {
+
+    /**
+     * 是否启用并发限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 8;
+
+    private int minLimit = 1;
+
+    private int maxLimit = 64;
+
+    /**
+     * 单次执行的服务开销（除运行用例外的借用容器、复制代码、编译等阶段耗时之和）超过该值视为过载，
+     * 并发上限按 backoffRatio 收缩，单位毫秒
+     */
+    private long latencyThresholdMillis = 10000;
+
+    /**
+     * 过载时的收缩比例
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * 宿主机可用内存（MemAvailable，服务有 cgroup 内存上限时取较小者）占比低于该值时视为过载
+     */
+    private double minFreeMemoryRatio = 0.1;
+
+    /**
+     * 宿主机 CPU 使用率高于该值时视为过载
+     */
+    private double maxCpuLoad = 0.95;
+
+    /**
+     * 异步任务获取执行许可的最长等待时间，单位毫秒
+     */
+    private long jobWaitMillis = 30000;
+}
@@ -0,0 +1,96 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本机进程引擎配置，通过 nsjail 提供命名空间、cgroup v2、rlimit 和 seccomp 隔离
+ * C/C++ 和 Python 内置 seccomp 白名单，其余语言需要配置策略文件，或显式开启内置的黑名单策略；
+ * 隔离强度弱于 Docker 引擎，因此本机引擎默认不启用，需要在 codesandbox.engine 中按语言显式选择
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.native")
+public class NativeSandboxProperties {
+
+    /**
+     * nsjail 可执行文件路径
+     */
+    private String nsjailPath = "/usr/bin/nsjail";
+
+    /**
+     * 每次运行的源码和编译产物所在目录，运行结束后删除；挂载为沙箱内的 /box-src，复制到 tmpfs 的 /box 后使用，
+     * 只有编译成功后产物会从 /box 复制回来
+     * 不放在宿主机共享的 /dev/shm 下，避免提交占满其他进程也在使用的共享内存
+     */
+    private String workRoot = System.getProperty("java.io.tmpdir") + File.separator + "codesandbox-native";
+
+    /**
+     * 每次编译和运行单独挂载为沙箱内 /box 和 /tmp 的 tmpfs 各自的大小上限，单位字节，沙箱内只有这两个目录可写
+     */
+    private long tmpfsSizeBytes = 64L * 1024 * 1024;
+
+    /**
+     * 只读挂载进沙箱的宿主机目录，提供编译器和运行时
+     */
+    private List<String> readOnlyMounts = Arrays.asList("/bin", "/lib", "/lib64", "/usr", "/etc/alternatives");
+
+    /**
+     * 沙箱内运行用户和组
+     */
+    private int uid = 65534;
+
+    private int gid = 65534;
+
+    /**
+     * 是否使用 cgroup v2 限制内存和进程数，需要将 cgroupRoot 委派给服务用户
+     */
+    private boolean cgroupEnabled = true;
+
+    /**
+     * nsjail 在该 cgroup v2 目录下为每次运行创建子 cgroup
+     */
+    private String cgroupRoot = "/sys/fs/cgroup/codesandbox";
+
+    /**
+     * 内存上限，单位字节
+     */
+    private long memoryLimitBytes = 128L * 1024 * 1024;
+
+    /**
+     * 进程数上限
+     */
+    private int pidsLimit = 64;
+
+    /**
+     * 单个文件大小上限，单位 MB
+     */
+    private int maxFileSizeMb = 64;
+
+    /**
+     * seccomp 策略文件（kafel 格式），用于没有内置白名单、也没有在 seccompPolicyFiles 中配置的语言
+     */
+    private String seccompPolicyFile;
+
+    /**
+     * 语言 -> seccomp 策略文件，优先于内置白名单和 seccompPolicyFile
+     */
+    private Map<String, String> seccompPolicyFiles = new HashMap<>();
+
+    /**
+     * 没有任何白名单策略的语言是否使用内置的黑名单策略，关闭时这些语言在本机引擎中直接返回错误
+     */
+    private boolean blacklistPolicyEnabled = false;
+
+    /**
+     * 编译超时时间，单位毫秒
+     */
+    private long compileTimeoutMillis = 30000;
+}
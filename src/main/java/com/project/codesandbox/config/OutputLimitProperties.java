@@ -0,0 +1,46 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 程序输出捕获限制配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.output")
+public class OutputLimitProperties {
+
+    /**
+     * 单次执行标准输出在内存中保留的上限，单位字节
+     */
+    private int maxStdoutBytes = 1024 * 1024;
+
+    /**
+     * 单次执行错误输出在内存中保留的上限，单位字节
+     */
+    private int maxStderrBytes = 64 * 1024;
+
+    /**
+     * 超出内存上限的输出是否写入临时文件，而不是直接判定输出超限
+     */
+    private boolean spillEnabled = false;
+
+    /**
+     * 写入临时文件的输出上限，超过后判定输出超限，单位字节
+     */
+    private long spillMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 临时文件目录
+     */
+    private String spillDir = System.getProperty("java.io.tmpdir") + File.separator + "codesandbox-output";
+
+    /**
+     * 临时文件保留时间，单位毫秒
+     */
+    private long spillRetentionMillis = 60 * 60 * 1000;
+}
@@ -0,0 +1,34 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 多用例并行执行配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.parallel")
+public class ParallelProperties {
+
+    /**
+     * 是否启用并行执行
+     */
+    private boolean enabled = false;
+
+    /**
+     * 单次提交最多同时使用的容器数（每个容器有各自的 CPU 和内存限制）
+     */
+    private int parallelism = 4;
+
+    /**
+     * 用例数不少于该值时才并行执行
+     */
+    private int minCases = 4;
+
+    /**
+     * 并行执行的线程池大小，所有请求共享
+     */
+    private int threads = 16;
+}
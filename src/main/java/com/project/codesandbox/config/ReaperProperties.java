@@ -0,0 +1,52 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 容器回收配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.reaper")
+public class ReaperProperties {
+
+    /**
+     * 写入容器标签的归属标识，孤儿扫描只回收带有该标识的容器
+     * 为空时使用 ownerIdFile 中保存的标识，文件不存在时生成 主机名-随机后缀 并写入，多个实例共用 Docker 时不会互相删除容器
+     */
+    private String ownerId = "";
+
+    /**
+     * 保存自动生成的归属标识的文件，重启后沿用同一标识以回收上次运行遗留的容器；同一主机上的多个实例需使用不同的工作目录或文件
+     */
+    private String ownerIdFile = System.getProperty("user.dir") + File.separator + "reaperOwnerId";
+
+    /**
+     * 回收线程数
+     */
+    private int threads = 2;
+
+    /**
+     * 每个回收线程一批最多删除的容器数
+     */
+    private int batchSize = 16;
+
+    /**
+     * 扫描孤儿容器的间隔，单位毫秒
+     */
+    private long sweepIntervalMillis = 60000;
+
+    /**
+     * 创建时间超过该值且未被跟踪的容器才视为孤儿，避免误删正在创建的容器，单位毫秒
+     */
+    private long orphanGraceMillis = 60000;
+
+    /**
+     * 服务关闭时等待回收队列清空的最长时间，单位毫秒
+     */
+    private long shutdownTimeoutMillis = 10000;
+}
@@ -0,0 +1,53 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 沙箱镜像配置
+ * 每种语言可以使用只包含自身工具链的镜像，未单独配置的语言使用默认镜像
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.image")
+public class SandboxImageProperties {
+
+    /**
+     * 未单独配置的语言使用的镜像
+     */
+    private String defaultImage = "codesandbox1:latest";
+
+    /**
+     * 语言 -> 镜像，例如 java: codesandbox-java:latest
+     */
+    private Map<String, String> languages = new HashMap<>();
+
+    /**
+     * 守护进程上没有镜像时是否自动拉取
+     */
+    private boolean pull = true;
+
+    /**
+     * 拉取单个镜像的超时时间，单位毫秒
+     */
+    private long pullTimeoutMillis = 600000;
+
+    /**
+     * 预热容器的超时时间，单位毫秒
+     */
+    private long warmupTimeoutMillis = 60000;
+
+    /**
+     * 是否在全部镜像就绪并预热完成后才报告就绪（readiness）
+     */
+    private boolean readinessGate = true;
+
+    /**
+     * 检查未就绪的守护进程的间隔，单位毫秒
+     */
+    private long checkIntervalMillis = 30000;
+}
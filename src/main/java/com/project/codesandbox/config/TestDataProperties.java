@@ -0,0 +1,26 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 测试数据存储配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.test-data")
+public class TestDataProperties {
+
+    /**
+     * 存储目录，默认为 user.dir/testData
+     */
+    private String dir = System.getProperty("user.dir") + File.separator + "testData";
+
+    /**
+     * 保持映射的热点数据集总大小上限，单位字节，超过后按 LRU 淘汰
+     */
+    private long cacheMaxBytes = 256L * 1024 * 1024;
+}
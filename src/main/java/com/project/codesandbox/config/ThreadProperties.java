@@ -0,0 +1,19 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 线程配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.threads")
+public class ThreadProperties {
+
+    /**
+     * 运行在 Java 21 及以上时，请求处理和阻塞等待沙箱的线程使用虚拟线程，低版本 JDK 上不生效
+     */
+    private boolean virtual = true;
+}
@@ -0,0 +1,39 @@
+package com.project.codesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * TypeScript 转译服务配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "codesandbox.typescript")
+public class TypeScriptProperties {
+
+    /**
+     * 是否在服务端转译 TypeScript，关闭或转译服务不可用时按原样交给沙箱运行
+     */
+    private boolean enabled = true;
+
+    /**
+     * node 可执行文件路径
+     */
+    private String nodePath = "node";
+
+    /**
+     * typescript 或 esbuild 所在的 node_modules 目录，作为 NODE_PATH 传给转译服务，为空时使用 node 的默认查找路径
+     */
+    private String nodeModulesPath;
+
+    /**
+     * 单个文件的转译超时时间，单位毫秒，超时后重启转译服务
+     */
+    private long timeoutMillis = 10000;
+
+    /**
+     * 按源码哈希缓存的转译结果数上限
+     */
+    private int cacheMaxEntries = 1024;
+}
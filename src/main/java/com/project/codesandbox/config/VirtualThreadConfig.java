@@ -0,0 +1,22 @@
+package com.project.codesandbox.config;
+
+import com.project.codesandbox.manager.SandboxThreads;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 使用虚拟线程时 Tomcat 每个请求一个虚拟线程，不再使用 server.tomcat.threads.max 大小的线程池
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(SandboxThreads sandboxThreads) {
+        return protocolHandler -> {
+            if (sandboxThreads.isVirtual()) {
+                protocolHandler.setExecutor(sandboxThreads.newPerTaskExecutor("http-virtual-"));
+            }
+        };
+    }
+}
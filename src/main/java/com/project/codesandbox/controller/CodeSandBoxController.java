@@ -1,14 +1,19 @@
 package com.project.codesandbox.controller;
 
-import cn.hutool.core.util.StrUtil;
-import com.project.codesandbox.manager.DockerSandboxArgs;
-import com.project.codesandbox.manager.DockerSandboxInteract;
-import com.project.codesandbox.enums.ExecuteStatusEnum;
-import com.project.codesandbox.enums.LanguageEnum;
+import cn.hutool.core.collection.CollUtil;
+import com.project.codesandbox.manager.AdaptiveConcurrencyLimiter;
+import com.project.codesandbox.manager.ContainerPool;
+import com.project.codesandbox.manager.ContainerReaper;
+import com.project.codesandbox.manager.TestDataStore;
 import com.project.codesandbox.model.*;
+import com.project.codesandbox.service.CodeSandboxService;
+import com.project.codesandbox.service.JobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -19,132 +24,113 @@ import java.util.List;
 @CrossOrigin
 public class CodeSandBoxController {
 
-    /**
-     * 通过传参实现
-     */
     @Resource
-    private DockerSandboxArgs dockerSandboxArgs;
+    private CodeSandboxService codeSandboxService;
+
+    @Resource
+    private JobService jobService;
+
+    @Resource
+    private ContainerPool containerPool;
+
+    @Resource
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Resource
+    private TestDataStore testDataStore;
 
-    /**
-     * 通过交互式输入
-     */
     @Resource
-    private DockerSandboxInteract dockerSandboxInteract;
+    private ContainerReaper containerReaper;
 
     @PostMapping("/args")
     public ExecuteCodeResponse executeCodeByArgs(@RequestBody ExecuteCodeRequest executeCodeRequest){
-        String code = executeCodeRequest.getCode();
-        String language = executeCodeRequest.getLanguage();
-        List<String> inputList = executeCodeRequest.getInputList();
-        if (StrUtil.isBlank(code)){
-            return ExecuteCodeResponse.builder()
-                    .outputList(null)
-                    .status(1)
-                    .message("代码不可为空！")
-                    .judgeInfo(null)
-                    .build();
-        }
-        LanguageEnum enumByValue = LanguageEnum.getEnumByValue(language);
-        if (enumByValue == null){
-            return ExecuteCodeResponse.builder()
-                    .outputList(null)
-                    .status(1)
-                    .message("选择的语言不存在！")
-                    .judgeInfo(null)
-                    .build();
-        }
-        CodeExecuteRequest codeExecuteRequest = CodeExecuteRequest.builder()
-                .input(inputList)
-                .language(language)
-                .code(code)
-                .build();
-        CodeExecuteResponse codeExecuteResponse = dockerSandboxArgs.execute(codeExecuteRequest);
-        String executeStatus = codeExecuteResponse.getExecuteStatus();
-        Long time = codeExecuteResponse.getTime();
-        List<String> output = codeExecuteResponse.getOutput();
-        Long memory = codeExecuteResponse.getMemory();
-        String errorMessage = codeExecuteResponse.getErrorMessage();
-        boolean success = codeExecuteResponse.isSuccess();
-        ExecuteCodeResponse executeCodeResponse = ExecuteCodeResponse.builder().build();
-        if (!success){
-            if (executeStatus.equals(ExecuteStatusEnum.COMPILE_ERROR.getText())){
-                executeCodeResponse.setStatus(0);
-                executeCodeResponse.setMessage(errorMessage);
-                return executeCodeResponse;
-            }
-            else{
-                executeCodeResponse.setStatus(1);
-                executeCodeResponse.setMessage(errorMessage);
-                return executeCodeResponse;
-            }
-        }
-        JudgeInfo judgeInfo = new JudgeInfo();
-        judgeInfo.setMessage(ExecuteStatusEnum.SUCCESS.getText());
-        judgeInfo.setTime(time);
-        judgeInfo.setMemory(memory);
-        executeCodeResponse.setStatus(2);
-        executeCodeResponse.setOutputList(output);
-        executeCodeResponse.setJudgeInfo(judgeInfo);
-        executeCodeResponse.setMessage(ExecuteStatusEnum.SUCCESS.getText());
-        return executeCodeResponse;
+        return codeSandboxService.executeByArgs(executeCodeRequest);
     }
 
     @PostMapping("/interact")
     public ExecuteCodeResponse executeCodeByInteract(@RequestBody ExecuteCodeRequest executeCodeRequest){
-        String code = executeCodeRequest.getCode();
-        String language = executeCodeRequest.getLanguage();
-        List<String> inputList = executeCodeRequest.getInputList();
-        if (StrUtil.isBlank(code)){
-            return ExecuteCodeResponse.builder()
-                    .outputList(null)
-                    .status(1)
-                    .message("代码不可为空！")
-                    .judgeInfo(null)
-                    .build();
+        return codeSandboxService.executeByInteract(executeCodeRequest);
+    }
+
+    /**
+     * 异步提交，立即返回任务 ID
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<JobInfo> submitJob(@RequestBody SubmitJobRequest submitJobRequest){
+        JobInfo jobInfo = jobService.submit(submitJobRequest);
+        if (jobInfo == null){
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobInfo);
+    }
+
+    /**
+     * 任务队列统计：排队数、执行中任务数、排队与总耗时
+     */
+    @GetMapping("/jobs/stats")
+    public JobStats jobStats(){
+        return jobService.getStats();
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<JobInfo> getJob(@PathVariable String jobId){
+        JobInfo jobInfo = jobService.getJob(jobId);
+        if (jobInfo == null){
+            return ResponseEntity.notFound().build();
         }
-        LanguageEnum enumByValue = LanguageEnum.getEnumByValue(language);
-        if (enumByValue == null){
-            return ExecuteCodeResponse.builder()
-                    .outputList(null)
-                    .status(1)
-                    .message("选择的语言不存在！")
-                    .judgeInfo(null)
-                    .build();
+        return ResponseEntity.ok(jobInfo);
+    }
+
+    /**
+     * 上传题目的测试数据，每次上传生成一个新版本
+     */
+    @PostMapping("/problems/{problemId}/testdata")
+    public ResponseEntity<TestDataInfo> uploadTestData(@PathVariable String problemId,
+                                                       @RequestBody UploadTestDataRequest uploadTestDataRequest) throws IOException {
+        List<String> inputList = uploadTestDataRequest.getInputList();
+        List<String> expectedOutputList = uploadTestDataRequest.getExpectedOutputList();
+        if (!testDataStore.isValidProblemId(problemId) || CollUtil.isEmpty(inputList)
+                || (expectedOutputList != null && expectedOutputList.size() != inputList.size())) {
+            return ResponseEntity.badRequest().build();
         }
-        CodeExecuteRequest codeExecuteRequest = CodeExecuteRequest.builder()
-                .input(inputList)
-                .language(language)
-                .code(code)
-                .build();
-        CodeExecuteResponse codeExecuteResponse = dockerSandboxInteract.execute(codeExecuteRequest);
-        String executeStatus = codeExecuteResponse.getExecuteStatus();
-        Long time = codeExecuteResponse.getTime();
-        List<String> output = codeExecuteResponse.getOutput();
-        Long memory = codeExecuteResponse.getMemory();
-        String errorMessage = codeExecuteResponse.getErrorMessage();
-        boolean success = codeExecuteResponse.isSuccess();
-        ExecuteCodeResponse executeCodeResponse = ExecuteCodeResponse.builder().build();
-        if (!success){
-            if (executeStatus.equals(ExecuteStatusEnum.COMPILE_ERROR.getText())){
-                executeCodeResponse.setStatus(0);
-                executeCodeResponse.setMessage(errorMessage);
-                return executeCodeResponse;
-            }
-            else{
-                executeCodeResponse.setStatus(1);
-                executeCodeResponse.setMessage(errorMessage);
-                return executeCodeResponse;
-            }
+        return ResponseEntity.ok(testDataStore.upload(problemId, inputList, expectedOutputList));
+    }
+
+    /**
+     * 查询题目的测试数据信息，不指定版本时返回最新版本
+     */
+    @GetMapping("/problems/{problemId}/testdata")
+    public ResponseEntity<TestDataInfo> getTestData(@PathVariable String problemId,
+                                                    @RequestParam(required = false) Integer version) throws IOException {
+        TestDataInfo testDataInfo = testDataStore.getInfo(problemId, version);
+        if (testDataInfo == null){
+            return ResponseEntity.notFound().build();
         }
-        JudgeInfo judgeInfo = new JudgeInfo();
-        judgeInfo.setMessage(ExecuteStatusEnum.SUCCESS.getText());
-        judgeInfo.setTime(time);
-        judgeInfo.setMemory(memory);
-        executeCodeResponse.setStatus(2);
-        executeCodeResponse.setOutputList(output);
-        executeCodeResponse.setJudgeInfo(judgeInfo);
-        executeCodeResponse.setMessage(ExecuteStatusEnum.SUCCESS.getText());
-        return executeCodeResponse;
+        return ResponseEntity.ok(testDataInfo);
+    }
+
+    /**
+     * 容器池统计：借用等待时间、预热/新建容器的借用次数
+     */
+    @GetMapping("/pool")
+    public PoolStats poolStats(){
+        return containerPool.getStats();
+    }
+
+    /**
+     * 容器回收统计：待删除数、回收延迟以及发现的孤儿容器数
+     */
+    @GetMapping("/reaper")
+    public ReaperStats reaperStats(){
+        return containerReaper.getStats();
+    }
+
+    /**
+     * 并发限制统计：当前上限、执行中请求数、拒绝数以及宿主机余量
+     */
+    @GetMapping("/limiter")
+    public LimiterStats limiterStats(){
+        return concurrencyLimiter.getStats();
     }
 
     @GetMapping
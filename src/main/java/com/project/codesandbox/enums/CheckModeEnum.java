@@ -0,0 +1,43 @@
+package com.project.codesandbox.enums;
+
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 输出比对方式枚举
+ */
+@Getter
+public enum CheckModeEnum {
+
+    EXACT("exact", "逐字节比对，忽略 \\r 和首尾空白"),
+    IGNORE_WHITESPACE("whitespace", "按空白拆分后逐个比对"),
+    FLOAT("float", "按空白拆分，数值在误差范围内视为相同"),
+    SPECIAL("special", "由检查器程序判定");
+
+    private final String mode;
+
+    private final String text;
+
+    CheckModeEnum(String mode, String text) {
+        this.mode = mode;
+        this.text = text;
+    }
+
+    /**
+     * 根据 mode 获取枚举，为空时默认逐字节比对
+     *
+     * @param mode 值
+     * @return {@link CheckModeEnum}，不存在时返回 null
+     */
+    public static CheckModeEnum getEnumByValue(String mode) {
+        if (StringUtils.isBlank(mode)) {
+            return EXACT;
+        }
+        for (CheckModeEnum checkModeEnum : CheckModeEnum.values()) {
+            if (checkModeEnum.mode.equals(mode)) {
+                return checkModeEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -12,7 +12,11 @@ public enum ExecuteStatusEnum {
     RUNTIME_ERROR("运行错误", 1),
     SUCCESS("运行成功", 2),
     TIMEOUT("运行超时", 3),
-    LANGUAGE_ERROR("系统暂不支持该语言", 4);
+    LANGUAGE_ERROR("系统暂不支持该语言", 4),
+    SYSTEM_BUSY("系统繁忙，请稍后重试", 5),
+    OUTPUT_LIMIT_EXCEEDED("输出超限", 6),
+    MEMORY_LIMIT_EXCEEDED("内存超限", 7),
+    WRONG_ANSWER("答案错误", 8);
 
 
     private final String text;
@@ -51,6 +55,24 @@ public enum ExecuteStatusEnum {
         return null;
     }
 
+    /**
+     * 根据 text 获取枚举
+     *
+     * @param text
+     * @return
+     */
+    public static ExecuteStatusEnum getEnumByText(String text) {
+        if (ObjectUtils.isEmpty(text)) {
+            return null;
+        }
+        for (ExecuteStatusEnum anEnum : ExecuteStatusEnum.values()) {
+            if (anEnum.text.equals(text)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
     public Integer getValue() {
         return value;
     }
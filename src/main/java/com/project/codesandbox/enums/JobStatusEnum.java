@@ -0,0 +1,51 @@
+package com.project.codesandbox.enums;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 异步任务状态枚举
+ */
+public enum JobStatusEnum {
+
+    QUEUED("排队中", 0),
+    RUNNING("执行中", 1),
+    FINISHED("已完成", 2),
+    FAILED("执行失败", 3);
+
+
+    private final String text;
+
+    private final Integer value;
+
+    JobStatusEnum(String text, Integer value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return
+     */
+    public static JobStatusEnum getEnumByValue(Integer value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (JobStatusEnum anEnum : JobStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public Integer getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+}
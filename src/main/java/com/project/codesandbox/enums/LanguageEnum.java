@@ -1,22 +1,30 @@
 package com.project.codesandbox.enums;
 
+import cn.hutool.core.io.resource.ResourceUtil;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 
 /**
  * 编程语言 cmd 枚举
  * 不需要编译的语言编译的 cmd 设置为空即可
+ * C++ 和 Go 的编译命令会使用 /cache 下的只读构建缓存，见 BuildCache
+ * Go 每次编译在 /tmp/gocache 重建指向只读缓存文件的符号链接目录树，只创建链接不复制内容，新产生的条目写在该目录中；
+ * /cache 是单独挂载的卷，不能用硬链接，cp 不支持 -s 时退回完整复制
+ * C++ 由 agent/cpp_compile.sh 包装 g++，根据头文件轨迹判断是否用上了预编译头，见脚本中的说明
  */
 @Getter
 public enum LanguageEnum {
 
     JAVA("java", "Main.java", new String[]{"javac", "-encoding", "utf-8", "Main.java"}, new String[]{"java", "-Dfile.encoding=UTF-8", "Main"}),
-    CPP("cpp", "main.cpp", new String[]{"g++", "-finput-charset=UTF-8", "-fexec-charset=UTF-8", "-o", "main", "main.cpp"}, new String[]{"./main"}),
+    CPP("cpp", "main.cpp", new String[]{"sh", "-c", ResourceUtil.readUtf8Str("agent/cpp_compile.sh"), "sh",
+            "g++", "-I/cache/pch", "-finput-charset=UTF-8", "-fexec-charset=UTF-8", "-o", "main", "main.cpp"}, new String[]{"./main"}),
     C("c", "main.c", new String[]{"gcc", "-finput-charset=UTF-8", "-fexec-charset=UTF-8", "-o", "main", "main.c"}, new String[]{"./main"}),
     PYTHON3("python", "main.py", null, new String[]{"python3", "main.py"}),
     JAVASCRIPT("javascript", "main.js", null, new String[]{"node", "main.js"}),
     TYPESCRIPT("typescript", "main.ts", null, new String[]{"node", "main.ts"}),
-    GO("go", "main.go", null, new String[]{"go", "run", "main.go"}),;
+    GO("go", "main.go", new String[]{"sh", "-c", "rm -rf /tmp/gocache; "
+            + "cp -as /cache/gocache /tmp/gocache 2>/dev/null || { rm -rf /tmp/gocache; cp -r /cache/gocache /tmp/gocache 2>/dev/null; }; "
+            + "GOCACHE=/tmp/gocache go build -o main main.go"}, new String[]{"./main"}),;
 
     private final String language;
 
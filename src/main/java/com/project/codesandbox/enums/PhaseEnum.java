@@ -0,0 +1,33 @@
+package com.project.codesandbox.enums;
+
+/**
+ * 执行阶段枚举，用于分阶段统计耗时
+ */
+public enum PhaseEnum {
+
+    PREPARE("准备", "prepare"),
+    LEASE("借用容器", "lease"),
+    COPY("复制代码", "copy"),
+    COMPILE("编译", "compile"),
+    RUN("运行", "run"),
+    TEARDOWN("归还容器", "teardown");
+
+
+    private final String text;
+
+    private final String value;
+
+    PhaseEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+}
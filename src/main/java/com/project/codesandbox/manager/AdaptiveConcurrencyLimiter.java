@@ -0,0 +1,346 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.config.EngineProperties;
+import com.project.codesandbox.config.LimiterProperties;
+import com.project.codesandbox.model.LimiterStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 沙箱执行的自适应并发限制
+ * 采用 AIMD：服务开销正常且并发接近上限时上限加一，服务开销超过阈值、执行异常或宿主机内存/CPU 余量不足时按比例收缩。
+ * 服务开销为执行中除运行用例外各阶段（借用容器、复制代码、编译等）的耗时，由 {@link SandboxMetrics} 在执行结束时上报，
+ * 不包含用户程序的运行时间，用例多或超时不会被误判为过载
+ * 达到上限时同步请求立即返回繁忙，避免无限排队拖慢所有请求
+ * 宿主机余量从 /proc 读取（procfs 文件没有长度，需用流式读取）：内存按 MemAvailable（含可回收的页缓存）计算，服务运行在有内存上限的 cgroup 中时取两者中较小的余量，
+ * CPU 使用率按相邻两次采样间 /proc/stat 的空闲时间占比计算；非 Linux 系统不采样，
+ * 全部 Docker 守护进程都在远程且没有语言使用本机引擎时，用例不在本机运行，同样不采样
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final File MEMINFO = new File("/proc/meminfo");
+
+    private static final File CPU_STAT = new File("/proc/stat");
+
+    private static final File CGROUP_MEMORY_MAX = new File("/sys/fs/cgroup/memory.max");
+
+    private static final File CGROUP_MEMORY_CURRENT = new File("/sys/fs/cgroup/memory.current");
+
+    private static final File CGROUP_MEMORY_STAT = new File("/sys/fs/cgroup/memory.stat");
+
+    @Resource
+    private LimiterProperties limiterProperties;
+
+    @Resource
+    private DockerDaemons dockerDaemons;
+
+    @Resource
+    private EngineProperties engineProperties;
+
+    /**
+     * 当前线程持有的许可，执行结束时上报的服务开销记到该许可上
+     */
+    private final ThreadLocal<Permit> currentPermit = new ThreadLocal<>();
+
+    /**
+     * 用例是否可能在本机运行，为 false 时本机余量与执行无关，不采样
+     */
+    private boolean sampleHost;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+
+    private int inFlight;
+
+    /**
+     * 宿主机余量是否不足，由定时采样更新
+     */
+    private volatile boolean hostOverloaded;
+
+    private volatile double freeMemoryRatio = 1;
+
+    private volatile double cpuLoad;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 上次采样时 /proc/stat 的 CPU 总时间和空闲时间（单位 jiffies），只在采样线程中访问
+     */
+    private long lastCpuTotal;
+
+    private long lastCpuIdle;
+
+    @PostConstruct
+    public void init() {
+        limit = limiterProperties.getInitialLimit();
+        sampleHost = dockerDaemons.getAll().stream().anyMatch(DockerDaemon::isLocal)
+                || NativeSandboxEngine.NAME.equals(engineProperties.getDefaultEngine())
+                || engineProperties.getLanguages().containsValue(NativeSandboxEngine.NAME);
+        if (!sampleHost) {
+            log.info("Docker 守护进程均在远程，并发限制不采样本机资源余量");
+        }
+    }
+
+    /**
+     * 尝试获取执行许可，不等待
+     *
+     * @return 许可，繁忙时返回 null
+     */
+    public Permit tryAcquire() {
+        if (!limiterProperties.isEnabled()) {
+            return new Permit();
+        }
+        lock.lock();
+        try {
+            if (!canAcquire()) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            inFlight++;
+            return bind(new Permit());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取执行许可，最多等待 timeoutMillis
+     *
+     * @return 许可，超时返回 null
+     */
+    public Permit acquire(long timeoutMillis) throws InterruptedException {
+        if (!limiterProperties.isEnabled()) {
+            return new Permit();
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (!canAcquire()) {
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+            return bind(new Permit());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit bind(Permit permit) {
+        currentPermit.set(permit);
+        return permit;
+    }
+
+    /**
+     * 上报当前线程上这次执行的服务开销，在许可归还时用于判断是否过载；当前线程没有许可时忽略
+     *
+     * @param overheadNanos 除运行用例外各阶段的耗时之和
+     */
+    public void reportOverhead(long overheadNanos) {
+        Permit permit = currentPermit.get();
+        if (permit != null) {
+            permit.overheadNanos = overheadNanos;
+        }
+    }
+
+    public LimiterStats getStats() {
+        lock.lock();
+        try {
+            return LimiterStats.builder()
+                    .limit((int) limit)
+                    .inFlight(inFlight)
+                    .rejected(rejected.get())
+                    .freeMemoryRatio(freeMemoryRatio)
+                    .cpuLoad(cpuLoad)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 采样宿主机内存和 CPU 余量，余量不足时收缩并发上限
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void sampleHost() {
+        if (!sampleHost || !MEMINFO.isFile() || !CPU_STAT.isFile()) {
+            return;
+        }
+        try {
+            freeMemoryRatio = Math.min(hostAvailableRatio(), cgroupAvailableRatio());
+            cpuLoad = sampleCpuLoad();
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取宿主机资源余量失败: {}", e.getMessage());
+            return;
+        }
+        boolean overloaded = freeMemoryRatio < limiterProperties.getMinFreeMemoryRatio()
+                || cpuLoad > limiterProperties.getMaxCpuLoad();
+        if (overloaded && !hostOverloaded) {
+            log.warn("宿主机余量不足，空闲内存占比 {}，CPU 使用率 {}", freeMemoryRatio, cpuLoad);
+        }
+        hostOverloaded = overloaded;
+        if (overloaded) {
+            lock.lock();
+            try {
+                backoff();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 宿主机可用内存占比，MemAvailable 包含可回收的页缓存，比 MemFree 更接近实际能分配的内存
+     */
+    private static double hostAvailableRatio() throws IOException {
+        long total = 0;
+        long available = -1;
+        for (String line : Files.readAllLines(MEMINFO.toPath(), StandardCharsets.US_ASCII)) {
+            if (line.startsWith("MemTotal:")) {
+                total = parseMeminfoKb(line);
+            } else if (line.startsWith("MemAvailable:")) {
+                available = parseMeminfoKb(line);
+            }
+        }
+        return total <= 0 || available < 0 ? 1 : (double) available / total;
+    }
+
+    private static long parseMeminfoKb(String line) {
+        String[] parts = line.trim().split("\\s+");
+        return Long.parseLong(parts[1]);
+    }
+
+    /**
+     * 服务所在 cgroup 的可用内存占比，memory.current 中可回收的 inactive_file 视为可用；没有内存上限时返回 1
+     */
+    private static double cgroupAvailableRatio() throws IOException {
+        if (!CGROUP_MEMORY_MAX.isFile() || !CGROUP_MEMORY_CURRENT.isFile()) {
+            return 1;
+        }
+        String max = new String(Files.readAllBytes(CGROUP_MEMORY_MAX.toPath()), StandardCharsets.US_ASCII).trim();
+        if ("max".equals(max)) {
+            return 1;
+        }
+        long limitBytes = Long.parseLong(max);
+        long usedBytes = Long.parseLong(new String(Files.readAllBytes(CGROUP_MEMORY_CURRENT.toPath()), StandardCharsets.US_ASCII).trim());
+        if (CGROUP_MEMORY_STAT.isFile()) {
+            for (String line : Files.readAllLines(CGROUP_MEMORY_STAT.toPath(), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("inactive_file ")) {
+                    usedBytes -= Long.parseLong(line.substring("inactive_file ".length()).trim());
+                    break;
+                }
+            }
+        }
+        return limitBytes <= 0 ? 1 : Math.max(0, (double) (limitBytes - Math.max(0, usedBytes)) / limitBytes);
+    }
+
+    /**
+     * 根据 /proc/stat 第一行计算距上次采样的 CPU 使用率，首次采样返回 0
+     * 格式：cpu user nice system idle iowait irq softirq steal ...，idle 与 iowait 计为空闲
+     */
+    private double sampleCpuLoad() throws IOException {
+        List<String> lines = Files.readAllLines(CPU_STAT.toPath(), StandardCharsets.US_ASCII);
+        String[] fields = lines.get(0).trim().split("\\s+");
+        long total = 0;
+        for (int i = 1; i < fields.length && i <= 8; i++) {
+            total += Long.parseLong(fields[i]);
+        }
+        long idle = Long.parseLong(fields[4]) + (fields.length > 5 ? Long.parseLong(fields[5]) : 0);
+        long totalDelta = total - lastCpuTotal;
+        long idleDelta = idle - lastCpuIdle;
+        boolean first = lastCpuTotal == 0;
+        lastCpuTotal = total;
+        lastCpuIdle = idle;
+        if (first || totalDelta <= 0) {
+            return 0;
+        }
+        return Math.min(1, Math.max(0, 1 - (double) idleDelta / totalDelta));
+    }
+
+    /**
+     * 调用方需持有锁
+     */
+    private boolean canAcquire() {
+        // 宿主机余量不足时至少保留最小并发，避免完全停止服务
+        if (hostOverloaded && inFlight >= limiterProperties.getMinLimit()) {
+            return false;
+        }
+        return inFlight < (int) limit;
+    }
+
+    /**
+     * 调用方需持有锁
+     */
+    private void backoff() {
+        limit = Math.max(limiterProperties.getMinLimit(), limit * limiterProperties.getBackoffRatio());
+    }
+
+    private void onRelease(long overheadNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (dropped || TimeUnit.NANOSECONDS.toMillis(overheadNanos) > limiterProperties.getLatencyThresholdMillis()) {
+                backoff();
+            } else if (inFlight * 2 >= limit) {
+                // 只有并发确实被用满时才扩大上限
+                limit = Math.min(limiterProperties.getMaxLimit(), limit + 1);
+            }
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 执行许可，执行结束后必须调用 {@link #release(boolean)}
+     */
+    public class Permit {
+
+        /**
+         * 执行结束时上报的服务开销，未上报（如执行前即返回）时为 0
+         */
+        private long overheadNanos;
+
+        private boolean released;
+
+        private Permit() {
+        }
+
+        /**
+         * 归还许可并反馈本次执行情况
+         *
+         * @param dropped 执行是否异常（视为过载信号）
+         */
+        public void release(boolean dropped) {
+            if (released || !limiterProperties.isEnabled()) {
+                return;
+            }
+            released = true;
+            if (currentPermit.get() == this) {
+                currentPermit.remove();
+            }
+            onRelease(overheadNanos, dropped);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.project.codesandbox.manager;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * 有上限的输出缓冲
+ * 内存中最多保留 maxBytes 字节；配置了溢出文件时，超出部分写入临时文件直到 spillMaxBytes，
+ * 再超出则停止捕获并标记为输出超限
+ */
+@Slf4j
+public class BoundedOutputBuffer implements Closeable {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+    private final int maxBytes;
+
+    private final File spillFile;
+
+    private final long spillMaxBytes;
+
+    private OutputStream spillStream;
+
+    private long spilledBytes;
+
+    private boolean exceeded;
+
+    /**
+     * @param maxBytes      内存中保留的上限
+     * @param spillFile     溢出文件，为 null 时不溢出
+     * @param spillMaxBytes 溢出文件的上限
+     */
+    public BoundedOutputBuffer(int maxBytes, File spillFile, long spillMaxBytes) {
+        this.maxBytes = maxBytes;
+        this.spillFile = spillFile;
+        this.spillMaxBytes = spillMaxBytes;
+    }
+
+    public BoundedOutputBuffer(int maxBytes) {
+        this(maxBytes, null, 0);
+    }
+
+    /**
+     * 写入数据
+     *
+     * @return 是否仍在限制内，返回 false 后不再接收数据
+     */
+    public boolean write(byte[] data) {
+        return write(data, 0, data.length);
+    }
+
+    /**
+     * 写入数据
+     *
+     * @return 是否仍在限制内，返回 false 后不再接收数据
+     */
+    public boolean write(byte[] data, int offset, int length) {
+        if (exceeded) {
+            return false;
+        }
+        int room = maxBytes - buffer.size();
+        if (length <= room) {
+            buffer.write(data, offset, length);
+            return true;
+        }
+        if (room > 0) {
+            buffer.write(data, offset, room);
+        }
+        return spill(data, offset + room, length - room);
+    }
+
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    /**
+     * 是否有输出写入了溢出文件
+     */
+    public boolean isSpilled() {
+        return spilledBytes > 0;
+    }
+
+    public File getSpillFile() {
+        return spillFile;
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    public byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    public String toString(Charset charset) {
+        return new String(buffer.toByteArray(), charset);
+    }
+
+    @Override
+    public void close() {
+        if (spillStream != null) {
+            try {
+                spillStream.close();
+            } catch (IOException e) {
+                log.warn("关闭输出溢出文件失败: {}", e.getMessage());
+            }
+            spillStream = null;
+        }
+    }
+
+    private boolean spill(byte[] data, int offset, int length) {
+        if (spillFile == null) {
+            exceeded = true;
+            return false;
+        }
+        long room = spillMaxBytes - spilledBytes;
+        int toWrite = (int) Math.min(room, length);
+        try {
+            if (spillStream == null) {
+                spillFile.getParentFile().mkdirs();
+                spillStream = new FileOutputStream(spillFile);
+            }
+            spillStream.write(data, offset, toWrite);
+            spilledBytes += toWrite;
+        } catch (IOException e) {
+            log.warn("写入输出溢出文件失败: {}", e.getMessage());
+            exceeded = true;
+            return false;
+        }
+        if (toWrite < length) {
+            exceeded = true;
+            return false;
+        }
+        return true;
+    }
+}
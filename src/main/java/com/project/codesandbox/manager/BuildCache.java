@@ -0,0 +1,226 @@
+package com.project.codesandbox.manager;
+
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.model.AccessMode;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Volume;
+import com.project.codesandbox.config.BuildCacheProperties;
+import com.project.codesandbox.enums.LanguageEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工具链构建缓存
+ * 每种语言在每个守护进程上有一个缓存卷，只读挂载到沙箱容器的 /cache；卷内容由服务启动的预热容器写入，
+ * 用户代码运行的容器无法修改，不会污染其他提交
+ * Go：预先编译常用标准库包到 /cache/gocache，编译时在容器内建立指向其中文件的符号链接目录作为可写的 GOCACHE
+ * C++：预编译 bits/stdc++.h 到 /cache/pch，编译命令通过 -I 优先找到 .gch
+ */
+@Slf4j
+@Component
+public class BuildCache {
+
+    static final String MOUNT_PATH = "/cache";
+
+    /**
+     * C++ 编译成功且用上预编译头时编译命令在标准输出打印的标记，见 agent/cpp_compile.sh
+     */
+    static final String PCH_HIT = "codesandbox: pch hit";
+
+    /**
+     * 各语言的预热脚本，在挂载了可写缓存卷的容器中执行，已完成时直接退出；产物先写到临时位置再改名，读到的始终是完整内容
+     */
+    private static final Map<LanguageEnum, String> WARM_SCRIPTS = new EnumMap<>(LanguageEnum.class);
+
+    static {
+        WARM_SCRIPTS.put(LanguageEnum.GO, "[ -f /cache/gocache/.ready ] && exit 0; command -v go >/dev/null || exit 0; "
+                + "rm -rf /cache/warm && mkdir -p /cache/warm && cd /cache/warm && "
+                + "printf 'package main\\nimport (\\n_ \"bufio\"\\n_ \"fmt\"\\n_ \"math\"\\n_ \"os\"\\n_ \"sort\"\\n_ \"strconv\"\\n_ \"strings\"\\n)\\nfunc main() {}\\n' > main.go && "
+                + "GOCACHE=/cache/warm/gocache go build -o /dev/null main.go && "
+                + "touch /cache/warm/gocache/.ready && rm -rf /cache/gocache && mv /cache/warm/gocache /cache/gocache && rm -rf /cache/warm");
+        WARM_SCRIPTS.put(LanguageEnum.CPP, "[ -f /cache/pch/bits/stdc++.h.gch ] && exit 0; "
+                + "mkdir -p /cache/pch/bits && cd /cache/pch/bits && "
+                + "printf '#include_next <bits/stdc++.h>\\n' > stdc++.h && "
+                + "g++ -finput-charset=UTF-8 -fexec-charset=UTF-8 -w -x c++-header stdc++.h -o stdc++.h.gch.tmp && "
+                + "mv stdc++.h.gch.tmp stdc++.h.gch");
+    }
+
+    @Resource
+    private BuildCacheProperties buildCacheProperties;
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private DockerDaemons dockerDaemons;
+
+    @Resource
+    private ContainerReaper containerReaper;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    @Resource
+    private SandboxImages sandboxImages;
+
+    /**
+     * 已完成预热的 守护进程/语言
+     */
+    private final Set<String> warmed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已提交预热任务的 守护进程/语言
+     */
+    private final Set<String> warming = ConcurrentHashMap.newKeySet();
+
+    private final Map<LanguageEnum, AtomicLong> hits = new EnumMap<>(LanguageEnum.class);
+
+    private final Map<LanguageEnum, AtomicLong> misses = new EnumMap<>(LanguageEnum.class);
+
+    /**
+     * 预热逐个执行，避免与用户请求争抢守护进程资源
+     */
+    private ExecutorService warmExecutor;
+
+    @PostConstruct
+    public void init() {
+        for (LanguageEnum language : WARM_SCRIPTS.keySet()) {
+            hits.put(language, new AtomicLong());
+            misses.put(language, new AtomicLong());
+        }
+        warmExecutor = Executors.newSingleThreadExecutor(sandboxThreads.newThreadFactory("build-cache-", true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmExecutor.shutdownNow();
+    }
+
+    /**
+     * 是否为该语言提供构建缓存
+     */
+    public boolean supports(LanguageEnum language) {
+        return buildCacheProperties.isEnabled() && WARM_SCRIPTS.containsKey(language);
+    }
+
+    /**
+     * 沙箱容器的只读缓存挂载
+     *
+     * @param language 语言
+     * @return 挂载列表，不提供缓存的语言为空
+     */
+    public List<Bind> binds(LanguageEnum language) {
+        if (!supports(language)) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new Bind(volumeName(language), new Volume(MOUNT_PATH), AccessMode.ro));
+    }
+
+    /**
+     * 记录一次成功的编译是否用上了缓存，缓存卷尚未预热或 C++ 没有用上预编译头时算作未命中
+     *
+     * @param container     完成编译的容器
+     * @param compileOutput 编译输出，可为 null
+     */
+    public void record(SandboxContainer container, String compileOutput) {
+        LanguageEnum language = container.getLanguage();
+        if (!supports(language)) {
+            return;
+        }
+        boolean hit = warmed.contains(key(container.getDaemon(), language))
+                && (language != LanguageEnum.CPP || (compileOutput != null && compileOutput.contains(PCH_HIT)));
+        (hit ? hits : misses).get(language).incrementAndGet();
+    }
+
+    public long getHits(LanguageEnum language) {
+        AtomicLong count = hits.get(language);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getMisses(LanguageEnum language) {
+        AtomicLong count = misses.get(language);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 为可用但尚未预热的守护进程提交预热任务，熔断恢复或新加入的守护进程在下一轮检查时预热
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${codesandbox.build-cache.check-interval-millis:60000}")
+    public void warmAll() {
+        if (!buildCacheProperties.isEnabled()) {
+            return;
+        }
+        for (DockerDaemon daemon : dockerDaemons.getAll()) {
+            if (daemon.isOpen()) {
+                continue;
+            }
+            for (LanguageEnum language : WARM_SCRIPTS.keySet()) {
+                String key = key(daemon, language);
+                if (!warmed.contains(key) && warming.add(key)) {
+                    warmExecutor.execute(() -> {
+                        try {
+                            warm(daemon, language);
+                            warmed.add(key);
+                        } catch (RuntimeException e) {
+                            log.warn("预热 {} 上的 {} 构建缓存失败: {}", daemon.getHost(), language.getLanguage(), e.getMessage());
+                        } finally {
+                            warming.remove(key);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * 在守护进程上启动预热容器写入缓存卷，等待其结束后删除
+     */
+    private void warm(DockerDaemon daemon, LanguageEnum language) {
+        HostConfig hostConfig = new HostConfig()
+                .withBinds(new Bind(volumeName(language), new Volume(MOUNT_PATH), AccessMode.rw));
+        CreateContainerResponse createContainerResponse = dockerCalls.call(daemon, "create", client -> client.createContainerCmd(sandboxImages.get(language))
+                .withLabels(containerReaper.labels())
+                .withHostConfig(hostConfig)
+                .withNetworkDisabled(true)
+                .withEntrypoint("sh", "-c", WARM_SCRIPTS.get(language))
+                .exec());
+        String containerId = createContainerResponse.getId();
+        containerReaper.track(containerId);
+        try {
+            long start = System.currentTimeMillis();
+            dockerCalls.call(daemon, "start", client -> client.startContainerCmd(containerId).exec());
+            Integer exitCode = dockerCalls.call(daemon, "wait", client -> client.waitContainerCmd(containerId).start())
+                    .awaitStatusCode(buildCacheProperties.getWarmTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (exitCode == null || exitCode != 0) {
+                throw new IllegalStateException("预热容器退出码 " + exitCode);
+            }
+            log.info("{} 上的 {} 构建缓存已就绪，耗时 {} ms", daemon.getHost(), language.getLanguage(), System.currentTimeMillis() - start);
+        } finally {
+            containerReaper.reap(daemon, containerId);
+        }
+    }
+
+    private String volumeName(LanguageEnum language) {
+        return buildCacheProperties.getVolumePrefix() + "-" + language.getLanguage();
+    }
+
+    private static String key(DockerDaemon daemon, LanguageEnum language) {
+        return daemon.getHost() + "/" + language.getLanguage();
+    }
+}
@@ -0,0 +1,300 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.model.Frame;
+import com.project.codesandbox.config.CgroupProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 cgroup v2 的资源统计
+ * 执行前后读取容器 cgroup 的 cpu.stat、memory.peak 和 memory.events，得到 CPU 时间、内存峰值和是否被 OOM 杀死，
+ * 不需要订阅 docker stats 流。沙箱服务能访问宿主机 cgroup 目录时直接读文件，否则在容器内执行 cat 读取：
+ * 远程守护进程的容器总是如此，本机守护进程读不到宿主机目录时按 exec-fallback 配置；两者都不可用时每个守护进程记录一次警告
+ * 容器在池中复用，memory.peak 是容器整个生命周期的峰值，只有内核支持重置（6.12 起）时才报告内存，否则内存为未知
+ */
+@Slf4j
+@Component
+public class CgroupAccounting {
+
+    /**
+     * 容器内的 cgroup 挂载点（cgroup v2 默认使用私有 cgroup namespace）
+     */
+    private static final String CONTAINER_ROOT = "/sys/fs/cgroup";
+
+    private static final String[] SNAPSHOT_CMD = {"sh", "-c",
+            "cat " + CONTAINER_ROOT + "/cpu.stat " + CONTAINER_ROOT + "/memory.events 2>/dev/null"};
+
+    private static final long SNAPSHOT_TIMEOUT_MILLIS = 2000;
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private CgroupProperties cgroupProperties;
+
+    /**
+     * 已记录过统计方式的守护进程
+     */
+    private final Set<String> reportedDaemons = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 开始统计，需在启动用户进程之前调用，并在进程结束后调用 {@link Probe#finish()}
+     *
+     * @param container 容器
+     * @return {@link Probe}
+     */
+    public Probe begin(SandboxContainer container) {
+        File hostDir = resolveHostDir(container);
+        DockerDaemon daemon = container.getDaemon();
+        boolean exec = hostDir == null && (!daemon.isLocal() || cgroupProperties.isExecFallback());
+        if (hostDir == null && reportedDaemons.add(daemon.getHost())) {
+            if (exec) {
+                log.info("Docker {} 的容器读不到宿主机 cgroup 目录，改为在容器内读取统计，只统计 CPU 时间和 OOM", daemon.getHost());
+            } else {
+                log.warn("Docker {} 的容器读不到宿主机 cgroup 目录且未开启 exec-fallback，时间和内存为未知，内存超限将报告为运行错误",
+                        daemon.getHost());
+            }
+        }
+        Probe probe = new Probe(container, hostDir, exec);
+        probe.start();
+        return probe;
+    }
+
+    /**
+     * 查找容器在宿主机上的 cgroup 目录，兼容 systemd 和 cgroupfs 两种 cgroup 驱动
+     */
+    private File resolveHostDir(SandboxContainer container) {
+        if (!cgroupProperties.isHostAccess() || !container.getDaemon().isLocal()) {
+            return null;
+        }
+        String containerId = container.getId();
+        String root = cgroupProperties.getHostRoot();
+        File[] candidates = {
+                new File(root, "system.slice/docker-" + containerId + ".scope"),
+                new File(root, "docker/" + containerId),
+        };
+        for (File candidate : candidates) {
+            if (new File(candidate, "cpu.stat").isFile()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在容器内读取 cgroup 统计，每行均为 "键 值" 格式
+     */
+    private Map<String, Long> execSnapshot(SandboxContainer container) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<Frame>() {
+            @Override
+            public void onNext(Frame frame) {
+                outputStream.write(frame.getPayload(), 0, frame.getPayload().length);
+            }
+        }) {
+            ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(container.getId())
+                    .withCmd(SNAPSHOT_CMD)
+                    .withAttachStdout(true)
+                    .exec());
+            dockerCalls.call(container.getDaemon(), "execStart", client -> client.execStartCmd(execCreateCmdResponse.getId())
+                    .exec(callback))
+                    .awaitCompletion(SNAPSHOT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取容器 {} 的 cgroup 统计失败: {}", container.getId(), e.getMessage());
+        }
+        return parseKeyValues(StrUtil.splitTrim(new String(outputStream.toByteArray(), StandardCharsets.UTF_8), '\n'));
+    }
+
+    private static Map<String, Long> readHostFile(File file) {
+        if (!file.isFile()) {
+            return new HashMap<>();
+        }
+        // cgroupfs 文件没有长度，用流式读取
+        try {
+            return parseKeyValues(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取 {} 失败: {}", file, e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private static Map<String, Long> parseKeyValues(List<String> lines) {
+        Map<String, Long> values = new HashMap<>();
+        for (String line : lines) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                values.put(parts[0], Long.parseLong(parts[1]));
+            } catch (NumberFormatException ignored) {
+                // 非数值行（如 memory.peak 读取失败）直接忽略
+            }
+        }
+        return values;
+    }
+
+    private static long valueOf(Map<String, Long> values, String key) {
+        Long value = values.get(key);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * 一次执行的统计过程
+     */
+    public class Probe implements Closeable {
+
+        private final SandboxContainer container;
+
+        /**
+         * 宿主机上的 cgroup 目录，为 null 时在容器内读取或不统计
+         */
+        private final File hostDir;
+
+        /**
+         * 是否在容器内执行 cat 读取，hostDir 为 null 且为 false 时不统计
+         */
+        private final boolean exec;
+
+        /**
+         * memory.peak 的文件句柄，内核 6.12 起对该句柄写入会把峰值重置为当前用量，之后通过同一句柄读到的是本次执行的峰值
+         */
+        private RandomAccessFile peakFile;
+
+        private boolean peakReset;
+
+        private long cpuUsecBefore;
+
+        private long oomKillBefore;
+
+        private Probe(SandboxContainer container, File hostDir, boolean exec) {
+            this.container = container;
+            this.hostDir = hostDir;
+            this.exec = exec;
+        }
+
+        private void start() {
+            if (hostDir == null && !exec) {
+                return;
+            }
+            if (hostDir == null) {
+                Map<String, Long> snapshot = execSnapshot(container);
+                cpuUsecBefore = valueOf(snapshot, "usage_usec");
+                oomKillBefore = valueOf(snapshot, "oom_kill");
+                return;
+            }
+            cpuUsecBefore = valueOf(readHostFile(new File(hostDir, "cpu.stat")), "usage_usec");
+            oomKillBefore = valueOf(readHostFile(new File(hostDir, "memory.events")), "oom_kill");
+            File peak = new File(hostDir, "memory.peak");
+            try {
+                peakFile = new RandomAccessFile(peak, "rw");
+                peakFile.write("reset".getBytes(StandardCharsets.US_ASCII));
+                peakReset = true;
+            } catch (IOException e) {
+                // 旧内核的 memory.peak 只读，读到的是容器生命周期内的峰值，内存按未知处理
+                closePeakFile();
+            }
+        }
+
+        /**
+         * 结束统计
+         *
+         * @return {@link Usage}
+         */
+        public Usage finish() {
+            if (hostDir == null && !exec) {
+                return new Usage(null, null, false);
+            }
+            long cpuUsec;
+            long oomKill;
+            if (hostDir == null) {
+                Map<String, Long> snapshot = execSnapshot(container);
+                cpuUsec = valueOf(snapshot, "usage_usec");
+                oomKill = valueOf(snapshot, "oom_kill");
+            } else {
+                cpuUsec = valueOf(readHostFile(new File(hostDir, "cpu.stat")), "usage_usec");
+                oomKill = valueOf(readHostFile(new File(hostDir, "memory.events")), "oom_kill");
+            }
+            Long peakBytes = readPeak();
+            close();
+            return new Usage(Math.max(0, cpuUsec - cpuUsecBefore) / 1000, peakBytes == null ? null : peakBytes / 1024, oomKill > oomKillBefore);
+        }
+
+        /**
+         * 读取本次执行的内存峰值，峰值未能重置时返回 null
+         */
+        private Long readPeak() {
+            if (!peakReset) {
+                return null;
+            }
+            try {
+                peakFile.seek(0);
+                String line = peakFile.readLine();
+                return line == null ? null : Long.parseLong(line.trim());
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        private void closePeakFile() {
+            if (peakFile != null) {
+                try {
+                    peakFile.close();
+                } catch (IOException ignored) {
+                    // 句柄关闭失败不影响统计结果
+                }
+                peakFile = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            closePeakFile();
+        }
+    }
+
+    /**
+     * 资源使用情况
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Usage {
+
+        /**
+         * CPU 时间，单位毫秒，无法统计时为 null
+         */
+        private final Long cpuTimeMillis;
+
+        /**
+         * 本次执行的内存峰值，单位 KB，无法统计时为 null
+         */
+        private final Long peakMemoryKb;
+
+        /**
+         * 执行期间是否发生 OOM kill
+         */
+        private final boolean oomKilled;
+    }
+}
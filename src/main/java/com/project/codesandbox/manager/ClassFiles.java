@@ -0,0 +1,44 @@
+package com.project.codesandbox.manager;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 读取类及其全部内部类（含匿名类）的类文件，用于在独立的 JVM 中运行 agent 包下的类
+ * 按类路径扫描而不是手工列出内部类，新增内部类时不会漏掉
+ */
+public final class ClassFiles {
+
+    private ClassFiles() {
+    }
+
+    /**
+     * 读取类文件，类路径为目录或 Spring Boot 可执行 jar 时都可用
+     *
+     * @param type 外部类
+     * @return 相对类路径根目录的路径 -> 类文件内容，按路径排序
+     */
+    public static Map<String, byte[]> read(Class<?> type) throws IOException {
+        String path = type.getName().replace('.', '/');
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(type.getClassLoader());
+        String directory = path.substring(0, path.lastIndexOf('/') + 1);
+        Map<String, byte[]> classFiles = new TreeMap<>();
+        for (String pattern : new String[]{path + ".class", path + "$*.class"}) {
+            for (Resource resource : resolver.getResources("classpath*:" + pattern)) {
+                try (InputStream in = resource.getInputStream()) {
+                    classFiles.put(directory + resource.getFilename(), StreamUtils.copyToByteArray(in));
+                }
+            }
+        }
+        if (!classFiles.containsKey(path + ".class")) {
+            throw new IOException("类路径中找不到 " + path + ".class");
+        }
+        return classFiles;
+    }
+}
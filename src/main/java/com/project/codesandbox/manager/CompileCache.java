@@ -0,0 +1,351 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.project.codesandbox.config.CompileCacheProperties;
+import com.project.codesandbox.enums.LanguageEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 编译产物缓存
+ * 以 hash(语言, 编译命令, 镜像 ID, 源码) 为键，在宿主机上保存编译后的 /box 目录（tar）或编译错误信息，
+ * 相同的代码再次提交时直接把产物注入容器，跳过编译步骤
+ */
+@Slf4j
+@Component
+public class CompileCache {
+
+    private static final String ARTIFACT_FILE = "artifact.tar";
+
+    private static final String ERROR_FILE = "error.txt";
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private CompileCacheProperties compileCacheProperties;
+
+    @Resource
+    private SandboxImages sandboxImages;
+
+    /**
+     * 缓存键 -> 占用字节数，按访问顺序排列
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    /**
+     * 保护缓存索引，淘汰时锁内会删除目录，使用显式锁以免虚拟线程阻塞时占住载体线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!compileCacheProperties.isEnabled()) {
+            return;
+        }
+        File cacheDir = FileUtil.mkdir(compileCacheProperties.getDir());
+        // 上次进程退出时未完成写入的临时文件
+        File[] tmpFiles = cacheDir.listFiles((dir, name) -> name.endsWith(".tmp"));
+        if (tmpFiles != null) {
+            for (File tmpFile : tmpFiles) {
+                FileUtil.del(tmpFile);
+            }
+        }
+        File[] dirs = cacheDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        // 按修改时间恢复 LRU 顺序
+        Arrays.sort(dirs, Comparator.comparingLong(File::lastModified));
+        lock.lock();
+        try {
+            for (File dir : dirs) {
+                if (new File(dir, ARTIFACT_FILE).isFile() || new File(dir, ERROR_FILE).isFile()) {
+                    long size = FileUtil.size(dir);
+                    entries.put(dir.getName(), size);
+                    totalBytes += size;
+                } else {
+                    FileUtil.del(dir);
+                }
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        log.info("编译缓存已加载 {} 项，共 {} 字节", entries.size(), totalBytes);
+    }
+
+    /**
+     * 计算缓存键，不需要编译、缓存关闭或镜像无法解析时返回 null
+     *
+     * @param language   语言
+     * @param code       主文件源码
+     * @param extraFiles 其他源码文件，按路径排序
+     * @return 缓存键
+     */
+    public String key(LanguageEnum language, String code, Map<String, byte[]> extraFiles) {
+        if (!compileCacheProperties.isEnabled() || language.getCompileCmd() == null) {
+            return null;
+        }
+        String imageId = sandboxImages.getImageId(language);
+        if (imageId == null) {
+            return null;
+        }
+        String flags = String.join(" ", language.getCompileCmd());
+        StringBuilder source = new StringBuilder(code);
+        for (Map.Entry<String, byte[]> file : extraFiles.entrySet()) {
+            source.append('\0').append(file.getKey()).append('\0').append(DigestUtil.sha256Hex(file.getValue()));
+        }
+        return DigestUtil.sha256Hex(language.getLanguage() + '\0' + flags + '\0' + imageId + '\0' + source);
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param key 缓存键
+     * @return 命中时返回 {@link Entry}，否则返回 null
+     */
+    public Entry get(String key) {
+        if (key == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        File dir = entryDir(key);
+        File errorFile = new File(dir, ERROR_FILE);
+        File artifactFile = new File(dir, ARTIFACT_FILE);
+        Entry entry = null;
+        if (errorFile.isFile()) {
+            entry = new Entry(null, FileUtil.readString(errorFile, StandardCharsets.UTF_8));
+        } else if (artifactFile.isFile()) {
+            entry = new Entry(artifactFile, null);
+        }
+        if (entry == null) {
+            // 文件被外部删除
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * 缓存编译产物
+     *
+     * @param key        缓存键
+     * @param tarArchive 编译后 /box 目录的 tar 流
+     */
+    public void putArtifact(String key, InputStream tarArchive) {
+        if (key == null) {
+            return;
+        }
+        File tmp = null;
+        try {
+            tmp = newTempFile(key);
+            Files.copy(tarArchive, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            store(key, tmp, ARTIFACT_FILE);
+        } catch (IOException e) {
+            log.warn("写入编译缓存失败: {}", e.getMessage());
+            if (tmp != null) {
+                FileUtil.del(tmp);
+            }
+        }
+    }
+
+    /**
+     * 缓存宿主机编译后的文件，打包格式与从容器复制出的工作目录相同
+     *
+     * @param key   缓存键
+     * @param files 源码和编译产物
+     */
+    public void putArtifact(String key, SourceFiles files) {
+        if (key == null) {
+            return;
+        }
+        try (InputStream tarArchive = files.toTarStream(ContainerPool.WORK_DIR.substring(1))) {
+            putArtifact(key, tarArchive);
+        } catch (IOException e) {
+            log.warn("写入编译缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存编译错误
+     *
+     * @param key          缓存键
+     * @param errorMessage 编译错误信息
+     */
+    public void putError(String key, String errorMessage) {
+        if (key == null) {
+            return;
+        }
+        File tmp = null;
+        try {
+            tmp = newTempFile(key);
+            FileUtil.writeString(errorMessage == null ? "" : errorMessage, tmp, StandardCharsets.UTF_8);
+            store(key, tmp, ERROR_FILE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("写入编译缓存失败: {}", e.getMessage());
+            if (tmp != null) {
+                FileUtil.del(tmp);
+            }
+        }
+    }
+
+    /**
+     * 将缓存的编译产物注入容器
+     *
+     * @param container 容器
+     * @param entry     缓存项
+     * @return 是否注入成功，失败时需要重新编译
+     */
+    public boolean injectArtifact(SandboxContainer container, Entry entry) {
+        try (InputStream tarInputStream = new FileInputStream(entry.getArtifact())) {
+            dockerCalls.call(container.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(container.getId())
+                    .withTarInputStream(tarInputStream)
+                    .withRemotePath("/")
+                    .exec());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("注入编译缓存失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 将容器中编译后的 /box 目录保存到缓存
+     *
+     * @param container 容器
+     * @param key       缓存键
+     */
+    public void saveArtifact(SandboxContainer container, String key) {
+        if (key == null) {
+            return;
+        }
+        try (InputStream tarInputStream = dockerCalls.call(container.getDaemon(), "copyOut", client -> client.copyArchiveFromContainerCmd(container.getId(), ContainerPool.WORK_DIR).exec())) {
+            putArtifact(key, tarInputStream);
+        } catch (IOException | RuntimeException e) {
+            log.warn("保存编译缓存失败: {}", e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 每次写入使用独立的临时文件，相同代码同时提交时不会写进同一个文件
+     */
+    private File newTempFile(String key) throws IOException {
+        return File.createTempFile(key + "-", ".tmp", new File(compileCacheProperties.getDir()));
+    }
+
+    private void store(String key, File tmp, String fileName) throws IOException {
+        long size = tmp.length();
+        if (size > compileCacheProperties.getMaxBytes()) {
+            FileUtil.del(tmp);
+            return;
+        }
+        File dir = entryDir(key);
+        FileUtil.mkdir(dir);
+        Files.move(tmp.toPath(), new File(dir, fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        lock.lock();
+        try {
+            Long old = entries.put(key, size);
+            totalBytes += size - (old == null ? 0 : old);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String key) {
+        lock.lock();
+        try {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+            FileUtil.del(entryDir(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 淘汰最久未使用的缓存，调用方需持有锁
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > compileCacheProperties.getMaxBytes() && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            FileUtil.del(entryDir(eldest.getKey()));
+        }
+    }
+
+    private File entryDir(String key) {
+        return new File(compileCacheProperties.getDir(), key);
+    }
+
+    /**
+     * 缓存项，artifact 与 errorMessage 二选一
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        /**
+         * 编译后 /box 目录的 tar 文件
+         */
+        private final File artifact;
+
+        /**
+         * 编译错误信息
+         */
+        private final String errorMessage;
+
+        public boolean isCompileError() {
+            return artifact == null;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.HostConfig;
+import com.project.codesandbox.config.ContainerPoolProperties;
+import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.model.PoolStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按语言划分的预热容器池
+ * 容器预先创建并启动（禁用网络），请求时借出，归还后清空 /box 再放回池中，
+ * 复用次数达到上限或状态异常时销毁并由后台任务补充
+ */
+@Slf4j
+@Component
+public class ContainerPool {
+
+    /**
+     * 内存限制，单位为字节，默认为 128 MB
+     */
+    private static final long MEMORY_LIMIT = 1024 * 1024 * 128;
+
+    private static final long MEMORY_SWAP = 0;
+
+    /**
+     * 最大可消耗的 cpu 数
+     */
+    private static final long CPU_COUNT = 1;
+
+    public static final String WORK_DIR = "/box";
+
+    /**
+     * 杀掉残留的用户进程并清空工作目录，kill -1 不会影响容器的 1 号进程和自身
+     */
+    private static final String[] RESET_CMD = {"sh", "-c",
+            "kill -9 -1 2>/dev/null; rm -rf /box/* /box/.[!.]* /box/..?* 2>/dev/null; true"};
+
+    /**
+     * 等待空闲容器时的轮询间隔，期间若有容器被销毁可以及时新建
+     */
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private DockerDaemons dockerDaemons;
+
+    @Resource
+    private BuildCache buildCache;
+
+    @Resource
+    private SandboxImages sandboxImages;
+
+    @Resource
+    private ContainerPoolProperties poolProperties;
+
+    @Resource
+    private JudgeAgent judgeAgent;
+
+    @Resource
+    private ContainerReaper containerReaper;
+
+    /**
+     * 每个守护进程各自的语言容器池，容器上限按守护进程分别计算
+     */
+    private final Map<DockerDaemon, Map<LanguageEnum, LanguagePool>> pools = new LinkedHashMap<>();
+
+    /**
+     * 各语言借出中的容器数，容器池关闭时同样统计
+     */
+    private final Map<LanguageEnum, AtomicInteger> leased = new EnumMap<>(LanguageEnum.class);
+
+    private ExecutorService poolExecutor;
+
+    private final AtomicLong warmLeases = new AtomicLong();
+
+    private final AtomicLong coldLeases = new AtomicLong();
+
+    private final AtomicLong leaseWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+
+    private final AtomicLong recycled = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        for (DockerDaemon daemon : dockerDaemons.getAll()) {
+            Map<LanguageEnum, LanguagePool> daemonPools = new EnumMap<>(LanguageEnum.class);
+            for (LanguageEnum language : LanguageEnum.values()) {
+                daemonPools.put(language, new LanguagePool());
+            }
+            pools.put(daemon, daemonPools);
+        }
+        for (LanguageEnum language : LanguageEnum.values()) {
+            leased.put(language, new AtomicInteger());
+        }
+        poolExecutor = Executors.newFixedThreadPool(2, ThreadFactoryBuilder.create()
+                .setNamePrefix("container-pool-")
+                .setDaemon(true)
+                .build());
+        if (poolProperties.isEnabled()) {
+            // 异步预热，Docker 不可用时不影响服务启动
+            poolExecutor.execute(this::maintain);
+        }
+    }
+
+    /**
+     * 借用容器，在负载最低的守护进程上优先使用空闲的预热容器，没有时在上限内新建，否则等待归还
+     *
+     * @param language 语言
+     * @return {@link SandboxContainer}
+     */
+    public SandboxContainer lease(LanguageEnum language) throws InterruptedException {
+        long start = System.nanoTime();
+        if (!poolProperties.isEnabled()) {
+            SandboxContainer container = createContainer(selectDaemon(), language);
+            recordLease(container, start, false);
+            return container;
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(poolProperties.getLeaseTimeoutMillis());
+        while (true) {
+            // 每轮重新选择，等待期间负载或健康状态可能变化
+            DockerDaemon daemon = selectDaemon();
+            LanguagePool pool = pools.get(daemon).get(language);
+            SandboxContainer container = pool.idle.pollFirst();
+            if (container != null) {
+                recordLease(container, start, true);
+                return container;
+            }
+            if (pool.tryReserve(poolProperties.getMaxSize())) {
+                container = createReserved(daemon, language, pool);
+                recordLease(container, start, false);
+                return container;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IllegalStateException("获取沙箱容器超时");
+            }
+            container = pool.idle.pollFirst(Math.min(remaining, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+            if (container != null) {
+                recordLease(container, start, true);
+                return container;
+            }
+        }
+    }
+
+    /**
+     * 尝试借用容器，没有空闲容器且已达上限时立即返回 null，不等待
+     *
+     * @param language 语言
+     * @return {@link SandboxContainer}
+     */
+    public SandboxContainer tryLease(LanguageEnum language) {
+        long start = System.nanoTime();
+        DockerDaemon daemon = dockerDaemons.select();
+        if (daemon == null) {
+            return null;
+        }
+        if (!poolProperties.isEnabled()) {
+            SandboxContainer container = createContainer(daemon, language);
+            recordLease(container, start, false);
+            return container;
+        }
+        LanguagePool pool = pools.get(daemon).get(language);
+        SandboxContainer container = pool.idle.pollFirst();
+        if (container != null) {
+            recordLease(container, start, true);
+            return container;
+        }
+        if (pool.tryReserve(poolProperties.getMaxSize())) {
+            container = createReserved(daemon, language, pool);
+            recordLease(container, start, false);
+            return container;
+        }
+        return null;
+    }
+
+    /**
+     * 归还容器，在后台线程中重置后放回池中
+     *
+     * @param container 容器
+     */
+    public void release(SandboxContainer container) {
+        if (container == null) {
+            return;
+        }
+        leased.get(container.getLanguage()).decrementAndGet();
+        container.getDaemon().getActiveContainers().decrementAndGet();
+        int uses = container.incrementUses();
+        if (!poolProperties.isEnabled()) {
+            destroy(container);
+            return;
+        }
+        if (!container.isHealthy() || uses >= poolProperties.getMaxUses()) {
+            recycled.incrementAndGet();
+            destroy(container);
+            return;
+        }
+        poolExecutor.execute(() -> {
+            if (reset(container)) {
+                pools.get(container.getDaemon()).get(container.getLanguage()).idle.offerFirst(container);
+            } else {
+                recycled.incrementAndGet();
+                destroy(container);
+            }
+        });
+    }
+
+    /**
+     * 补充空闲容器并剔除已经停止的容器
+     */
+    @Scheduled(fixedDelayString = "${codesandbox.pool.maintain-interval-millis:10000}")
+    public void maintain() {
+        sandboxImages.refreshImageIds();
+        if (!poolProperties.isEnabled()) {
+            return;
+        }
+        for (Map.Entry<DockerDaemon, Map<LanguageEnum, LanguagePool>> daemonEntry : pools.entrySet()) {
+            DockerDaemon daemon = daemonEntry.getKey();
+            if (daemon.isOpen()) {
+                continue;
+            }
+            try {
+                maintain(daemon, daemonEntry.getValue());
+            } catch (RuntimeException e) {
+                log.warn("{} 上的容器池维护失败: {}", daemon.getHost(), e.getMessage());
+            }
+        }
+    }
+
+    private void maintain(DockerDaemon daemon, Map<LanguageEnum, LanguagePool> daemonPools) {
+        for (Map.Entry<LanguageEnum, LanguagePool> entry : daemonPools.entrySet()) {
+            LanguagePool pool = entry.getValue();
+            int idleCount = pool.idle.size();
+            for (int i = 0; i < idleCount; i++) {
+                SandboxContainer container = pool.idle.pollLast();
+                if (container == null) {
+                    break;
+                }
+                if (isRunning(container)) {
+                    pool.idle.offerFirst(container);
+                } else {
+                    recycled.incrementAndGet();
+                    destroy(container);
+                }
+            }
+            while (pool.idle.size() < poolProperties.getMinIdle() && pool.tryReserve(poolProperties.getMaxSize())) {
+                pool.idle.offerLast(createReserved(daemon, entry.getKey(), pool));
+            }
+        }
+    }
+
+    /**
+     * 借出中的容器数
+     */
+    public int getActiveCount(LanguageEnum language) {
+        return leased.get(language).get();
+    }
+
+    /**
+     * 空闲的预热容器数
+     */
+    public int getIdleCount(LanguageEnum language) {
+        int count = 0;
+        for (Map<LanguageEnum, LanguagePool> daemonPools : pools.values()) {
+            count += daemonPools.get(language).idle.size();
+        }
+        return count;
+    }
+
+    public PoolStats getStats() {
+        long leases = warmLeases.get() + coldLeases.get();
+        Map<String, Integer> idle = new LinkedHashMap<>();
+        Map<String, Integer> total = new LinkedHashMap<>();
+        pools.values().forEach(daemonPools -> daemonPools.forEach((language, pool) -> {
+            idle.merge(language.getLanguage(), pool.idle.size(), Integer::sum);
+            total.merge(language.getLanguage(), pool.total.get(), Integer::sum);
+        }));
+        return PoolStats.builder()
+                .warmLeases(warmLeases.get())
+                .coldLeases(coldLeases.get())
+                .avgLeaseWaitMillis(leases == 0 ? 0 : leaseWaitNanos.get() / 1e6 / leases)
+                .maxLeaseWaitMillis(maxLeaseWaitNanos.get() / 1e6)
+                .recycled(recycled.get())
+                .idle(idle)
+                .total(total)
+                .daemons(dockerDaemons.getStats())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poolExecutor.shutdownNow();
+        for (Map<LanguageEnum, LanguagePool> daemonPools : pools.values()) {
+            for (LanguagePool pool : daemonPools.values()) {
+                SandboxContainer container;
+                while ((container = pool.idle.pollFirst()) != null) {
+                    destroy(container);
+                }
+            }
+        }
+    }
+
+    private void recordLease(SandboxContainer container, long start, boolean warm) {
+        leased.get(container.getLanguage()).incrementAndGet();
+        container.getDaemon().getActiveContainers().incrementAndGet();
+        long wait = System.nanoTime() - start;
+        leaseWaitNanos.addAndGet(wait);
+        maxLeaseWaitNanos.accumulateAndGet(wait, Math::max);
+        if (warm) {
+            warmLeases.incrementAndGet();
+        } else {
+            coldLeases.incrementAndGet();
+        }
+    }
+
+    /**
+     * 在已预留名额的情况下新建容器，失败时释放名额
+     */
+    private SandboxContainer createReserved(DockerDaemon daemon, LanguageEnum language, LanguagePool pool) {
+        try {
+            return createContainer(daemon, language);
+        } catch (RuntimeException e) {
+            pool.total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 选择负载最低的守护进程，全部不可用时失败
+     */
+    private DockerDaemon selectDaemon() {
+        DockerDaemon daemon = dockerDaemons.select();
+        if (daemon == null) {
+            throw new IllegalStateException("没有可用的 Docker 守护进程");
+        }
+        return daemon;
+    }
+
+    /**
+     * 在指定守护进程上创建并启动容器
+     *
+     * @return {@link SandboxContainer}
+     */
+    private SandboxContainer createContainer(DockerDaemon daemon, LanguageEnum language) {
+        HostConfig hostConfig = new HostConfig();
+        hostConfig.withMemory(MEMORY_LIMIT);
+        hostConfig.withMemorySwap(MEMORY_SWAP);
+        hostConfig.withCpuCount(CPU_COUNT);
+        hostConfig.withBinds(buildCache.binds(language));
+
+        CreateContainerResponse createContainerResponse = dockerCalls.call(daemon, "create", client -> client.createContainerCmd(sandboxImages.get(language))
+                .withLabels(containerReaper.labels())
+                .withHostConfig(hostConfig)
+                .withNetworkDisabled(true)
+                .withAttachStdin(true)
+                .withAttachStderr(true)
+                .withAttachStdout(true)
+                .withTty(true)
+                .exec());
+        String containerId = createContainerResponse.getId();
+        containerReaper.track(containerId);
+        try {
+            dockerCalls.call(daemon, "start", client -> client.startContainerCmd(containerId).exec());
+        } catch (RuntimeException e) {
+            containerReaper.reap(daemon, containerId);
+            throw e;
+        }
+        SandboxContainer container = new SandboxContainer(containerId, language, daemon);
+        judgeAgent.install(container);
+        return container;
+    }
+
+    /**
+     * 清空容器工作目录
+     *
+     * @return 重置后容器是否可以继续使用
+     */
+    private boolean reset(SandboxContainer container) {
+        try (ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<>()) {
+            ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(container.getId())
+                    .withCmd(RESET_CMD)
+                    .withAttachStdout(true)
+                    .withAttachStderr(true)
+                    .exec());
+            String execId = execCreateCmdResponse.getId();
+            boolean completed = dockerCalls.call(container.getDaemon(), "execStart", client -> client.execStartCmd(execId)
+                    .exec(callback))
+                    .awaitCompletion(poolProperties.getResetTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (!completed) {
+                return false;
+            }
+            Long exitCode = dockerCalls.call(container.getDaemon(), "inspectExec", client -> client.inspectExecCmd(execId).exec()).getExitCodeLong();
+            if (exitCode == null || exitCode != 0 || !isRunning(container)) {
+                return false;
+            }
+            // 重新复制评测代理，避免被上一次提交的代码篡改
+            judgeAgent.install(container);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            log.warn("重置容器 {} 失败: {}", container.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isRunning(SandboxContainer container) {
+        try {
+            Boolean running = dockerCalls.call(container.getDaemon(), "inspect", client -> client.inspectContainerCmd(container.getId()).exec()).getState().getRunning();
+            return Boolean.TRUE.equals(running);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 释放名额并交给后台回收，不等待删除完成
+     */
+    private void destroy(SandboxContainer container) {
+        if (poolProperties.isEnabled()) {
+            pools.get(container.getDaemon()).get(container.getLanguage()).total.decrementAndGet();
+        }
+        containerReaper.reap(container.getDaemon(), container.getId());
+    }
+
+    /**
+     * 单个语言的容器池
+     */
+    private static class LanguagePool {
+
+        private final LinkedBlockingDeque<SandboxContainer> idle = new LinkedBlockingDeque<>();
+
+        /**
+         * 容器总数，包括空闲、借出以及正在创建的容器
+         */
+        private final AtomicInteger total = new AtomicInteger();
+
+        private boolean tryReserve(int maxSize) {
+            int current;
+            do {
+                current = total.get();
+                if (current >= maxSize) {
+                    return false;
+                }
+            } while (!total.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+}
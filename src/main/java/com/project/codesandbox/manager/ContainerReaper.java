@@ -0,0 +1,277 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Container;
+import com.project.codesandbox.config.ReaperProperties;
+import com.project.codesandbox.model.ReaperStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 容器回收
+ * 容器的删除在后台线程中批量强制执行，不占用请求线程；启动时和定时扫描带有本服务标签但不在内存中跟踪的容器，
+ * 回收服务崩溃或删除失败后遗留的孤儿容器
+ */
+@Slf4j
+@Component
+public class ContainerReaper {
+
+    /**
+     * 标记容器由本服务创建
+     */
+    public static final String LABEL_OWNER = "codesandbox.owner";
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private DockerDaemons dockerDaemons;
+
+    @Resource
+    private ReaperProperties reaperProperties;
+
+    /**
+     * 本服务创建且尚未删除的容器，包括等待删除的容器
+     */
+    private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 本实例的归属标识
+     */
+    private String ownerId;
+
+    private final LinkedBlockingQueue<Reap> queue = new LinkedBlockingQueue<>();
+
+    private ExecutorService reaperExecutor;
+
+    private final AtomicLong reaped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong orphansFound = new AtomicLong();
+
+    private final AtomicLong totalLagMillis = new AtomicLong();
+
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        ownerId = resolveOwnerId();
+        log.info("容器归属标识: {}", ownerId);
+        int threads = Math.max(1, reaperProperties.getThreads());
+        // 多一个线程用于启动时扫描
+        reaperExecutor = Executors.newFixedThreadPool(threads + 1, ThreadFactoryBuilder.create()
+                .setNamePrefix("container-reaper-")
+                .setDaemon(true)
+                .build());
+        for (int i = 0; i < threads; i++) {
+            reaperExecutor.execute(this::reapLoop);
+        }
+        // 异步扫描，Docker 不可用时不影响服务启动
+        reaperExecutor.execute(this::sweep);
+    }
+
+    /**
+     * 创建容器时使用的标签
+     */
+    public Map<String, String> labels() {
+        Map<String, String> labels = new HashMap<>();
+        labels.put(LABEL_OWNER, ownerId);
+        return labels;
+    }
+
+    /**
+     * 跟踪新建的容器，孤儿扫描会跳过被跟踪的容器
+     *
+     * @param containerId 容器 ID
+     */
+    public void track(String containerId) {
+        tracked.add(containerId);
+    }
+
+    /**
+     * 提交删除，立即返回
+     *
+     * @param daemon      容器所在的守护进程
+     * @param containerId 容器 ID
+     */
+    public void reap(DockerDaemon daemon, String containerId) {
+        tracked.add(containerId);
+        queue.offer(new Reap(daemon, containerId, System.currentTimeMillis()));
+    }
+
+    /**
+     * 扫描孤儿容器并提交删除
+     */
+    @Scheduled(initialDelayString = "${codesandbox.reaper.sweep-interval-millis:60000}",
+            fixedDelayString = "${codesandbox.reaper.sweep-interval-millis:60000}")
+    public void sweep() {
+        for (DockerDaemon daemon : dockerDaemons.getAll()) {
+            if (!daemon.isOpen()) {
+                sweep(daemon);
+            }
+        }
+    }
+
+    private void sweep(DockerDaemon daemon) {
+        List<Container> containers;
+        try {
+            containers = dockerCalls.call(daemon, "list", client -> client.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(Collections.singletonMap(LABEL_OWNER, ownerId))
+                    .exec());
+        } catch (RuntimeException e) {
+            log.warn("扫描 {} 上的孤儿容器失败: {}", daemon.getHost(), e.getMessage());
+            return;
+        }
+        long createdBefore = System.currentTimeMillis() - reaperProperties.getOrphanGraceMillis();
+        int found = 0;
+        for (Container container : containers) {
+            Long created = container.getCreated();
+            if (tracked.contains(container.getId()) || created == null || created * 1000 > createdBefore) {
+                continue;
+            }
+            found++;
+            reap(daemon, container.getId());
+        }
+        if (found > 0) {
+            orphansFound.addAndGet(found);
+            log.info("在 {} 上发现 {} 个孤儿容器，已提交回收", daemon.getHost(), found);
+        }
+    }
+
+    /**
+     * 优先使用配置的标识，否则沿用文件中保存的标识，都没有时生成新的标识并保存
+     */
+    private String resolveOwnerId() {
+        if (StrUtil.isNotBlank(reaperProperties.getOwnerId())) {
+            return reaperProperties.getOwnerId().trim();
+        }
+        File file = new File(reaperProperties.getOwnerIdFile());
+        if (file.isFile()) {
+            String saved = FileUtil.readString(file, StandardCharsets.UTF_8).trim();
+            if (!saved.isEmpty()) {
+                return saved;
+            }
+        }
+        String generated = localHostName() + "-" + RandomUtil.randomString(8);
+        try {
+            FileUtil.writeString(generated, file, StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            log.warn("保存容器归属标识失败，重启后无法回收本次运行遗留的容器: {}", e.getMessage());
+        }
+        return generated;
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "codesandbox";
+        }
+    }
+
+    public ReaperStats getStats() {
+        long reapedCount = reaped.get();
+        return ReaperStats.builder()
+                .pending(queue.size())
+                .tracked(tracked.size())
+                .reaped(reapedCount)
+                .failed(failed.get())
+                .orphansFound(orphansFound.get())
+                .avgLagMillis(reapedCount == 0 ? 0 : (double) totalLagMillis.get() / reapedCount)
+                .maxLagMillis(maxLagMillis.get())
+                .build();
+    }
+
+    /**
+     * 关闭时尽量删除剩余的容器，未删除的由下次启动时的扫描回收
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        reaperExecutor.shutdown();
+        long deadline = System.currentTimeMillis() + reaperProperties.getShutdownTimeoutMillis();
+        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        reaperExecutor.shutdownNow();
+    }
+
+    private void reapLoop() {
+        List<Reap> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, Math.max(0, reaperProperties.getBatchSize() - 1));
+            for (Reap reap : batch) {
+                remove(reap);
+            }
+            batch.clear();
+        }
+    }
+
+    private void remove(Reap reap) {
+        try {
+            dockerCalls.call(reap.daemon, "remove", client -> client.removeContainerCmd(reap.containerId).withForce(true).withRemoveVolumes(true).exec());
+        } catch (NotFoundException e) {
+            // 已经不存在，视为删除成功
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            tracked.remove(reap.containerId);
+            log.warn("删除容器 {} 失败: {}", reap.containerId, e.getMessage());
+            return;
+        }
+        tracked.remove(reap.containerId);
+        long lag = System.currentTimeMillis() - reap.submitTime;
+        reaped.incrementAndGet();
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+    }
+
+    /**
+     * 一次删除请求
+     */
+    private static class Reap {
+
+        private final DockerDaemon daemon;
+
+        private final String containerId;
+
+        private final long submitTime;
+
+        private Reap(DockerDaemon daemon, String containerId, long submitTime) {
+            this.daemon = daemon;
+            this.containerId = containerId;
+            this.submitTime = submitTime;
+        }
+    }
+}
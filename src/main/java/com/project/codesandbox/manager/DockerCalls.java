@@ -0,0 +1,180 @@
+package com.project.codesandbox.manager;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.DockerException;
+import com.project.codesandbox.config.DockerProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Docker 调用的期限和熔断
+ * 每次调用在单独的线程上执行并按操作设置期限，超时后调用方立即返回；中断打断不了 httpclient5 阻塞的 socket 读取，
+ * 超时的调用线程要到客户端的响应超时才结束，因此每个守护进程同时进行的调用数有上限，名额在调用线程结束时归还，
+ * 名额用完时等待计入期限。同一守护进程连续失败（超时、连接错误、5xx）达到阈值后熔断，
+ * 熔断期间直接失败，到期后放行一次试探调用，成功则恢复。4xx（容器不存在、冲突等）说明守护进程正常，不计为失败
+ */
+@Slf4j
+@Component
+public class DockerCalls {
+
+    @Resource
+    private DockerProperties dockerProperties;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    private ExecutorService callExecutor;
+
+    @PostConstruct
+    public void init() {
+        callExecutor = Executors.newCachedThreadPool(sandboxThreads.newThreadFactory("docker-call-", true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    /**
+     * 在期限内执行一次 Docker 调用
+     *
+     * @param daemon    守护进程
+     * @param operation 操作名，用于查找期限和日志
+     * @param action    调用
+     * @return 调用结果
+     * @throws UnavailableException 熔断中或调用超时
+     */
+    public <T> T call(DockerDaemon daemon, String operation, DockerCall<T> action) {
+        acquire(daemon, operation);
+        long timeoutMillis = dockerProperties.getCallTimeouts().getOrDefault(operation, dockerProperties.getCallTimeoutMillis());
+        long start = System.currentTimeMillis();
+        Semaphore permits = daemon.getCallPermits();
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                onFailure(daemon, operation);
+                throw new UnavailableException("Docker " + daemon.getHost() + " 同时进行的调用已达上限，" + operation + " 等待超过 " + timeoutMillis + " 毫秒");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnavailableException("Docker 调用 " + operation + " 被中断");
+        }
+        // 调用线程开始执行或调用方放弃时置位，只有先置位的一方归还名额，取消时尚未开始的调用不会漏还
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = callExecutor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return action.call(daemon.getClient());
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new UnavailableException("Docker 调用 " + operation + " 被拒绝: 服务正在关闭");
+        }
+        try {
+            T result = future.get(Math.max(0, timeoutMillis - (System.currentTimeMillis() - start)), TimeUnit.MILLISECONDS);
+            onSuccess(daemon, start);
+            return result;
+        } catch (TimeoutException e) {
+            abandon(future, claimed, permits);
+            onFailure(daemon, operation);
+            throw new UnavailableException("Docker " + daemon.getHost() + " 调用 " + operation + " 超过 " + timeoutMillis + " 毫秒");
+        } catch (InterruptedException e) {
+            abandon(future, claimed, permits);
+            Thread.currentThread().interrupt();
+            throw new UnavailableException("Docker 调用 " + operation + " 被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DockerException && ((DockerException) cause).getHttpStatus() < 500) {
+                onSuccess(daemon, start);
+            } else {
+                onFailure(daemon, operation);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UnavailableException("Docker " + daemon.getHost() + " 调用 " + operation + " 失败: " + cause.getMessage());
+        }
+    }
+
+    private static void abandon(Future<?> future, AtomicBoolean claimed, Semaphore permits) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+
+    /**
+     * 熔断中直接失败；熔断到期后只允许一个调用通过，其余调用继续失败直到试探结束
+     */
+    private void acquire(DockerDaemon daemon, String operation) {
+        AtomicLong openUntil = daemon.getOpenUntil();
+        long until = openUntil.get();
+        if (until == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (until > now || !openUntil.compareAndSet(until, now + dockerProperties.getBreakerOpenMillis())) {
+            throw new UnavailableException("Docker " + daemon.getHost() + " 不可用，已熔断，拒绝调用 " + operation);
+        }
+    }
+
+    private void onSuccess(DockerDaemon daemon, long start) {
+        daemon.recordLatency(System.currentTimeMillis() - start);
+        daemon.getConsecutiveFailures().set(0);
+        if (daemon.getOpenUntil().getAndSet(0) != 0) {
+            log.info("Docker {} 调用恢复，关闭熔断", daemon.getHost());
+        }
+    }
+
+    private void onFailure(DockerDaemon daemon, String operation) {
+        int failures = daemon.getConsecutiveFailures().incrementAndGet();
+        if (failures >= dockerProperties.getBreakerFailureThreshold()) {
+            long until = System.currentTimeMillis() + dockerProperties.getBreakerOpenMillis();
+            if (daemon.getOpenUntil().getAndSet(until) == 0) {
+                log.warn("Docker {} 调用连续失败 {} 次（最近一次 {}），熔断 {} 毫秒", daemon.getHost(), failures, operation,
+                        dockerProperties.getBreakerOpenMillis());
+            }
+        }
+    }
+
+    /**
+     * 使用守护进程的客户端发起的一次调用
+     */
+    @FunctionalInterface
+    public interface DockerCall<T> {
+
+        T call(DockerClient client) throws Exception;
+    }
+
+    /**
+     * Docker 熔断或调用超时
+     */
+    public static class UnavailableException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public UnavailableException(String message) {
+            super(message);
+        }
+    }
+}
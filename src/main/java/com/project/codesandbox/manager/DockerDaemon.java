@@ -0,0 +1,83 @@
+package com.project.codesandbox.manager;
+
+import com.github.dockerjava.api.DockerClient;
+import lombok.Getter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个 Docker 守护进程，记录调度所需的负载、延迟和熔断状态
+ */
+@Getter
+public class DockerDaemon {
+
+    /**
+     * 延迟的指数加权平均系数
+     */
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final String host;
+
+    private final DockerClient client;
+
+    /**
+     * 借出中的容器数
+     */
+    private final AtomicInteger activeContainers = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 熔断到期时间，为 0 时未熔断
+     */
+    private final AtomicLong openUntil = new AtomicLong();
+
+    /**
+     * 同时进行的调用数上限，调用线程结束时才归还，超时后仍阻塞在读取上的调用继续占用
+     */
+    private final Semaphore callPermits;
+
+    /**
+     * 最近调用耗时的加权平均，单位毫秒
+     */
+    private volatile double latencyMillis;
+
+    public DockerDaemon(String host, DockerClient client, int maxConcurrentCalls) {
+        this.host = host;
+        this.client = client;
+        this.callPermits = new Semaphore(maxConcurrentCalls);
+    }
+
+    /**
+     * 是否处于熔断中，熔断期间不参与调度
+     */
+    public boolean isOpen() {
+        return openUntil.get() > System.currentTimeMillis();
+    }
+
+    /**
+     * 是否为本机 unix socket 上的守护进程，只有本机容器才能直接读取宿主机 cgroup 目录
+     */
+    public boolean isLocal() {
+        return host.startsWith("unix://");
+    }
+
+    /**
+     * 调度分数，越小越优先：借出容器越多、延迟越高分数越大
+     */
+    public double score() {
+        return (activeContainers.get() + 1) * Math.max(1.0, latencyMillis);
+    }
+
+    void recordLatency(long millis) {
+        double current = latencyMillis;
+        latencyMillis = current == 0 ? millis : current + LATENCY_ALPHA * (millis - current);
+    }
+
+    @Override
+    public String toString() {
+        return host;
+    }
+}
@@ -0,0 +1,133 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
+import com.project.codesandbox.config.DockerProperties;
+import com.project.codesandbox.model.DaemonStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Docker 守护进程列表
+ * 每个守护进程使用各自的 httpclient5 客户端（写入 exec 的 stdin 需要连接劫持，只有该传输支持）。
+ * 借用容器时选择未熔断且分数最小的守护进程；熔断的守护进程由定时 ping 试探，恢复后重新参与调度
+ */
+@Slf4j
+@Component
+public class DockerDaemons {
+
+    @Resource
+    private DockerProperties dockerProperties;
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    private List<DockerDaemon> daemons;
+
+    @PostConstruct
+    public void init() {
+        List<DockerDaemon> list = new ArrayList<>();
+        if (CollUtil.isEmpty(dockerProperties.getHosts())) {
+            // 未配置时使用 DOCKER_HOST 环境变量或默认的 unix socket
+            DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
+            list.add(new DockerDaemon(config.getDockerHost().toString(), buildClient(config), dockerProperties.getMaxConcurrentCalls()));
+        } else {
+            for (String host : dockerProperties.getHosts()) {
+                DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder().withDockerHost(host).build();
+                list.add(new DockerDaemon(host, buildClient(config), dockerProperties.getMaxConcurrentCalls()));
+            }
+        }
+        daemons = Collections.unmodifiableList(list);
+        log.info("使用 {} 个 Docker 守护进程: {}", daemons.size(), daemons);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (DockerDaemon daemon : daemons) {
+            try {
+                daemon.getClient().close();
+            } catch (IOException e) {
+                log.warn("关闭 Docker 客户端 {} 失败: {}", daemon.getHost(), e.getMessage());
+            }
+        }
+    }
+
+    public List<DockerDaemon> getAll() {
+        return daemons;
+    }
+
+    /**
+     * 选择未熔断且分数最小的守护进程，全部熔断时返回 null
+     */
+    public DockerDaemon select() {
+        DockerDaemon best = null;
+        for (DockerDaemon daemon : daemons) {
+            if (!daemon.isOpen() && (best == null || daemon.score() < best.score())) {
+                best = daemon;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 熔断中的守护进程数
+     */
+    public long getOpenCount() {
+        return daemons.stream().filter(DockerDaemon::isOpen).count();
+    }
+
+    /**
+     * ping 未熔断和熔断已到期的守护进程，更新健康状态和延迟，试探成功后关闭熔断
+     */
+    @Scheduled(fixedDelayString = "${codesandbox.docker.health-check-interval-millis:5000}")
+    public void checkHealth() {
+        for (DockerDaemon daemon : daemons) {
+            if (daemon.isOpen()) {
+                continue;
+            }
+            try {
+                dockerCalls.call(daemon, "ping", client -> client.pingCmd().exec());
+            } catch (RuntimeException e) {
+                log.debug("Docker 守护进程 {} 不可用: {}", daemon.getHost(), e.getMessage());
+            }
+        }
+    }
+
+    public List<DaemonStats> getStats() {
+        List<DaemonStats> stats = new ArrayList<>();
+        for (DockerDaemon daemon : daemons) {
+            stats.add(DaemonStats.builder()
+                    .host(daemon.getHost())
+                    .healthy(!daemon.isOpen())
+                    .activeContainers(daemon.getActiveContainers().get())
+                    .latencyMillis(daemon.getLatencyMillis())
+                    .build());
+        }
+        return stats;
+    }
+
+    private DockerClient buildClient(DockerClientConfig config) {
+        ApacheDockerHttpClient httpClient = new ApacheDockerHttpClient.Builder()
+                .dockerHost(config.getDockerHost())
+                .sslConfig(config.getSSLConfig())
+                .maxConnections(dockerProperties.getMaxConnections())
+                .connectionTimeout(Duration.ofMillis(dockerProperties.getConnectTimeoutMillis()))
+                .responseTimeout(Duration.ofMillis(dockerProperties.getResponseTimeoutMillis()))
+                .build();
+        return DockerClientImpl.getInstance(config, httpClient);
+    }
+}
@@ -4,30 +4,27 @@ import java.io.*;
 import java.util.Collections;
 
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.StrUtil;
-import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.async.ResultCallback;
-import com.github.dockerjava.api.command.CreateContainerCmd;
-import com.github.dockerjava.api.command.CreateContainerResponse;
 import com.github.dockerjava.api.command.ExecCreateCmdResponse;
-import com.github.dockerjava.api.command.StatsCmd;
 import com.github.dockerjava.api.model.*;
-import com.github.dockerjava.core.DockerClientBuilder;
+import com.project.codesandbox.config.DockerProperties;
 import com.project.codesandbox.enums.ExecuteStatusEnum;
 import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.enums.PhaseEnum;
 import com.project.codesandbox.model.CodeExecuteRequest;
 import com.project.codesandbox.model.CodeExecuteResponse;
 import com.project.codesandbox.model.ExecuteResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StopWatch;
+
+import javax.annotation.Resource;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -37,27 +34,46 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class DockerSandboxArgs {
 
-    private static final DockerClient DOCKER_CLIENT = DockerClientBuilder.getInstance().build();
+    private static long timeoutLimit = 3;
 
-    private static String image = "codesandbox1:latest";
+    private static TimeUnit timeUnit = TimeUnit.SECONDS;
 
-    /**
-     * 内存限制，单位为字节，默认为 1024 * 1024 * 60 MB
-     */
-    private static long memoryLimit = 1024 * 1024 * 128;
+    @Resource
+    private DockerCalls dockerCalls;
 
-    private static long memorySwap = 0;
+    @Resource
+    private DockerProperties dockerProperties;
 
-    /**
-     * 最大可消耗的 cpu 数
-     */
-    private static long cpuCount = 1;
+    @Resource
+    private ContainerPool containerPool;
 
-    private static long timeoutLimit = 3;
+    @Resource
+    private CompileCache compileCache;
 
-    private static TimeUnit timeUnit = TimeUnit.SECONDS;
+    @Resource
+    private ParallelCaseRunner parallelCaseRunner;
+
+    @Resource
+    private OutputLimiter outputLimiter;
+
+    @Resource
+    private CgroupAccounting cgroupAccounting;
+
+    @Resource
+    private JudgeAgent judgeAgent;
+
+    @Resource
+    private BuildCache buildCache;
+
+    @Resource
+    private HostJavaCompiler hostJavaCompiler;
+
+    @Resource
+    private OutputChecker outputChecker;
+
+    @Resource
+    private SandboxMetrics sandboxMetrics;
 
-    private static StopWatch stopWatch = new StopWatch();
     /**
      * 执行代码
      *
@@ -65,9 +81,18 @@ public class DockerSandboxArgs {
      * @return {@link CodeExecuteResponse}
      */
     public CodeExecuteResponse execute(CodeExecuteRequest codeExecuteRequest) {
+        SandboxMetrics.PhaseTimer timer = sandboxMetrics.start(SandboxMetrics.MODE_ARGS, codeExecuteRequest.getLanguage());
+        CodeExecuteResponse response = null;
+        try {
+            response = doExecute(codeExecuteRequest, timer);
+            return response;
+        } finally {
+            timer.finish(response);
+        }
+    }
 
-        // 写入文件
-        String userDir = System.getProperty("user.dir");
+    private CodeExecuteResponse doExecute(CodeExecuteRequest codeExecuteRequest, SandboxMetrics.PhaseTimer timer) {
+        timer.phase(PhaseEnum.PREPARE);
         String language = codeExecuteRequest.getLanguage();
         String code = codeExecuteRequest.getCode();
         LanguageEnum languageCmdEnum = LanguageEnum.getEnumByValue(language);
@@ -76,49 +101,103 @@ public class DockerSandboxArgs {
             log.info("不支持的编程语言");
             return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.LANGUAGE_ERROR.getText()).build();
         }
+        SourceFiles sourceFiles = SourceFiles.of(languageCmdEnum, code, codeExecuteRequest.getFiles());
 
-        String globalCodePathName = userDir + File.separator + "tempCode" + File.separator + language;
-        // 判断全局代码目录是否存在，没有则新建
-        File globalCodePath = new File(globalCodePathName);
-        if (!globalCodePath.exists()) {
-            boolean mkdir = globalCodePath.mkdirs();
-            if (!mkdir) {
-                log.info("创建全局代码目录失败");
+        // 相同的代码编译失败过则直接返回
+        String compileCacheKey = compileCache.key(languageCmdEnum, code, sourceFiles.getExtraFiles());
+        CompileCache.Entry compileCacheEntry = compileCache.get(compileCacheKey);
+        if (compileCacheEntry != null && compileCacheEntry.isCompileError()) {
+            return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.COMPILE_ERROR.getText()).errorMessage(compileCacheEntry.getErrorMessage()).build();
+        }
+
+        // Java 在宿主机编译，编译错误不需要借用容器，成功时类文件随源码一起复制
+        boolean hostCompiled = false;
+        if (compileCacheEntry == null && hostJavaCompiler.supports(languageCmdEnum)) {
+            timer.phase(PhaseEnum.COMPILE);
+            HostJavaCompiler.Result hostCompileResult;
+            try {
+                hostCompileResult = hostJavaCompiler.compile(sourceFiles);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText()).errorMessage(e.getMessage()).build();
+            }
+            if (hostCompileResult != null && !hostCompileResult.isSuccess()) {
+                compileCache.putError(compileCacheKey, hostCompileResult.getDiagnostics());
+                return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.COMPILE_ERROR.getText()).errorMessage(hostCompileResult.getDiagnostics()).build();
+            }
+            if (hostCompileResult != null) {
+                sourceFiles = sourceFiles.withFiles(hostCompileResult.getClassFiles());
+                hostCompiled = true;
             }
         }
 
-        // 把用户的代码隔离存放
-        String userCodeParentPath = globalCodePathName + File.separator + UUID.randomUUID();
-        String userCodePath = userCodeParentPath + File.separator + languageCmdEnum.getSaveFileName();
-        FileUtil.writeString(code, userCodePath, StandardCharsets.UTF_8);
-        String containerId = createContainer(userCodePath);
+        SandboxContainer container;
+        timer.phase(PhaseEnum.LEASE);
+        try {
+            container = containerPool.lease(languageCmdEnum);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText()).errorMessage(e.getMessage()).build();
+        } catch (RuntimeException e) {
+            log.warn("获取沙箱容器失败: {}", e.getMessage());
+            return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText()).errorMessage(e.getMessage()).build();
+        }
+        String containerId = container.getId();
+        // 命中编译缓存时直接注入编译产物，否则复制源码
+        timer.phase(PhaseEnum.COPY);
+        boolean compiled = compileCacheEntry != null && compileCache.injectArtifact(container, compileCacheEntry);
+        if (!compiled) {
+            // 源码在内存中打包后复制到容器中
+            try {
+                InputStream tarStream = sourceFiles.toTarStream();
+                dockerCalls.call(container.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(containerId)
+                        .withTarInputStream(tarStream)
+                        .withRemotePath(ContainerPool.WORK_DIR)
+                        .exec());
+            } catch (IOException | RuntimeException e) {
+                log.warn("复制源码到容器失败: {}", e.getMessage());
+                container.markBroken();
+                releaseContainer(container, timer);
+                return CodeExecuteResponse.builder().success(false).executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText()).errorMessage(e.getMessage()).build();
+            }
+        }
 
         // 编译代码
         String[] compileCmd = languageCmdEnum.getCompileCmd();
         CodeExecuteResponse codeExecuteResponse = CodeExecuteResponse.builder().build();
         ExecuteResult executeResult;
         // 不为空则代表需要编译
-        if (compileCmd != null) {
-            executeResult = execCmd(containerId, null, compileCmd, 0);
+        if (hostCompiled) {
+            compileCache.putArtifact(compileCacheKey, sourceFiles);
+        } else if (compileCmd != null && !compiled) {
+            timer.phase(PhaseEnum.COMPILE);
+            executeResult = compileCode(container, compileCmd);
 
             log.info("编译完成...");
-            // 编译错误
             if (!executeResult.isSuccess()) {
-                // 清理文件和容器
-                cleanFileAndContainer(userCodeParentPath, containerId);
-                codeExecuteResponse.setExecuteStatus(ExecuteStatusEnum.COMPILE_ERROR.getText());
+                // 只缓存编译器以非零退出码结束的编译错误，超时和 Docker 调用失败下次重新编译
+                if (ExecuteStatusEnum.COMPILE_ERROR.getText().equals(executeResult.getExecuteStatus())) {
+                    compileCache.putError(compileCacheKey, executeResult.getErrorMessage());
+                }
+                // 归还容器
+                releaseContainer(container, timer);
+                codeExecuteResponse.setExecuteStatus(executeResult.getExecuteStatus());
+                codeExecuteResponse.setErrorMessage(executeResult.getErrorMessage());
                 return codeExecuteResponse;
             }
+            buildCache.record(container, executeResult.getOutput());
+            compileCache.saveArtifact(container, compileCacheKey);
         }
 
         // 执行代码
+        timer.phase(PhaseEnum.RUN);
         List<String> inputList = codeExecuteRequest.getInput();
         if (CollUtil.isEmpty(inputList)){
-            executeResult = execCmd(containerId, null, languageCmdEnum.getRunCmd(), 1);
+            executeResult = execCmd(container, null, languageCmdEnum.getRunCmd(), 1, null);
             if (!executeResult.isSuccess()) {
-                // 清理文件和容器
-                cleanFileAndContainer(userCodeParentPath, containerId);
-                codeExecuteResponse.setExecuteStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText());
+                // 归还容器
+                releaseContainer(container, timer);
+                codeExecuteResponse.setExecuteStatus(failedStatus(executeResult));
                 codeExecuteResponse.setSuccess(false);
                 codeExecuteResponse.setErrorMessage(executeResult.getErrorMessage());
                 return codeExecuteResponse;
@@ -128,193 +207,265 @@ public class DockerSandboxArgs {
             codeExecuteResponse.setTime(executeResult.getTime());
             codeExecuteResponse.setMemory(executeResult.getMemory());
             codeExecuteResponse.setOutput(Collections.singletonList(executeResult.getOutput()));
-            cleanFileAndContainer(userCodeParentPath, containerId);
+            releaseContainer(container, timer);
             return codeExecuteResponse;
         }
 
+        CodeExecuteResponse runResponse;
+        try (OutputChecker.Session checkSession = outputChecker.open(codeExecuteRequest.getCheck())) {
+            runResponse = runCases(container, languageCmdEnum, inputList, checkSession);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            runResponse = codeExecuteResponse;
+            runResponse.setExecuteStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText());
+            runResponse.setErrorMessage(e.getMessage());
+        }
+        // 归还容器
+        releaseContainer(container, timer);
+        return runResponse;
+    }
+
+    /**
+     * 运行全部用例，有期望输出时逐个比对
+     *
+     * @param container       已完成编译的容器
+     * @param languageCmdEnum 语言
+     * @param inputList       用例输入
+     * @param checkSession    比对会话
+     * @return {@link CodeExecuteResponse}
+     */
+    private CodeExecuteResponse runCases(SandboxContainer container, LanguageEnum languageCmdEnum, List<String> inputList,
+                                         OutputChecker.Session checkSession) throws InterruptedException {
+        String[] runCmd = languageCmdEnum.getRunCmd();
+        ExecuteResult[] parallelResults = null;
+        if (parallelCaseRunner.shouldParallelize(inputList)) {
+            try {
+                parallelResults = runCasesInParallel(container, languageCmdEnum, inputList, checkSession);
+            } catch (RuntimeException e) {
+                log.warn("并行执行失败，改为顺序执行: {}", e.getMessage());
+            }
+        }
+        // 顺序执行时由评测代理一次运行全部用例，每个用例的结果到达后立即比对，代理不可用时逐个用例 exec
+        List<ExecuteResult> agentResults = null;
+        if (parallelResults == null) {
+            agentResults = judgeAgent.run(container, languageCmdEnum, inputList, timeUnit.toMillis(timeoutLimit), false,
+                    (index, result) -> !checkSession.shouldStop(checkSession.apply(index, inputList, result)));
+        }
+
+        CodeExecuteResponse codeExecuteResponse = CodeExecuteResponse.builder().build();
         List<String> outputList = new ArrayList<>();
+        List<String> caseStatusList = new ArrayList<>();
         long time = 0;
         long memory = 0;
-        for (String input : inputList) {
-            executeResult = execCmd(containerId, input, languageCmdEnum.getRunCmd(), 1);
+        boolean wrongAnswer = false;
+        for (int i = 0; i < inputList.size(); i++) {
+            ExecuteResult executeResult;
+            if (parallelResults != null) {
+                executeResult = parallelResults[i];
+            } else if (agentResults != null) {
+                executeResult = agentResults.get(i);
+            } else {
+                String input = inputList.get(i);
+                executeResult = checkSession.apply(i, input, execCmd(container, input, runCmd, 1, checkSession.comparator(i)));
+            }
+            String caseStatus = executeResult.isSuccess() ? ExecuteStatusEnum.SUCCESS.getText() : failedStatus(executeResult);
+            caseStatusList.add(caseStatus);
+            codeExecuteResponse.setCaseStatusList(caseStatusList);
+            if (executeResult.isSuccess() || ExecuteStatusEnum.WRONG_ANSWER.getText().equals(caseStatus)) {
+                outputList.add(executeResult.getOutput());
+                time = Math.max(time, executeResult.getTime() == null ? 0 : executeResult.getTime());
+                memory = Math.max(memory, executeResult.getMemory() == null ? 0 : executeResult.getMemory());
+            }
             if (!executeResult.isSuccess()) {
-                // 清理文件和容器
-                cleanFileAndContainer(userCodeParentPath, containerId);
-                codeExecuteResponse.setExecuteStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText());
-                codeExecuteResponse.setErrorMessage(executeResult.getErrorMessage());
-                codeExecuteResponse.setSuccess(false);
-                codeExecuteResponse.setOutput(outputList);
-                return codeExecuteResponse;
+                if (checkSession.shouldStop(executeResult)) {
+                    codeExecuteResponse.setExecuteStatus(caseStatus);
+                    codeExecuteResponse.setErrorMessage(executeResult.getErrorMessage());
+                    codeExecuteResponse.setSuccess(false);
+                    codeExecuteResponse.setOutput(outputList);
+                    codeExecuteResponse.setTime(time);
+                    codeExecuteResponse.setMemory(memory);
+                    return codeExecuteResponse;
+                }
+                // 不跳过剩余用例时继续运行，最终结果为答案错误
+                wrongAnswer = true;
             }
-            outputList.add(executeResult.getOutput());
-            time = Math.max(time, executeResult.getTime());
-            memory = Math.max(memory, executeResult.getMemory());
         }
-        codeExecuteResponse.setExecuteStatus(ExecuteStatusEnum.SUCCESS.getText());
-        codeExecuteResponse.setSuccess(true);
+        codeExecuteResponse.setExecuteStatus(wrongAnswer ? ExecuteStatusEnum.WRONG_ANSWER.getText() : ExecuteStatusEnum.SUCCESS.getText());
+        codeExecuteResponse.setErrorMessage(wrongAnswer ? ExecuteStatusEnum.WRONG_ANSWER.getText() : null);
+        codeExecuteResponse.setSuccess(!wrongAnswer);
         codeExecuteResponse.setTime(time);
         codeExecuteResponse.setMemory(memory);
         codeExecuteResponse.setOutput(outputList);
-        // 清理文件和容器
-        cleanFileAndContainer(userCodeParentPath, containerId);
         return codeExecuteResponse;
     }
 
     /**
-     * 清理文件和容器
-     *
-     * @param userCodePath 用户代码路径
-     * @param containerId  容器 ID
+     * 运行失败时的执行状态，输出超限、答案错误等明确的状态直接透传，其余视为运行错误
      */
-    private void cleanFileAndContainer(String userCodePath, String containerId) {
-        // 清理临时目录
-        FileUtil.del(userCodePath);
-
-        // 关闭并删除容器
-        DOCKER_CLIENT.stopContainerCmd(containerId).exec();
-        DOCKER_CLIENT.removeContainerCmd(containerId).exec();
+    private String failedStatus(ExecuteResult executeResult) {
+        if (ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText().equals(executeResult.getExecuteStatus())
+                || ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText().equals(executeResult.getExecuteStatus())
+                || ExecuteStatusEnum.WRONG_ANSWER.getText().equals(executeResult.getExecuteStatus())) {
+            return executeResult.getExecuteStatus();
+        }
+        return ExecuteStatusEnum.RUNTIME_ERROR.getText();
     }
 
     /**
-     * 执行命令
+     * 并行执行用例，0 号分片使用已编译的容器，其余分片借用兄弟容器并注入编译后的 /box 目录
      *
-     * @param containerId 容器 ID
-     * @param cmd         CMD
-     * @return {@link CodeExecuteResponse}
+     * @param container       已完成编译的容器
+     * @param languageCmdEnum 语言
+     * @param inputList       用例输入
+     * @param checkSession    比对会话
+     * @return 按输入顺序排列的结果
      */
-    private ExecuteResult execCmd(String containerId, String input, String[] cmd, int flag) {
-        // 正常返回信息
-        ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
-        // 错误信息
-        ByteArrayOutputStream errorResultStream = new ByteArrayOutputStream();
-
-        // 结果
-        final boolean[] result = {true};
-        final boolean[] timeout = { true };
-        final long[] maxMemory = {0};
-        try (ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
-
-            @Override
-            public void onComplete() {
-                // 是否超时
-                timeout[0] = false;
-                super.onComplete();
+    private ExecuteResult[] runCasesInParallel(SandboxContainer container, LanguageEnum languageCmdEnum, List<String> inputList,
+                                               OutputChecker.Session checkSession) throws InterruptedException {
+        String[] runCmd = languageCmdEnum.getRunCmd();
+        byte[] boxArchive = IoUtil.readBytes(dockerCalls.call(container.getDaemon(), "copyOut", client -> client.copyArchiveFromContainerCmd(container.getId(), ContainerPool.WORK_DIR).exec()));
+        return parallelCaseRunner.run(inputList, shard -> {
+            if (shard == 0) {
+                return (index, input) -> checkSession.apply(index, input, execCmd(container, input, runCmd, 1, checkSession.comparator(index)));
             }
-
-
-            @Override
-            public void onNext(Frame frame) {
-                StreamType streamType = frame.getStreamType();
-                byte[] payload = frame.getPayload();
-                if (StreamType.STDERR.equals(streamType)) {
-                    try {
-                        result[0] = false;
-                        errorResultStream.write(payload);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                } else {
-                    try {
-                        result[0] = true;
-                        resultStream.write(payload);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-                super.onNext(frame);
+            SandboxContainer sibling = containerPool.tryLease(languageCmdEnum);
+            if (sibling == null) {
+                return null;
             }
-        }) {
-            if (flag == 1){
-                if (StrUtil.isNotBlank(input)) {
-                    String[] inputArgsArray = input.split(" ");
-                    cmd = ArrayUtil.append(cmd, inputArgsArray);
-                }
+            try {
+                dockerCalls.call(sibling.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(sibling.getId())
+                        .withTarInputStream(new ByteArrayInputStream(boxArchive))
+                        .withRemotePath("/")
+                        .exec());
+            } catch (RuntimeException e) {
+                sibling.markBroken();
+                containerPool.release(sibling);
+                throw e;
             }
-            ExecCreateCmdResponse execCompileCmdResponse = DOCKER_CLIENT.execCreateCmd(containerId)
-                    .withCmd(cmd)
-                    .withAttachStderr(true)
-                    .withAttachStdin(true)
-                    .withAttachStdout(true)
-                    .exec();
-
-            // 获取占用的内存
-            StatsCmd statsCmd = DOCKER_CLIENT.statsCmd(containerId);
-            ResultCallback<Statistics> statisticsResultCallback = statsCmd.exec(new ResultCallback<Statistics>() {
-
-                @Override
-                public void onNext(Statistics statistics) {
-                    maxMemory[0] = Math.max(statistics.getMemoryStats().getUsage(), maxMemory[0]);
-                }
-
+            return new ParallelCaseRunner.CaseWorker() {
                 @Override
-                public void close() throws IOException {
-
+                public ExecuteResult run(int index, String input) {
+                    return checkSession.apply(index, input, execCmd(sibling, input, runCmd, 1, checkSession.comparator(index)));
                 }
 
                 @Override
-                public void onStart(Closeable closeable) {
-
-                }
-
-                @Override
-                public void onError(Throwable throwable) {
-
+                public void close() {
+                    containerPool.release(sibling);
                 }
+            };
+        }, checkSession::shouldStop);
+    }
 
-                @Override
-                public void onComplete() {
-
-                }
-            });
-            statsCmd.exec(statisticsResultCallback);
-            // 通过输入流传递参数
+    /**
+     * 用例输入按空格拆分后追加到命令末尾
+     *
+     * @param cmd   命令
+     * @param input 用例输入，为空时不追加
+     * @return 追加后的命令
+     */
+    static String[] appendInputArgs(String[] cmd, String input) {
+        if (StrUtil.isBlank(input)) {
+            return cmd;
+        }
+        String[] inputArgsArray = input.split(" ");
+        return ArrayUtil.append(cmd, inputArgsArray);
+    }
 
-            String execId = execCompileCmdResponse.getId();
-            stopWatch.start();
-            DOCKER_CLIENT.execStartCmd(execId)
-                    .exec(frameAdapter).awaitCompletion(timeoutLimit, timeUnit);
-            stopWatch.stop();
-            long time = stopWatch.getLastTaskTimeMillis() / 1000;
+    /**
+     * 归还容器，由容器池重置或销毁
+     *
+     * @param container 容器
+     * @param timer     阶段计时
+     */
+    private void releaseContainer(SandboxContainer container, SandboxMetrics.PhaseTimer timer) {
+        timer.phase(PhaseEnum.TEARDOWN);
+        containerPool.release(container);
+    }
 
-            if (timeout[0]) {
-                return ExecuteResult
-                        .builder()
+    /**
+     * 编译代码，按编译器的退出码判断是否成功，标准输出和错误输出合并作为编译信息
+     *
+     * @param container  容器
+     * @param compileCmd 编译命令
+     * @return 编译结果；编译错误时状态为编译错误，超时或 Docker 调用失败时为其他状态，不应缓存
+     */
+    private ExecuteResult compileCode(SandboxContainer container, String[] compileCmd) {
+        try (BoundedOutputBuffer compileOutput = outputLimiter.newStderrBuffer();
+             ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
+                 @Override
+                 public void onNext(Frame frame) {
+                     // 超过上限的编译信息直接截断，不影响编译结果
+                     compileOutput.write(frame.getPayload());
+                 }
+             }) {
+            ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(container.getId())
+                    .withCmd(compileCmd)
+                    .withAttachStdout(true)
+                    .withAttachStderr(true)
+                    .exec());
+            String execId = execCreateCmdResponse.getId();
+            boolean completed = dockerCalls.call(container.getDaemon(), "execStart", client -> client.execStartCmd(execId).exec(frameAdapter))
+                    .awaitCompletion(dockerProperties.getCompileTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (!completed) {
+                // 编译器仍在运行，容器不再复用
+                container.markBroken();
+                return ExecuteResult.builder()
                         .success(false)
-                        .errorMessage("执行超时")
+                        .errorMessage("编译超时")
                         .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
                         .build();
             }
-
-            return ExecuteResult
-                    .builder()
-                    .success(result[0])
-                    .output(resultStream.toString())
-                    .errorMessage(errorResultStream.toString())
-                    .time(time)
-                    .memory(maxMemory[0] / (1024 * 1024))
+            Long exitCode = dockerCalls.call(container.getDaemon(), "inspectExec", client -> client.inspectExecCmd(execId).exec()).getExitCodeLong();
+            String output = compileOutput.toString(StandardCharsets.UTF_8);
+            if (exitCode == null) {
+                return ExecuteResult.builder()
+                        .success(false)
+                        .errorMessage("无法获取编译器退出码")
+                        .executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText())
+                        .build();
+            }
+            boolean success = exitCode == 0;
+            return ExecuteResult.builder()
+                    .success(success)
+                    .output(output)
+                    .errorMessage(success ? "" : output)
+                    .executeStatus(success ? ExecuteStatusEnum.SUCCESS.getText() : ExecuteStatusEnum.COMPILE_ERROR.getText())
                     .build();
-
-        } catch (IOException | InterruptedException e) {
-            log.info(e.getMessage());
-            return ExecuteResult
-                    .builder()
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("编译时 Docker 调用失败: {}", e.getMessage());
+            container.markBroken();
+            return ExecuteResult.builder()
                     .success(false)
                     .errorMessage(e.getMessage())
+                    .executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText())
                     .build();
         }
     }
 
-    private ExecuteResult execCmdTest(String containerId, String input, String[] cmd, int flag) {
+    /**
+     * 执行命令
+     *
+     * @param container  容器
+     * @param cmd        CMD
+     * @param comparator 流式比对器，发现答案错误时提前结束，可为 null
+     * @return {@link CodeExecuteResponse}
+     */
+    private ExecuteResult execCmd(SandboxContainer container, String input, String[] cmd, int flag, OutputComparator comparator) {
+        String containerId = container.getId();
         // 正常返回信息
-        ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
+        BoundedOutputBuffer resultStream = outputLimiter.newStdoutBuffer();
         // 错误信息
-        ByteArrayOutputStream errorResultStream = new ByteArrayOutputStream();
+        BoundedOutputBuffer errorResultStream = outputLimiter.newStderrBuffer();
 
-        // 结果
-        final boolean[] result = {true};
         final boolean[] timeout = { true };
-        final long[] maxMemory = {0};
-        try (ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
+        final boolean[] outputExceeded = { false };
+        final boolean[] wrongAnswer = { false };
+        try (BoundedOutputBuffer stdout = resultStream;
+             BoundedOutputBuffer stderr = errorResultStream;
+             ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
 
             @Override
             public void onComplete() {
@@ -328,97 +479,124 @@ public class DockerSandboxArgs {
             public void onNext(Frame frame) {
                 StreamType streamType = frame.getStreamType();
                 byte[] payload = frame.getPayload();
+                boolean withinLimit;
                 if (StreamType.STDERR.equals(streamType)) {
-                    try {
-                        result[0] = false;
-                        errorResultStream.write(payload);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+                    withinLimit = stderr.write(payload);
                 } else {
+                    withinLimit = stdout.write(payload);
+                    if (withinLimit && comparator != null && !comparator.write(payload)) {
+                        // 输出已经与期望不一致，不必等程序结束
+                        wrongAnswer[0] = true;
+                        try {
+                            close();
+                        } catch (IOException e) {
+                            log.warn("关闭执行输出流失败: {}", e.getMessage());
+                        }
+                        return;
+                    }
+                }
+                if (!withinLimit) {
+                    // 输出超限，停止捕获并结束等待
+                    outputExceeded[0] = true;
                     try {
-                        result[0] = true;
-                        resultStream.write(payload);
+                        close();
                     } catch (IOException e) {
-                        throw new RuntimeException(e);
+                        log.warn("关闭执行输出流失败: {}", e.getMessage());
                     }
+                    return;
                 }
                 super.onNext(frame);
             }
         }) {
-            ExecCreateCmdResponse execCompileCmdResponse = DOCKER_CLIENT.execCreateCmd(containerId)
-                    .withCmd(cmd)
+            String[] execCmd = flag == 1 ? appendInputArgs(cmd, input) : cmd;
+            ExecCreateCmdResponse execCompileCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(containerId)
+                    .withCmd(execCmd)
                     .withAttachStderr(true)
                     .withAttachStdin(true)
                     .withAttachStdout(true)
-                    .exec();
-
-            if (flag == 1){
-                if (StrUtil.isNotBlank(input)) {
-                    String inputArgsArray = input.replace(" ","\n")+"\n";
-                    DOCKER_CLIENT.execCreateCmd(containerId)
-                            .withCmd(inputArgsArray)
-                            .exec();
-                }
-            }
-            // 获取占用的内存
-            StatsCmd statsCmd = DOCKER_CLIENT.statsCmd(containerId);
-            ResultCallback<Statistics> statisticsResultCallback = statsCmd.exec(new ResultCallback<Statistics>() {
-
-                @Override
-                public void onNext(Statistics statistics) {
-                    maxMemory[0] = Math.max(statistics.getMemoryStats().getUsage(), maxMemory[0]);
-                }
-
-                @Override
-                public void close() throws IOException {
-
-                }
-
-                @Override
-                public void onStart(Closeable closeable) {
+                    .exec());
 
-                }
-
-                @Override
-                public void onError(Throwable throwable) {
+            // 通过输入流传递参数
 
-                }
+            String execId = execCompileCmdResponse.getId();
+            // 只统计运行阶段的资源使用
+            CgroupAccounting.Usage usage;
+            try (CgroupAccounting.Probe probe = flag == 1 ? cgroupAccounting.begin(container) : null) {
+                dockerCalls.call(container.getDaemon(), "execStart", client -> client.execStartCmd(execId)
+                        .exec(frameAdapter)).awaitCompletion(timeoutLimit, timeUnit);
+                usage = probe == null ? null : probe.finish();
+            }
+            Long time = usage == null ? null : usage.getCpuTimeMillis();
+            Long memory = usage == null ? null : usage.getPeakMemoryKb();
 
-                @Override
-                public void onComplete() {
+            if (outputExceeded[0]) {
+                // 程序仍在输出，容器不再复用，归还时强制删除以结束进程
+                container.markBroken();
+                return ExecuteResult
+                        .builder()
+                        .success(false)
+                        .errorMessage(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .time(time)
+                        .memory(memory)
+                        .build();
+            }
 
-                }
-            });
-            statsCmd.exec(statisticsResultCallback);
-            // 通过输入流传递参数
-            String execId = execCompileCmdResponse.getId();
-            stopWatch.start();
-            DOCKER_CLIENT.execStartCmd(execId)
-                    .exec(frameAdapter).awaitCompletion(timeoutLimit, timeUnit);
-            stopWatch.stop();
-            long time = stopWatch.getLastTaskTimeMillis() / 1000;
+            if (wrongAnswer[0]) {
+                // 剩余的进程在归还容器重置时结束
+                return ExecuteResult
+                        .builder()
+                        .success(false)
+                        .output(stdout.toString(StandardCharsets.UTF_8))
+                        .errorMessage(ExecuteStatusEnum.WRONG_ANSWER.getText())
+                        .executeStatus(ExecuteStatusEnum.WRONG_ANSWER.getText())
+                        .time(time)
+                        .memory(memory)
+                        .build();
+            }
 
             if (timeout[0]) {
+                // 超时的进程可能仍在运行，容器不再复用
+                container.markBroken();
                 return ExecuteResult
                         .builder()
                         .success(false)
                         .errorMessage("执行超时")
                         .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
+                        .time(time)
+                        .memory(memory)
+                        .build();
+            }
+
+            if (usage != null && usage.isOomKilled()) {
+                // 被内核 OOM 杀死的进程已经退出，容器本身仍可复用
+                return ExecuteResult
+                        .builder()
+                        .success(false)
+                        .errorMessage(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText())
+                        .time(time)
+                        .memory(memory)
                         .build();
             }
 
+            if (stdout.isSpilled() || stderr.isSpilled()) {
+                log.info("输出超过内存上限，超出部分已写入 {}", stdout.isSpilled() ? stdout.getSpillFile() : stderr.getSpillFile());
+            }
+            // 与评测代理一致按退出码判断，程序正常结束前写过 stderr 不算失败
+            Long exitCode = dockerCalls.call(container.getDaemon(), "inspectExec", client -> client.inspectExecCmd(execId).exec()).getExitCodeLong();
             return ExecuteResult
                     .builder()
-                    .success(result[0])
-                    .output(resultStream.toString())
-                    .errorMessage(errorResultStream.toString())
+                    .success(exitCode != null && exitCode == 0)
+                    .output(stdout.toString(StandardCharsets.UTF_8))
+                    .errorMessage(stderr.toString(StandardCharsets.UTF_8))
                     .time(time)
-                    .memory(maxMemory[0] / (1024 * 1024))
+                    .memory(memory)
                     .build();
 
         } catch (IOException | InterruptedException e) {
             log.info(e.getMessage());
+            container.markBroken();
             return ExecuteResult
                     .builder()
                     .success(false)
@@ -426,36 +604,4 @@ public class DockerSandboxArgs {
                     .build();
         }
     }
-
-    /**
-     * 创建容器
-     *
-     * @return {@link String}
-     */
-    private String createContainer(String codeFile) {
-        CreateContainerCmd containerCmd = DOCKER_CLIENT.createContainerCmd(image);
-        HostConfig hostConfig = new HostConfig();
-        hostConfig.withMemory(memoryLimit);
-        hostConfig.withMemorySwap(memorySwap);
-        hostConfig.withCpuCount(cpuCount);
-
-        CreateContainerResponse createContainerResponse = containerCmd
-                .withHostConfig(hostConfig)
-                .withNetworkDisabled(true)
-                .withAttachStdin(true)
-                .withAttachStderr(true)
-                .withAttachStdout(true)
-                .withTty(true)
-                .exec();
-        // 启动容器
-        String containerId = createContainerResponse.getId();
-        DOCKER_CLIENT.startContainerCmd(containerId).exec();
-
-        // 将代码复制到容器中
-        DOCKER_CLIENT.copyArchiveToContainerCmd(containerId)
-                .withHostResource(codeFile)
-                .withRemotePath("/box")
-                .exec();
-        return containerId;
-    }
 }
@@ -0,0 +1,37 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.model.CodeExecuteRequest;
+import com.project.codesandbox.model.CodeExecuteResponse;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * Docker 引擎，传参和交互式输入分别由 {@link DockerSandboxArgs} 和 {@link DockerSandboxInteract} 执行
+ */
+@Component
+public class DockerSandboxEngine implements SandboxEngine {
+
+    public static final String NAME = "docker";
+
+    @Resource
+    private DockerSandboxArgs dockerSandboxArgs;
+
+    @Resource
+    private DockerSandboxInteract dockerSandboxInteract;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public CodeExecuteResponse execute(CodeExecuteRequest codeExecuteRequest, boolean interact) {
+        return interact ? dockerSandboxInteract.execute(codeExecuteRequest) : dockerSandboxArgs.execute(codeExecuteRequest);
+    }
+}
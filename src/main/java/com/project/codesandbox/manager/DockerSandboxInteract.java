@@ -1,20 +1,23 @@
 package com.project.codesandbox.manager;
 
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
-import com.github.dockerjava.api.DockerClient;
+import cn.hutool.core.io.IoUtil;
 import com.github.dockerjava.api.async.ResultCallback;
-import com.github.dockerjava.api.command.StatsCmd;
-import com.github.dockerjava.api.model.Statistics;
-import com.github.dockerjava.core.DockerClientBuilder;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.command.ExecStartCmd;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import com.project.codesandbox.config.DockerProperties;
 import com.project.codesandbox.enums.ExecuteStatusEnum;
 import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.enums.PhaseEnum;
 import com.project.codesandbox.model.CodeExecuteRequest;
 import com.project.codesandbox.model.CodeExecuteResponse;
 import com.project.codesandbox.model.ExecuteResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -24,15 +27,58 @@ import java.util.concurrent.*;
 @Component
 public class DockerSandboxInteract {
 
-    private static final String IMAGE = "codesandbox1:latest";
     private static final long TIMEOUT_LIMIT = 3;
     private static final TimeUnit TIME_UNIT = TimeUnit.SECONDS;
-    private static final DockerClient DOCKER_CLIENT = DockerClientBuilder.getInstance().build();
-    // 资源限制：1 CPU 核心，128MB 内存
-    private static final String CPU_LIMIT = "1.0"; // 限制使用一个 CPU 核心
-    private static final String MEMORY_LIMIT = "128m"; // 限制内存为 128MB
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private DockerProperties dockerProperties;
+
+    @Resource
+    private ContainerPool containerPool;
+
+    @Resource
+    private CompileCache compileCache;
+
+    @Resource
+    private ParallelCaseRunner parallelCaseRunner;
+
+    @Resource
+    private OutputLimiter outputLimiter;
+
+    @Resource
+    private CgroupAccounting cgroupAccounting;
+
+    @Resource
+    private JudgeAgent judgeAgent;
+
+    @Resource
+    private BuildCache buildCache;
+
+    @Resource
+    private HostJavaCompiler hostJavaCompiler;
+
+    @Resource
+    private OutputChecker outputChecker;
+
+    @Resource
+    private SandboxMetrics sandboxMetrics;
 
     public CodeExecuteResponse execute(CodeExecuteRequest codeExecuteRequest) {
+        SandboxMetrics.PhaseTimer timer = sandboxMetrics.start(SandboxMetrics.MODE_INTERACT, codeExecuteRequest.getLanguage());
+        CodeExecuteResponse response = null;
+        try {
+            response = doExecute(codeExecuteRequest, timer);
+            return response;
+        } finally {
+            timer.finish(response);
+        }
+    }
+
+    private CodeExecuteResponse doExecute(CodeExecuteRequest codeExecuteRequest, SandboxMetrics.PhaseTimer timer) {
+        timer.phase(PhaseEnum.PREPARE);
         String language = codeExecuteRequest.getLanguage();
         String code = codeExecuteRequest.getCode();
         LanguageEnum languageCmdEnum = LanguageEnum.getEnumByValue(language);
@@ -41,213 +87,447 @@ public class DockerSandboxInteract {
             return errorResponse(ExecuteStatusEnum.LANGUAGE_ERROR.getText(), "不支持的编程语言");
         }
 
-        // 准备用户代码
-        String userDir = System.getProperty("user.dir");
-        String globalCodePathName = userDir + File.separator + "tempCode" + File.separator + language;
-        // 判断全局代码目录是否存在，没有则新建
-        File globalCodePath = new File(globalCodePathName);
-        if (!globalCodePath.exists()) {
-            boolean mkdir = globalCodePath.mkdirs();
-            if (!mkdir) {
-                log.info("创建全局代码目录失败");
+        SourceFiles sourceFiles = SourceFiles.of(languageCmdEnum, code, codeExecuteRequest.getFiles());
+
+        // 相同的代码编译失败过则直接返回
+        String compileCacheKey = compileCache.key(languageCmdEnum, code, sourceFiles.getExtraFiles());
+        CompileCache.Entry compileCacheEntry = compileCache.get(compileCacheKey);
+        if (compileCacheEntry != null && compileCacheEntry.isCompileError()) {
+            return errorResponse(ExecuteStatusEnum.COMPILE_ERROR.getText(), compileCacheEntry.getErrorMessage());
+        }
+
+        // Java 在宿主机编译，编译错误不需要借用容器，成功时类文件随源码一起复制
+        boolean hostCompiled = false;
+        if (compileCacheEntry == null && hostJavaCompiler.supports(languageCmdEnum)) {
+            timer.phase(PhaseEnum.COMPILE);
+            HostJavaCompiler.Result hostCompileResult;
+            try {
+                hostCompileResult = hostJavaCompiler.compile(sourceFiles);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return errorResponse(ExecuteStatusEnum.RUNTIME_ERROR.getText(), e.getMessage());
+            }
+            if (hostCompileResult != null && !hostCompileResult.isSuccess()) {
+                compileCache.putError(compileCacheKey, hostCompileResult.getDiagnostics());
+                return errorResponse(ExecuteStatusEnum.COMPILE_ERROR.getText(), hostCompileResult.getDiagnostics());
+            }
+            if (hostCompileResult != null) {
+                sourceFiles = sourceFiles.withFiles(hostCompileResult.getClassFiles());
+                hostCompiled = true;
             }
         }
 
-        // 把用户的代码隔离存放
-        String userCodeParentPath = globalCodePathName + File.separator + UUID.randomUUID();
-        String userCodePath = userCodeParentPath + File.separator + languageCmdEnum.getSaveFileName();
-        FileUtil.writeString(code, userCodePath, StandardCharsets.UTF_8);
-        String containerId = null;
+        SandboxContainer container = null;
 
         try {
-            // 创建容器
-            containerId = createContainer(userCodePath, languageCmdEnum.getSaveFileName());
+            // 借用容器
+            timer.phase(PhaseEnum.LEASE);
+            container = containerPool.lease(languageCmdEnum);
+            String containerId = container.getId();
+            timer.phase(PhaseEnum.COPY);
+            boolean compiled = compileCacheEntry != null && compileCache.injectArtifact(container, compileCacheEntry);
+            if (!compiled) {
+                // 源码在内存中打包后复制到容器中
+                InputStream tarStream = sourceFiles.toTarStream();
+                dockerCalls.call(container.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(containerId)
+                        .withTarInputStream(tarStream)
+                        .withRemotePath(ContainerPool.WORK_DIR)
+                        .exec());
+            }
 
             // 编译阶段
-            ExecuteResult compileResult = compileCode(containerId, languageCmdEnum.getCompileCmd());
-            if (!compileResult.isSuccess()) {
-                cleanUp(containerId, userCodeParentPath);
-                return errorResponse(ExecuteStatusEnum.COMPILE_ERROR.getText(), compileResult.getErrorMessage());
+            if (hostCompiled) {
+                compileCache.putArtifact(compileCacheKey, sourceFiles);
+            } else if (languageCmdEnum.getCompileCmd() != null && !compiled) {
+                timer.phase(PhaseEnum.COMPILE);
+                ExecuteResult compileResult = compileCode(container, languageCmdEnum.getCompileCmd());
+                if (!compileResult.isSuccess()) {
+                    // 缓存键与参数模式共用，保存完整的编译信息
+                    compileCache.putError(compileCacheKey, compileResult.getOutput());
+                    cleanUp(container, timer);
+                    return errorResponse(ExecuteStatusEnum.COMPILE_ERROR.getText(), compileResult.getOutput());
+                }
+                buildCache.record(container, compileResult.getOutput());
+                compileCache.saveArtifact(container, compileCacheKey);
+                log.info("编译成功！");
             }
-            log.info("编译成功！");
             // 运行阶段
-            CodeExecuteResponse runResponse = runCode(containerId, codeExecuteRequest, languageCmdEnum);
-            cleanUp(containerId, userCodeParentPath);
+            timer.phase(PhaseEnum.RUN);
+            CodeExecuteResponse runResponse = runCode(container, codeExecuteRequest, languageCmdEnum);
+            cleanUp(container, timer);
             return runResponse;
 
-        } catch (IOException | InterruptedException | ExecutionException e) {
-            if (containerId != null) {
-                try {
-                    cleanUp(containerId, userCodeParentPath);
-                } catch (Exception ex) {
-                    log.error("清理容器时出错: {}", ex.getMessage());
-                }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (container != null) {
+                container.markBroken();
+            }
+            try {
+                cleanUp(container, timer);
+            } catch (Exception ex) {
+                log.error("清理容器时出错: {}", ex.getMessage());
             }
             return errorResponse(ExecuteStatusEnum.RUNTIME_ERROR.getText(), e.getMessage());
         }
     }
 
-    private CodeExecuteResponse runCode(String containerId, CodeExecuteRequest codeExecuteRequest, LanguageEnum languageCmdEnum) throws IOException, InterruptedException, ExecutionException {
-        List<String> outputList = new ArrayList<>();
-        long maxTime = 0;
-        long maxMemory = 0;
+    private CodeExecuteResponse runCode(SandboxContainer container, CodeExecuteRequest codeExecuteRequest, LanguageEnum languageCmdEnum) throws IOException, InterruptedException {
         List<String> inputList = codeExecuteRequest.getInput();
-        ExecuteResult executeResult = null;
         if (CollUtil.isEmpty(inputList)){
-            executeResult = execCmd(containerId, languageCmdEnum.getRunCmd(), true, null);
+            ExecuteResult executeResult = execCmd(container, languageCmdEnum.getRunCmd(), null, null);
             if (!executeResult.isSuccess()) {
-                return errorResponse(ExecuteStatusEnum.RUNTIME_ERROR.getText(), executeResult.getErrorMessage());
+                return errorResponse(failedStatus(executeResult), executeResult.getErrorMessage());
             }
             return successResponse(Collections.singletonList(executeResult.getOutput()), executeResult.getTime(), executeResult.getMemory());
         }
-        for (String input : codeExecuteRequest.getInput()) {
-            executeResult = execCmd(containerId, languageCmdEnum.getRunCmd(), true, input);
+        try (OutputChecker.Session checkSession = outputChecker.open(codeExecuteRequest.getCheck())) {
+            return runCases(container, languageCmdEnum, inputList, checkSession);
+        }
+    }
+
+    /**
+     * 运行全部用例，有期望输出时逐个比对
+     */
+    private CodeExecuteResponse runCases(SandboxContainer container, LanguageEnum languageCmdEnum, List<String> inputList,
+                                         OutputChecker.Session checkSession) throws IOException, InterruptedException {
+        ExecuteResult[] parallelResults = null;
+        if (parallelCaseRunner.shouldParallelize(inputList)) {
+            parallelResults = runCasesInParallel(container, languageCmdEnum, inputList, checkSession);
+        }
+        // 顺序执行时由评测代理一次运行全部用例，每个用例的结果到达后立即比对，代理不可用时逐个用例 exec
+        List<ExecuteResult> agentResults = null;
+        if (parallelResults == null) {
+            agentResults = judgeAgent.run(container, languageCmdEnum, inputList,
+                    TIME_UNIT.toMillis(TIMEOUT_LIMIT), true,
+                    (index, result) -> !checkSession.shouldStop(
+                            checkSession.apply(index, inputList, normalizeAgentResult(result))));
+        }
+        List<String> outputList = new ArrayList<>();
+        List<String> caseStatusList = new ArrayList<>();
+        long maxTime = 0;
+        long maxMemory = 0;
+        boolean wrongAnswer = false;
+        for (int i = 0; i < inputList.size(); i++) {
+            ExecuteResult executeResult;
+            if (parallelResults != null) {
+                executeResult = parallelResults[i];
+            } else if (agentResults != null) {
+                executeResult = agentResults.get(i);
+            } else {
+                String input = inputList.get(i);
+                executeResult = checkSession.apply(i, input, execCmd(container, languageCmdEnum.getRunCmd(), input, checkSession.comparator(i)));
+            }
+            String caseStatus = executeResult.isSuccess() ? ExecuteStatusEnum.SUCCESS.getText() : failedStatus(executeResult);
+            caseStatusList.add(caseStatus);
+            if (executeResult.isSuccess() || ExecuteStatusEnum.WRONG_ANSWER.getText().equals(caseStatus)) {
+                outputList.add(executeResult.getOutput());
+                maxTime = Math.max(maxTime, executeResult.getTime() == null ? 0 : executeResult.getTime());
+                maxMemory = Math.max(maxMemory, executeResult.getMemory() == null ? 0 : executeResult.getMemory());
+            }
             if (!executeResult.isSuccess()) {
-                return errorResponse(ExecuteStatusEnum.RUNTIME_ERROR.getText(), executeResult.getErrorMessage());
+                if (checkSession.shouldStop(executeResult)) {
+                    CodeExecuteResponse response = errorResponse(caseStatus, executeResult.getErrorMessage());
+                    response.setOutput(outputList);
+                    response.setTime(maxTime);
+                    response.setMemory(maxMemory);
+                    response.setCaseStatusList(caseStatusList);
+                    return response;
+                }
+                // 不跳过剩余用例时继续运行，最终结果为答案错误
+                wrongAnswer = true;
             }
-            outputList.add(executeResult.getOutput());
-            maxTime = Math.max(maxTime, executeResult.getTime());
-            maxMemory = Math.max(maxMemory, executeResult.getMemory());
         }
-        return successResponse(outputList, maxTime, maxMemory);
+        CodeExecuteResponse response = successResponse(outputList, maxTime, maxMemory);
+        response.setCaseStatusList(caseStatusList);
+        if (wrongAnswer) {
+            response.setSuccess(false);
+            response.setExecuteStatus(ExecuteStatusEnum.WRONG_ANSWER.getText());
+            response.setErrorMessage(ExecuteStatusEnum.WRONG_ANSWER.getText());
+        }
+        return response;
+    }
+
+    /**
+     * 并行执行用例，0 号分片使用已编译的容器，其余分片借用兄弟容器并注入编译后的 /box 目录
+     *
+     * @param container       已完成编译的容器
+     * @param languageCmdEnum 语言
+     * @param inputList       用例输入
+     * @return 按输入顺序排列的结果
+     */
+    private ExecuteResult[] runCasesInParallel(SandboxContainer container, LanguageEnum languageCmdEnum, List<String> inputList,
+                                               OutputChecker.Session checkSession) throws InterruptedException {
+        String[] runCmd = languageCmdEnum.getRunCmd();
+        byte[] boxArchive = IoUtil.readBytes(dockerCalls.call(container.getDaemon(), "copyOut", client -> client.copyArchiveFromContainerCmd(container.getId(), ContainerPool.WORK_DIR).exec()));
+        return parallelCaseRunner.run(inputList, shard -> {
+            if (shard == 0) {
+                return (index, input) -> checkSession.apply(index, input, execCmdQuietly(container, runCmd, input, checkSession.comparator(index)));
+            }
+            SandboxContainer sibling = containerPool.tryLease(languageCmdEnum);
+            if (sibling == null) {
+                return null;
+            }
+            try {
+                dockerCalls.call(sibling.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(sibling.getId())
+                        .withTarInputStream(new ByteArrayInputStream(boxArchive))
+                        .withRemotePath("/")
+                        .exec());
+            } catch (RuntimeException e) {
+                sibling.markBroken();
+                containerPool.release(sibling);
+                throw e;
+            }
+            return new ParallelCaseRunner.CaseWorker() {
+                @Override
+                public ExecuteResult run(int index, String input) {
+                    return checkSession.apply(index, input, execCmdQuietly(sibling, runCmd, input, checkSession.comparator(index)));
+                }
+
+                @Override
+                public void close() {
+                    containerPool.release(sibling);
+                }
+            };
+        }, checkSession::shouldStop);
     }
 
+    /**
+     * 运行失败时的执行状态，输出超限、答案错误等明确的状态直接透传，其余视为运行错误
+     */
+    private String failedStatus(ExecuteResult executeResult) {
+        if (ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText().equals(executeResult.getExecuteStatus())
+                || ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText().equals(executeResult.getExecuteStatus())
+                || ExecuteStatusEnum.WRONG_ANSWER.getText().equals(executeResult.getExecuteStatus())) {
+            return executeResult.getExecuteStatus();
+        }
+        return ExecuteStatusEnum.RUNTIME_ERROR.getText();
+    }
 
-    private ExecuteResult compileCode(String containerId, String[] compileCmd) throws IOException, InterruptedException {
-        // 使用 ProcessBuilder 执行编译命令
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        List<String> command = new ArrayList<>();
-        command.add("docker");
-        command.add("exec");
-        command.add(containerId);
-        command.addAll(Arrays.asList(compileCmd));
-        processBuilder.command(command);
-        processBuilder.redirectErrorStream(true); // 将错误流合并到标准输出
+    /**
+     * 评测代理返回的输出与逐个 exec 时的处理保持一致：去掉首尾空白，失败时输出即错误信息
+     */
+    static ExecuteResult normalizeAgentResult(ExecuteResult agentResult) {
+        if (agentResult.getOutput() == null) {
+            return agentResult;
+        }
+        String output;
+        try {
+            output = readStream(new ByteArrayInputStream(agentResult.getOutput().getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            output = agentResult.getOutput();
+        }
+        agentResult.setOutput(output);
+        if (!agentResult.isSuccess() && agentResult.getExecuteStatus() == null) {
+            agentResult.setErrorMessage(output);
+        }
+        return agentResult;
+    }
 
-        // 启动编译进程
-        Process process = processBuilder.start();
+    private ExecuteResult execCmdQuietly(SandboxContainer container, String[] cmd, String input, OutputComparator comparator) {
+        try {
+            return execCmd(container, cmd, input, comparator);
+        } catch (IOException e) {
+            return ExecuteResult.builder().success(false).errorMessage(e.getMessage()).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecuteResult.builder().success(false).errorMessage(e.getMessage()).build();
+        }
+    }
 
-        // 读取编译过程中的输出
-        String output = readStream(process.getInputStream());
-        int exitCode = process.waitFor(); // 等待进程完成并获取退出代码
+    private ExecuteResult compileCode(SandboxContainer container, String[] compileCmd) throws IOException, InterruptedException {
+        ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(container.getId())
+                .withCmd(compileCmd)
+                .withAttachStdout(true)
+                .withAttachStderr(true)
+                .exec());
+        String execId = execCreateCmdResponse.getId();
+
+        // 编译输出与错误输出合并，超出上限的部分直接截断
+        BoundedOutputBuffer outputStream = outputLimiter.newStderrBuffer();
+        try (BoundedOutputBuffer compileOutput = outputStream;
+             ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
+            @Override
+            public void onNext(Frame frame) {
+                compileOutput.write(frame.getPayload());
+            }
+        }) {
+            boolean completed = dockerCalls.call(container.getDaemon(), "execStart", client -> client.execStartCmd(execId).exec(frameAdapter))
+                    .awaitCompletion(dockerProperties.getCompileTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (!completed) {
+                // 编译器仍在运行，由调用方将容器标记为不可复用
+                throw new IOException("编译超时");
+            }
+        }
+        Long exitCode = dockerCalls.call(container.getDaemon(), "inspectExec", client -> client.inspectExecCmd(execId).exec()).getExitCodeLong();
+        if (exitCode == null) {
+            // 不是编译错误，不能写入编译缓存
+            throw new IOException("无法获取编译器退出码");
+        }
+        String output = readStream(new ByteArrayInputStream(outputStream.toByteArray()));
 
         // 返回执行结果
+        boolean success = exitCode == 0;
         return ExecuteResult.builder()
-                .success(exitCode == 0) // 如果退出代码为 0，则编译成功
+                .success(success) // 如果退出代码为 0，则编译成功
                 .output(output) // 返回编译输出
-                .errorMessage(exitCode != 0 ? "编译失败" : "") // 如果编译失败，返回错误信息
+                .errorMessage(!success ? output : "") // 如果编译失败，返回编译器输出
                 .build();
     }
 
-    private ExecuteResult execCmd(String containerId, String[] cmd, boolean withInput, String input) throws IOException, InterruptedException, ExecutionException {
-        List<String> command = new ArrayList<>();
-        command.add("docker");
-        command.add("exec");
-        command.add("-i");
-        command.add(containerId);
-        command.addAll(Arrays.asList(cmd));
-        final long[] maxMemory = {0};
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.redirectErrorStream(true);
-
-        // 启动进程
-        Process process = processBuilder.start();
-        StatsCmd statsCmd = DOCKER_CLIENT.statsCmd(containerId);
-        ResultCallback<Statistics> statisticsResultCallback = statsCmd.exec(new ResultCallback<Statistics>() {
-
+    /**
+     * 在容器中执行命令，通过 attach 的 stdin 流式写入输入，输出在程序运行期间持续读取，不会因管道写满而阻塞
+     *
+     * @param container 容器
+     * @param cmd       命令
+     * @param input      标准输入，为 null 时不 attach stdin
+     * @param comparator 流式比对器，发现答案错误时提前结束，可为 null
+     * @return {@link ExecuteResult}
+     */
+    private ExecuteResult execCmd(SandboxContainer container, String[] cmd, String input, OutputComparator comparator) throws IOException, InterruptedException {
+        String containerId = container.getId();
+        byte[] inputBytes = input == null ? null : (input + "\n").getBytes(StandardCharsets.UTF_8);
+        String[] execCmd;
+        if (inputBytes == null) {
+            execCmd = cmd;
+        } else {
+            // docker 不会在输入写完后关闭 exec 的 stdin，通过 head -c 读取定长输入，使程序能读到 EOF
+            execCmd = new String[cmd.length + 4];
+            execCmd[0] = "sh";
+            execCmd[1] = "-c";
+            execCmd[2] = "head -c " + inputBytes.length + " | \"$@\"";
+            execCmd[3] = "sh";
+            System.arraycopy(cmd, 0, execCmd, 4, cmd.length);
+        }
+        ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(containerId)
+                .withCmd(execCmd)
+                .withAttachStdin(inputBytes != null)
+                .withAttachStdout(true)
+                .withAttachStderr(true)
+                .exec());
+        String execId = execCreateCmdResponse.getId();
+
+        // 标准输出与错误输出合并，与原先 redirectErrorStream 的行为一致
+        BoundedOutputBuffer outputStream = outputLimiter.newStdoutBuffer();
+        final boolean[] timeout = {true};
+        final boolean[] outputExceeded = {false};
+        final boolean[] wrongAnswer = {false};
+        try (BoundedOutputBuffer output = outputStream;
+             ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
             @Override
-            public void onNext(Statistics statistics) {
-                maxMemory[0] = Math.max(statistics.getMemoryStats().getUsage(), maxMemory[0]);
+            public void onNext(Frame frame) {
+                if (StreamType.STDOUT.equals(frame.getStreamType()) || StreamType.STDERR.equals(frame.getStreamType())
+                        || StreamType.RAW.equals(frame.getStreamType())) {
+                    boolean withinLimit = output.write(frame.getPayload());
+                    if (withinLimit && comparator != null && !comparator.write(frame.getPayload())) {
+                        // 输出已经与期望不一致，不必等程序结束
+                        wrongAnswer[0] = true;
+                    }
+                    if (!withinLimit || wrongAnswer[0]) {
+                        // 输出超限或答案错误，停止捕获并结束等待
+                        outputExceeded[0] = !withinLimit;
+                        try {
+                            close();
+                        } catch (IOException e) {
+                            log.warn("关闭执行输出流失败: {}", e.getMessage());
+                        }
+                    }
+                }
             }
 
             @Override
-            public void close() throws IOException {
-
+            public void onComplete() {
+                timeout[0] = false;
+                super.onComplete();
             }
-
-            @Override
-            public void onStart(Closeable closeable) {
-
+        }) {
+            // 超时按墙钟时间判断，耗时与内存以 cgroup 统计为准
+            boolean completed;
+            CgroupAccounting.Usage usage;
+            try (CgroupAccounting.Probe probe = cgroupAccounting.begin(container)) {
+                completed = dockerCalls.call(container.getDaemon(), "execStart", client -> {
+                    ExecStartCmd execStartCmd = client.execStartCmd(execId);
+                    if (inputBytes != null) {
+                        execStartCmd.withStdIn(new ByteArrayInputStream(inputBytes));
+                    }
+                    return execStartCmd.exec(frameAdapter);
+                }).awaitCompletion(TIMEOUT_LIMIT, TIME_UNIT);
+                usage = probe.finish();
             }
-
-            @Override
-            public void onError(Throwable throwable) {
-
+            Long duration = usage.getCpuTimeMillis();
+            Long memory = usage.getPeakMemoryKb();
+
+            if (outputExceeded[0]) {
+                // 程序仍在输出，容器不再复用，归还时强制删除以结束进程
+                container.markBroken();
+                return ExecuteResult.builder()
+                        .success(false)
+                        .errorMessage(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .time(duration)
+                        .memory(memory)
+                        .build();
             }
 
-            @Override
-            public void onComplete() {
+            if (wrongAnswer[0]) {
+                // 剩余的进程在归还容器重置时结束
+                return ExecuteResult.builder()
+                        .success(false)
+                        .output(readStream(new ByteArrayInputStream(output.toByteArray())))
+                        .errorMessage(ExecuteStatusEnum.WRONG_ANSWER.getText())
+                        .executeStatus(ExecuteStatusEnum.WRONG_ANSWER.getText())
+                        .time(duration)
+                        .memory(memory)
+                        .build();
+            }
 
+            if (!completed || timeout[0]) {
+                // 超时的进程可能仍在运行，容器不再复用
+                container.markBroken();
+                return ExecuteResult.builder()
+                        .success(false)
+                        .errorMessage("执行超时")
+                        .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
+                        .time(duration)
+                        .memory(memory)
+                        .build();
             }
-        });
-        statsCmd.exec(statisticsResultCallback);
-        // 开始监控资源使用
-        long startTime = System.nanoTime();
-
-        // 如果需要，提供输入
-        if (withInput && input != null) {
-            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()))) {
-                writer.write(input + "\n");
-                writer.flush();
+
+            if (usage.isOomKilled()) {
+                // 被内核 OOM 杀死的进程已经退出，容器本身仍可复用
+                return ExecuteResult.builder()
+                        .success(false)
+                        .errorMessage(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText())
+                        .time(duration)
+                        .memory(memory)
+                        .build();
             }
-        }
 
-        boolean completed = process.waitFor(TIMEOUT_LIMIT, TIME_UNIT);
-        long endTime = System.nanoTime();
-        long duration = TimeUnit.NANOSECONDS.toSeconds(endTime - startTime);
+            if (output.isSpilled()) {
+                log.info("输出超过内存上限，超出部分已写入 {}", output.getSpillFile());
+            }
+            Long exitCode = dockerCalls.call(container.getDaemon(), "inspectExec", client -> client.inspectExecCmd(execId).exec()).getExitCodeLong();
+            String outputText = readStream(new ByteArrayInputStream(output.toByteArray()));
 
-        if (!completed) {
-            process.destroy();
+            boolean success = exitCode != null && exitCode == 0;
             return ExecuteResult.builder()
-                    .success(false)
-                    .errorMessage("执行超时")
-                    .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
+                    .success(success)
+                    .output(outputText)
+                    .errorMessage(success ? "" : outputText)
                     .time(duration)
-                    .memory(maxMemory[0] / (1024 * 1024))
+                    .memory(memory)
                     .build();
         }
-
-        String output = readStream(process.getInputStream());
-        String errorOutput = readStream(process.getErrorStream()); // 已经重定向错误流
-
-        return ExecuteResult.builder()
-                .success(process.exitValue() == 0)
-                .output(output)
-                .errorMessage(errorOutput)
-                .time(duration)
-                .memory(maxMemory[0] / (1024 * 1024))
-                .build();
     }
 
 
-    private long parseMemoryUsage(String memUsage) {
-        // memUsage 格式: "10.45MiB / 1.944GiB"
-        String[] parts = memUsage.split("/");
-        String usedMem = parts[0].trim();
-        return convertToBytes(usedMem);
-    }
-
-    private long convertToBytes(String memStr) {
-        try {
-            if (memStr.endsWith("KiB")) {
-                return (long) (Double.parseDouble(memStr.replace("KiB", "").trim()) * 1024);
-            } else if (memStr.endsWith("MiB")) {
-                return (long) (Double.parseDouble(memStr.replace("MiB", "").trim()) * 1024 * 1024);
-            } else if (memStr.endsWith("GiB")) {
-                return (long) (Double.parseDouble(memStr.replace("GiB", "").trim()) * 1024 * 1024 * 1024);
-            } else if (memStr.endsWith("KiB")) {
-                return Long.parseLong(memStr.replace("KiB", "").trim());
-            } else {
-                return 0;
-            }
-        } catch (NumberFormatException e) {
-            log.error("解析内存使用时出错: {}", e.getMessage());
-            return 0;
-        }
-    }
-
-    private String readStream(InputStream inputStream) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+    /**
+     * 按行读取输出，统一换行符并去掉首尾空白
+     */
+    static String readStream(InputStream inputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
         StringBuilder output = new StringBuilder();
         String line;
         while ((line = reader.readLine()) != null) {
@@ -256,27 +536,13 @@ public class DockerSandboxInteract {
         return output.toString().trim();
     }
 
-    private String createContainer(String codeFile, String codeFileName) throws IOException, InterruptedException {
-        String containerId = UUID.randomUUID().toString();
-        // 创建带有资源限制的 Docker 容器 docker run -dit --name 1 --memory 128m --cpus 1.0 -v /home/hrl/code/src/main/resources/languageCode/Main.java:/box codesandbox:latest /bin/bash
-        ProcessBuilder processBuilder = new ProcessBuilder("docker", "run", "-dit", "--name", containerId,
-                "--memory", MEMORY_LIMIT, "--cpus", CPU_LIMIT, "-v", codeFile + ":/box/" + codeFileName, IMAGE, "/bin/bash");
-        Process process = processBuilder.start();
-        process.waitFor();
-        if (process.exitValue() != 0){
-            log.info("创建容器失败！");
-
+    private void cleanUp(SandboxContainer container, SandboxMetrics.PhaseTimer timer) {
+        if (container == null) {
+            return;
         }
-        return containerId;
-    }
-
-    private void cleanUp(String containerId, String userCodePath) throws IOException, InterruptedException {
-        // 删除容器
-        FileUtil.del(userCodePath);
-
-        // 关闭并删除容器
-        DOCKER_CLIENT.stopContainerCmd(containerId).exec();
-        DOCKER_CLIENT.removeContainerCmd(containerId).exec();
+        timer.phase(PhaseEnum.TEARDOWN);
+        // 归还容器，由容器池重置或销毁
+        containerPool.release(container);
     }
 
     private CodeExecuteResponse errorResponse(String status, String errorMsg) {
@@ -287,14 +553,13 @@ public class DockerSandboxInteract {
                 .build();
     }
 
-    private CodeExecuteResponse successResponse(List<String> output, long time, long memory) {
+    private CodeExecuteResponse successResponse(List<String> output, Long time, Long memory) {
         return CodeExecuteResponse.builder()
                 .success(true)
                 .executeStatus(ExecuteStatusEnum.SUCCESS.getText())
                 .time(time)
-                .memory(memory / (1024 * 1024)) // 转换为 MB
+                .memory(memory)
                 .output(output)
                 .build();
     }
 }
-
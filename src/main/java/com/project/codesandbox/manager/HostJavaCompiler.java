@@ -0,0 +1,383 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.project.codesandbox.agent.JavacWorker;
+import com.project.codesandbox.config.HostCompileProperties;
+import com.project.codesandbox.enums.LanguageEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.tools.ToolProvider;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 宿主机 Java 编译
+ * 编译在固定数量的独立 JVM 进程（{@link JavacWorker}）中进行，进程堆大小受限且内存耗尽时直接退出，
+ * 编译超时或进程退出时结束并重启该进程，提交改在沙箱内编译，服务自身的 JVM 不受影响；
+ * 编译成功后类文件随源码一起复制进沙箱，省去沙箱内 javac 在 128 MB / 1 CPU 限制下的 JVM 启动；
+ * 目标版本未配置时取沙箱镜像中 javac 的版本，镜像预热确定版本之前 Java 提交在沙箱内编译
+ */
+@Slf4j
+@Component
+public class HostJavaCompiler {
+
+    private static final String WORKER = JavacWorker.class.getName();
+
+    /**
+     * 编译进程结束或不可读时放入的结束标记
+     */
+    private static final Result END = new Result(false, Collections.emptyMap(), "");
+
+    /**
+     * javac -version 的输出，JDK 8 及以前为 javac 1.8.0_xxx，之后为 javac 17.0.x
+     */
+    private static final Pattern JAVAC_VERSION = Pattern.compile("javac (\\d+)(?:\\.(\\d+))?");
+
+    /**
+     * 使用了高于目标版本的语法时的诊断信息，沙箱内的 javac 可能支持，改在沙箱内编译
+     */
+    private static final Pattern SOURCE_LEVEL_ERROR = Pattern.compile("not supported in -source \\d+|\\(use (-source|--release) \\d+ or higher");
+
+    @Resource
+    private HostCompileProperties hostCompileProperties;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    /**
+     * 编译进程的启动命令，不含目标版本
+     */
+    private List<String> baseCommand;
+
+    private volatile List<String> command;
+
+    /**
+     * 编译进程使用的目标版本，为 null 时尚未启动编译进程
+     */
+    private volatile String release;
+
+    private final ReentrantLock startLock = new ReentrantLock();
+
+    /**
+     * 空闲的编译进程
+     */
+    private BlockingQueue<Worker> idle;
+
+    /**
+     * 全部编译进程，用于关闭服务时结束
+     */
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 等待空闲编译进程的请求数
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        if (!hostCompileProperties.isEnabled()) {
+            return;
+        }
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            log.info("当前运行环境没有 Java 编译器，Java 提交在沙箱内编译");
+            return;
+        }
+        File classDir = new File(FileUtil.getTmpDir(), "codesandbox-javac");
+        try {
+            for (Map.Entry<String, byte[]> classFile : ClassFiles.read(JavacWorker.class).entrySet()) {
+                FileUtil.writeBytes(classFile.getValue(), new File(classDir, classFile.getKey()));
+            }
+        } catch (IOException e) {
+            log.warn("读取宿主机编译进程的类文件失败，Java 提交在沙箱内编译: {}", e.getMessage());
+            return;
+        }
+        baseCommand = new ArrayList<>();
+        baseCommand.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        baseCommand.add("-Xmx" + hostCompileProperties.getWorkerMaxHeap());
+        baseCommand.add("-XX:+ExitOnOutOfMemoryError");
+        baseCommand.add("-cp");
+        baseCommand.add(classDir.getAbsolutePath());
+        baseCommand.add(WORKER);
+        baseCommand.add(String.valueOf(hostCompileProperties.getMaxClassBytes()));
+        baseCommand.add("-proc:none");
+        baseCommand.add("-Xlint:-options");
+        baseCommand.add("-encoding");
+        baseCommand.add("UTF-8");
+        idle = new ArrayBlockingQueue<>(hostCompileProperties.getThreads());
+        if (StrUtil.isNotBlank(hostCompileProperties.getRelease())) {
+            release = hostCompileProperties.getRelease();
+            startWorkers(release);
+        } else {
+            log.info("宿主机编译等待沙箱镜像预热确定 Java 版本，确定之前 Java 提交在沙箱内编译");
+        }
+    }
+
+    /**
+     * 未配置目标版本时，按沙箱镜像中 javac -version 的输出确定目标版本并启动编译进程；
+     * 镜像中的版本高于宿主机时宿主机无法编译其新增的语法和 API，不启用宿主机编译
+     *
+     * @param versionOutput 镜像中 javac -version 的输出
+     */
+    public void useImageJavacVersion(String versionOutput) {
+        if (baseCommand == null || StrUtil.isNotBlank(hostCompileProperties.getRelease())) {
+            return;
+        }
+        Matcher matcher = JAVAC_VERSION.matcher(versionOutput);
+        if (!matcher.find()) {
+            log.warn("无法识别沙箱镜像的 javac 版本: {}", StrUtil.sub(versionOutput.trim(), 0, 200));
+            return;
+        }
+        String imageRelease = "1".equals(matcher.group(1)) && matcher.group(2) != null ? matcher.group(2) : matcher.group(1);
+        startLock.lock();
+        try {
+            if (release != null) {
+                if (!release.equals(imageRelease)) {
+                    log.warn("沙箱镜像的 javac 版本不一致（{} 与 {}），宿主机编译继续使用 --release {}", release, imageRelease, release);
+                }
+                return;
+            }
+            release = imageRelease;
+            if (Integer.parseInt(imageRelease) > hostFeatureVersion()) {
+                log.info("沙箱镜像的 Java 版本 {} 高于宿主机，Java 提交在沙箱内编译", imageRelease);
+                return;
+            }
+            log.info("按沙箱镜像的 Java 版本启用宿主机编译: --release {}", imageRelease);
+            startWorkers(imageRelease);
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    private void startWorkers(String targetRelease) {
+        List<String> workerCommand = new ArrayList<>(baseCommand);
+        // JDK 8 的 javac 不支持 --release，只能编译为 8
+        if (hostFeatureVersion() > 8) {
+            workerCommand.add("--release");
+            workerCommand.add(targetRelease);
+        }
+        command = workerCommand;
+        for (int i = 0; i < hostCompileProperties.getThreads(); i++) {
+            Worker worker = startWorker();
+            if (worker == null) {
+                break;
+            }
+            idle.add(worker);
+        }
+    }
+
+    /**
+     * 宿主机 Java 的主版本号
+     */
+    private static int hostFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.process.destroyForcibly();
+        }
+    }
+
+    /**
+     * 该语言是否在宿主机编译
+     */
+    public boolean supports(LanguageEnum language) {
+        return language == LanguageEnum.JAVA && !workers.isEmpty();
+    }
+
+    /**
+     * 编译提交中的全部 .java 文件
+     *
+     * @param sourceFiles 源码文件
+     * @return 编译结果；源码过大、编译进程全忙、编译超时、编译进程退出或用到了高于目标版本的语法时返回 null，由调用方改在沙箱内编译
+     */
+    public Result compile(SourceFiles sourceFiles) throws InterruptedException {
+        Map<String, byte[]> sources = new LinkedHashMap<>();
+        long sourceBytes = 0;
+        for (Map.Entry<String, byte[]> file : sourceFiles.getFiles().entrySet()) {
+            if (file.getKey().endsWith(".java")) {
+                sources.put(file.getKey(), file.getValue());
+                sourceBytes += file.getValue().length;
+            }
+        }
+        if (sourceBytes > hostCompileProperties.getMaxSourceBytes()) {
+            return null;
+        }
+        Worker worker;
+        if (waiting.incrementAndGet() > hostCompileProperties.getQueueCapacity()) {
+            waiting.decrementAndGet();
+            return null;
+        }
+        try {
+            // 等待空闲进程的时间不计入编译超时
+            worker = idle.poll(hostCompileProperties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (worker == null) {
+            return null;
+        }
+        Result result = null;
+        try {
+            result = worker.request(sources, hostCompileProperties.getTimeoutMillis());
+        } finally {
+            if (result != null) {
+                idle.offer(worker);
+            } else {
+                restart(worker);
+            }
+        }
+        if (result != null && !result.isSuccess() && SOURCE_LEVEL_ERROR.matcher(result.getDiagnostics()).find()) {
+            log.info("提交使用了高于 --release {} 的语法，改在沙箱内编译", release);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * 启动一个编译进程，失败时返回 null
+     */
+    private Worker startWorker() {
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        } catch (IOException e) {
+            log.warn("无法启动宿主机编译进程，Java 提交在沙箱内编译: {}", e.getMessage());
+            return null;
+        }
+        Worker worker = new Worker(process);
+        workers.add(worker);
+        DataInputStream processOutput = new DataInputStream(process.getInputStream());
+        sandboxThreads.newThreadFactory("host-javac-reader-", true).newThread(() -> {
+            try {
+                while (true) {
+                    worker.responses.add(readResult(processOutput));
+                }
+            } catch (IOException | RuntimeException e) {
+                worker.responses.add(END);
+            }
+        }).start();
+        return worker;
+    }
+
+    /**
+     * 结束超时或已退出的编译进程并启动新的进程
+     */
+    private void restart(Worker worker) {
+        worker.process.destroyForcibly();
+        workers.remove(worker);
+        Worker replacement = startWorker();
+        if (replacement != null) {
+            idle.offer(replacement);
+        }
+    }
+
+    private static Result readResult(DataInputStream in) throws IOException {
+        int status = in.readInt();
+        if (status != JavacWorker.STATUS_SUCCESS) {
+            return new Result(false, Collections.emptyMap(), new String(readFrame(in), StandardCharsets.UTF_8));
+        }
+        int count = in.readInt();
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String path = new String(readFrame(in), StandardCharsets.UTF_8);
+            classFiles.put(path, readFrame(in));
+        }
+        return new Result(true, classFiles, "");
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    /**
+     * 编译结果，成功时 classFiles 为 相对路径 -> 类文件，失败时 diagnostics 为错误信息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+
+        private final boolean success;
+
+        private final Map<String, byte[]> classFiles;
+
+        private final String diagnostics;
+    }
+
+    /**
+     * 一个编译进程，同一时间只处理一个请求
+     */
+    private static class Worker {
+
+        private final Process process;
+
+        private final DataOutputStream input;
+
+        private final BlockingQueue<Result> responses = new LinkedBlockingQueue<>();
+
+        Worker(Process process) {
+            this.process = process;
+            this.input = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        }
+
+        /**
+         * 发送编译请求并等待结果，超时或进程退出时返回 null
+         */
+        Result request(Map<String, byte[]> sources, long timeoutMillis) throws InterruptedException {
+            try {
+                input.writeInt(sources.size());
+                for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+                    byte[] path = source.getKey().getBytes(StandardCharsets.UTF_8);
+                    input.writeInt(path.length);
+                    input.write(path);
+                    input.writeInt(source.getValue().length);
+                    input.write(source.getValue());
+                }
+                input.flush();
+            } catch (IOException e) {
+                log.warn("宿主机编译进程通信失败: {}", e.getMessage());
+                return null;
+            }
+            Result result = responses.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (result == null) {
+                log.warn("宿主机编译超过 {} 毫秒，结束编译进程并改在沙箱内编译", timeoutMillis);
+                return null;
+            }
+            if (result == END) {
+                log.warn("宿主机编译进程已退出（可能内存耗尽），改在沙箱内编译");
+                return null;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import com.project.codesandbox.config.AgentProperties;
+import com.project.codesandbox.agent.JavaRunner;
+import com.project.codesandbox.config.OutputLimitProperties;
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.model.ExecuteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容器内评测代理
+ * 代理脚本在创建容器时复制进容器，每次提交只 exec 一次：全部用例输入通过 attach 的 stdin 按长度前缀帧写入，
+ * 代理逐个运行用例并设置 rlimit，按帧返回每个用例的输出、退出码、CPU 时间和内存峰值
+ * Java 提交默认改由 {@link JavaRunner} 在一个 JVM 中运行全部用例，帧格式相同
+ */
+@Slf4j
+@Component
+public class JudgeAgent {
+
+    private static final String AGENT_DIR = "sandbox-agent";
+
+    private static final String AGENT_FILE = "judge_agent.py";
+
+    public static final String AGENT_PATH = "/" + AGENT_DIR + "/" + AGENT_FILE;
+
+    /**
+     * Java 运行器的主类，类文件随代理一起复制到代理目录
+     */
+    private static final String JAVA_RUNNER = JavaRunner.class.getName();
+
+    /**
+     * 启动运行器的 shell 脚本，参数为 JVM 参数和运行器参数
+     * 从镜像中 JDK 的 release 文件读取主版本号，12 及以上才识别 -Djava.security.manager=allow（18 起必须指定才能拦截 System.exit），
+     * JDK 8 与 11 会把 allow 当作类名导致 JVM 无法启动，因此不能固定添加
+     * 协议输出复制到描述符 {@value #JAVA_RUNNER_FRAME_FD}，标准输出指向 /dev/null，用例代码和它启动的进程写标准输出不会混入协议帧
+     */
+    private static final String JAVA_RUNNER_LAUNCHER = "home=$(dirname \"$(dirname \"$(readlink -f \"$(command -v java)\")\")\"); "
+            + "v=$(sed -n 's/^JAVA_VERSION=\"\\([0-9]*\\).*/\\1/p' \"$home/release\" 2>/dev/null); "
+            + "if [ \"${v:-0}\" -ge 12 ]; then set -- -Djava.security.manager=allow \"$@\"; fi; "
+            + "exec java \"$@\" 3>&1 >/dev/null";
+
+    /**
+     * 运行器写协议帧的描述符，与启动脚本中的重定向一致
+     */
+    private static final int JAVA_RUNNER_FRAME_FD = 3;
+
+    /**
+     * 每个用例三帧的长度前缀及元信息预留的字节数
+     */
+    private static final int FRAME_OVERHEAD = 512;
+
+    /**
+     * 代理输出结束的标记
+     */
+    private static final ExecuteResult END = ExecuteResult.builder().build();
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private AgentProperties agentProperties;
+
+    @Resource
+    private OutputLimitProperties outputLimitProperties;
+
+    /**
+     * 代理目录下的文件，相对路径 -> 内容
+     */
+    private Map<String, byte[]> agentFiles;
+
+    /**
+     * 代理目录的 tar 包，复制到容器根目录
+     */
+    private byte[] agentArchive;
+
+    @PostConstruct
+    public void init() throws IOException {
+        agentFiles = new LinkedHashMap<>();
+        agentFiles.put(AGENT_FILE, ResourceUtil.readBytes("agent/" + AGENT_FILE));
+        agentFiles.putAll(ClassFiles.read(JavaRunner.class));
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        agentFiles.forEach((path, content) -> entries.put(AGENT_DIR + "/" + path, content));
+        agentArchive = TarArchives.build(entries, 0755);
+    }
+
+    public boolean isEnabled() {
+        return agentProperties.isEnabled();
+    }
+
+    /**
+     * 将代理脚本复制到容器中，失败时该容器退化为逐个用例 exec
+     *
+     * @param container 容器
+     */
+    public void install(SandboxContainer container) {
+        if (!agentProperties.isEnabled()) {
+            return;
+        }
+        try {
+            dockerCalls.call(container.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(container.getId())
+                    .withTarInputStream(new ByteArrayInputStream(agentArchive))
+                    .withRemotePath("/")
+                    .exec());
+        } catch (RuntimeException e) {
+            log.warn("复制评测代理到容器 {} 失败: {}", container.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 构建在沙箱中启动代理的命令，Java 提交启用运行器时直接启动运行器，Python 提交启用 zygote 时由代理 fork 运行
+     *
+     * @param language        语言
+     * @param timeLimitMillis 单个用例的时间上限
+     * @param interact        是否为交互式输入
+     * @param runAs           用例进程切换到的 uid:gid，代理需以 root 运行；为空时用例与代理同一用户
+     * @return 命令
+     */
+    public List<String> buildCommand(LanguageEnum language, long timeLimitMillis, boolean interact, String runAs) {
+        List<String> cmd = new ArrayList<>();
+        boolean javaRunner = language == LanguageEnum.JAVA && agentProperties.isJavaRunner();
+        if (javaRunner) {
+            cmd.add("sh");
+            cmd.add("-c");
+            cmd.add(JAVA_RUNNER_LAUNCHER);
+            cmd.add("sh");
+            cmd.addAll(agentProperties.getJavaRunnerOptions());
+            cmd.add("-cp");
+            cmd.add("/" + AGENT_DIR);
+            cmd.add(JAVA_RUNNER);
+            cmd.add("--frame-fd");
+            cmd.add(String.valueOf(JAVA_RUNNER_FRAME_FD));
+        } else {
+            cmd.add(agentProperties.getInterpreter());
+            cmd.add(AGENT_PATH);
+        }
+        cmd.add("--time-limit");
+        cmd.add(String.valueOf(timeLimitMillis));
+        cmd.add("--max-stdout");
+        cmd.add(String.valueOf(outputLimitProperties.getMaxStdoutBytes()));
+        cmd.add("--max-stderr");
+        cmd.add(String.valueOf(outputLimitProperties.getMaxStderrBytes()));
+        cmd.add("--fail-fast");
+        if (!javaRunner && StrUtil.isNotBlank(runAs)) {
+            cmd.add("--run-as");
+            cmd.add(runAs);
+        }
+        if (language == LanguageEnum.PYTHON3 && agentProperties.isPythonZygote()) {
+            cmd.add("--python-zygote");
+        }
+        if (interact) {
+            cmd.add("--merge-stderr");
+            cmd.add("--newline");
+        } else {
+            cmd.add("--args");
+        }
+        cmd.add("--");
+        if (javaRunner) {
+            // 运行器只需要主类名，即运行命令的最后一个参数
+            String[] runCmd = language.getRunCmd();
+            cmd.add(runCmd[runCmd.length - 1]);
+        } else {
+            cmd.addAll(Arrays.asList(language.getRunCmd()));
+        }
+        return cmd;
+    }
+
+    /**
+     * 单个用例输出的最大字节数，用于限制代理的总输出
+     */
+    long maxCaseBytes() {
+        return (long) outputLimitProperties.getMaxStdoutBytes() + outputLimitProperties.getMaxStderrBytes() + FRAME_OVERHEAD;
+    }
+
+    /**
+     * 代理目录下的文件，相对路径 -> 内容
+     */
+    Map<String, byte[]> getFiles() {
+        return agentFiles;
+    }
+
+    /**
+     * 通过代理运行全部用例，某个用例运行失败后不再运行后续用例
+     *
+     * @param container       容器
+     * @param language        语言
+     * @param inputList       用例输入
+     * @param timeLimitMillis 单个用例的时间上限
+     * @param interact        为 true 时用例输入末尾补换行写入标准输入、错误输出合并到标准输出，否则输入作为命令行参数
+     * @param listener        每个用例的结果到达时在调用线程上回调，返回 false 时停止运行，可为 null
+     * @return 按输入顺序排列的结果，停止时截止到最后一个回调的用例；代理不可用时返回 null
+     */
+    public List<ExecuteResult> run(SandboxContainer container, LanguageEnum language, List<String> inputList,
+                                   long timeLimitMillis, boolean interact, CaseListener listener) throws InterruptedException {
+        if (!agentProperties.isEnabled()) {
+            return null;
+        }
+        List<String> cmd = buildCommand(language, timeLimitMillis, interact, agentProperties.getRunAs());
+
+        long caseBytes = maxCaseBytes();
+        FrameDecoder decoder = new FrameDecoder(caseBytes * inputList.size());
+        // 帧在回调线程上解码，结果交给调用线程比对，比对期间不阻塞输出读取
+        BlockingQueue<ExecuteResult> decoded = new LinkedBlockingQueue<>();
+        ByteArrayOutputStream agentError = new ByteArrayOutputStream();
+        List<ExecuteResult> results = new ArrayList<>();
+        try (ResultCallback.Adapter<Frame> frameAdapter = new ResultCallback.Adapter<Frame>() {
+            @Override
+            public void onNext(Frame frame) {
+                if (StreamType.STDERR.equals(frame.getStreamType())) {
+                    if (agentError.size() < FRAME_OVERHEAD) {
+                        agentError.write(frame.getPayload(), 0, frame.getPayload().length);
+                    }
+                    return;
+                }
+                try {
+                    decoded.addAll(decoder.feed(frame.getPayload()));
+                } catch (IOException e) {
+                    decoded.add(END);
+                    try {
+                        close();
+                    } catch (IOException ex) {
+                        log.warn("关闭评测代理输出流失败: {}", ex.getMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                decoded.add(END);
+                super.onComplete();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                decoded.add(END);
+                super.onError(throwable);
+            }
+        }) {
+            ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(container.getDaemon(), "execCreate", client -> client.execCreateCmd(container.getId())
+                    .withCmd(cmd.toArray(new String[0]))
+                    .withAttachStdin(true)
+                    .withAttachStdout(true)
+                    .withAttachStderr(true)
+                    .exec());
+            dockerCalls.call(container.getDaemon(), "execStart", client -> client.execStartCmd(execCreateCmdResponse.getId())
+                    .withStdIn(encodeInputs(inputList))
+                    .exec(frameAdapter));
+            long deadline = System.currentTimeMillis() + (timeLimitMillis + 1000) * inputList.size() + agentProperties.getGraceMillis();
+            while (results.size() < inputList.size()) {
+                ExecuteResult result = decoded.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    // 代理本身卡住，容器不再复用，未返回结果的用例按超时处理
+                    container.markBroken();
+                    results.add(ExecuteResult.builder()
+                            .success(false)
+                            .errorMessage("执行超时")
+                            .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
+                            .build());
+                    return results;
+                }
+                if (result == END) {
+                    break;
+                }
+                results.add(result);
+                boolean proceed = listener == null ? result.isSuccess() : listener.onResult(results.size() - 1, result);
+                if (!proceed) {
+                    // 剩余的用例不再需要，代理进程在归还容器重置时结束
+                    return results;
+                }
+            }
+            if (decoder.isExceeded()) {
+                container.markBroken();
+                log.warn("评测代理输出超过上限");
+                return null;
+            }
+            boolean failed = !results.isEmpty() && !results.get(results.size() - 1).isSuccess();
+            if (results.size() < inputList.size() && !failed) {
+                log.warn("评测代理在容器 {} 中运行异常，返回 {}/{} 个结果: {}", container.getId(), results.size(),
+                        inputList.size(), new String(agentError.toByteArray(), StandardCharsets.UTF_8).trim());
+                return null;
+            }
+            return results;
+        } catch (IOException | RuntimeException e) {
+            log.warn("评测代理在容器 {} 中运行失败: {}", container.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 编码用例输入，来自测试数据存储的用例直接从映射缓冲区读取
+     */
+    static InputStream encodeInputs(List<String> inputList) throws IOException {
+        if (inputList instanceof MappedCaseList) {
+            MappedCaseList mappedCaseList = (MappedCaseList) inputList;
+            List<InputStream> streams = new ArrayList<>(mappedCaseList.size() * 2 + 1);
+            streams.add(new ByteArrayInputStream(ByteBuffer.allocate(4).putInt(mappedCaseList.size()).array()));
+            for (int i = 0; i < mappedCaseList.size(); i++) {
+                ByteBuffer buffer = mappedCaseList.buffer(i);
+                streams.add(new ByteArrayInputStream(ByteBuffer.allocate(4).putInt(buffer.remaining()).array()));
+                streams.add(new ByteBufferInputStream(buffer));
+            }
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }
+        ByteArrayOutputStream inputs = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(inputs);
+        out.writeInt(inputList.size());
+        for (String input : inputList) {
+            byte[] bytes = (input == null ? "" : input).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.flush();
+        return new ByteArrayInputStream(inputs.toByteArray());
+    }
+
+    private static ExecuteResult toExecuteResult(JSONObject meta, String stdout, String stderr) {
+        String status = meta.getStr("status");
+        int exitCode = meta.getInt("exitCode", -1);
+        ExecuteResult.ExecuteResultBuilder builder = ExecuteResult.builder()
+                .output(stdout)
+                .errorMessage(stderr)
+                .time(meta.getLong("time", 0L))
+                .memory(meta.getLong("memory", 0L));
+        switch (status) {
+            case "ok":
+                return builder.success(exitCode == 0).build();
+            case "timeout":
+                return builder.success(false).errorMessage("执行超时").executeStatus(ExecuteStatusEnum.TIMEOUT.getText()).build();
+            case "ole":
+                return builder.success(false).errorMessage(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText()).build();
+            case "mle":
+                return builder.success(false).errorMessage(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText()).build();
+            default:
+                return builder.success(false).build();
+        }
+    }
+
+    /**
+     * 用例结果回调
+     */
+    @FunctionalInterface
+    public interface CaseListener {
+
+        /**
+         * @param index  用例下标
+         * @param result 用例结果，可以修改
+         * @return 是否继续运行后续用例
+         */
+        boolean onResult(int index, ExecuteResult result);
+    }
+
+    /**
+     * 读取缓冲区剩余内容的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * 增量解码代理输出，每个用例为 元信息、标准输出、错误输出 三帧
+     * 未解码的数据保存在可增长的缓冲区 [start, end) 中，空间不足时先把未解码部分移到开头，仍不足再按倍数扩容，
+     * 每个字节只被复制常数次
+     */
+    static class FrameDecoder {
+
+        private static final int INITIAL_CAPACITY = 8192;
+
+        private final long maxBytes;
+
+        private long received;
+
+        private boolean exceeded;
+
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+        private int start;
+
+        private int end;
+
+        FrameDecoder(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        List<ExecuteResult> feed(byte[] payload) throws IOException {
+            return feed(payload, 0, payload.length);
+        }
+
+        List<ExecuteResult> feed(byte[] payload, int offset, int length) throws IOException {
+            received += length;
+            if (received > maxBytes) {
+                exceeded = true;
+                throw new IOException("评测代理输出超过上限");
+            }
+            ensureCapacity(length);
+            System.arraycopy(payload, offset, buffer, end, length);
+            end += length;
+            List<ExecuteResult> results = new ArrayList<>();
+            while (true) {
+                int metaEnd = frameEnd(start);
+                int stdoutEnd = metaEnd < 0 ? -1 : frameEnd(metaEnd);
+                int stderrEnd = stdoutEnd < 0 ? -1 : frameEnd(stdoutEnd);
+                if (stderrEnd < 0) {
+                    break;
+                }
+                results.add(toExecuteResult(JSONUtil.parseObj(frameString(start, metaEnd)),
+                        frameString(metaEnd, stdoutEnd), frameString(stdoutEnd, stderrEnd)));
+                start = stderrEnd;
+            }
+            if (start == end) {
+                start = 0;
+                end = 0;
+            }
+            return results;
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+
+        private void ensureCapacity(int length) {
+            if (buffer.length - end >= length) {
+                return;
+            }
+            int size = end - start;
+            byte[] target = buffer;
+            if (buffer.length - size < length) {
+                // 总量受 maxBytes 限制，不会超过 int 范围
+                target = new byte[(int) Math.max((long) buffer.length * 2, (long) size + length)];
+            }
+            System.arraycopy(buffer, start, target, 0, size);
+            buffer = target;
+            start = 0;
+            end = size;
+        }
+
+        /**
+         * @return 从 offset 开始的完整帧的结束位置，数据不足时返回 -1
+         */
+        private int frameEnd(int offset) {
+            if (end - offset < 4) {
+                return -1;
+            }
+            int length = ((buffer[offset] & 0xff) << 24) | ((buffer[offset + 1] & 0xff) << 16)
+                    | ((buffer[offset + 2] & 0xff) << 8) | (buffer[offset + 3] & 0xff);
+            long frameEnd = (long) offset + 4 + length;
+            return frameEnd > end ? -1 : (int) frameEnd;
+        }
+
+        private String frameString(int frameStart, int frameEnd) {
+            return new String(buffer, frameStart + 4, frameEnd - frameStart - 4, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.project.codesandbox.manager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * 以内存映射缓冲区保存的用例内容
+ * 只有调用 {@link #get(int)} 时才解码为字符串，评测代理直接从缓冲区写入容器，不为每个用例创建字符串
+ */
+public class MappedCaseList extends AbstractList<String> {
+
+    private final List<ByteBuffer> buffers;
+
+    public MappedCaseList(List<ByteBuffer> buffers) {
+        this.buffers = buffers;
+    }
+
+    @Override
+    public String get(int index) {
+        return StandardCharsets.UTF_8.decode(buffer(index)).toString();
+    }
+
+    @Override
+    public int size() {
+        return buffers.size();
+    }
+
+    /**
+     * 用例内容的只读视图，每次调用返回独立的读写位置
+     */
+    public ByteBuffer buffer(int index) {
+        return buffers.get(index).asReadOnlyBuffer();
+    }
+
+    /**
+     * 全部用例的总字节数
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,605 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.project.codesandbox.config.EngineProperties;
+import com.project.codesandbox.config.NativeSandboxProperties;
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.enums.PhaseEnum;
+import com.project.codesandbox.model.CodeExecuteRequest;
+import com.project.codesandbox.model.CodeExecuteResponse;
+import com.project.codesandbox.model.ExecuteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 本机进程引擎
+ * 不经过 Docker，每次提交创建独立的工作目录，通过 nsjail 在新的命名空间中编译和运行：
+ * 根文件系统只读挂载运行时目录，/box 和 /tmp 为每次单独挂载且限制大小的 tmpfs，宿主机上的工作目录挂载到 /box-src，
+ * 启动命令前复制到 /box，编译阶段结束后再把 /box 复制回工作目录，沙箱内的写入都先落在受限的 tmpfs 中；
+ * 内存和进程数由 cgroup v2 子树限制，并设置 rlimit 和 seccomp 策略。用例仍由评测代理一次运行，输入输出协议与容器内一致
+ * C/C++ 和 Python 使用内置的 seccomp 白名单，其余语言需要配置策略，隔离弱于 Docker 引擎，只有在 codesandbox.engine 中显式选择时才使用本引擎
+ */
+@Slf4j
+@Component
+public class NativeSandboxEngine implements SandboxEngine {
+
+    public static final String NAME = "native";
+
+    private static final long TIME_LIMIT_MILLIS = 3000;
+
+    /**
+     * 代理输出结束的标记
+     */
+    private static final ExecuteResult END = ExecuteResult.builder().build();
+
+    /**
+     * 运行时退出但内存峰值接近上限时视为内存超限
+     */
+    private static final double MEMORY_LIMIT_RATIO = 0.95;
+
+    /**
+     * 工作目录在沙箱内的挂载点，编译阶段可写，运行阶段只读
+     */
+    private static final String SOURCE_DIR = "/box-src";
+
+    /**
+     * 把工作目录复制到 /box 后执行命令，命令为脚本之后的参数
+     */
+    private static final String RUN_STAGE_SCRIPT = "cp -R " + SOURCE_DIR + "/. . && exec \"$@\"";
+
+    /**
+     * 编译成功后再把 /box 复制回工作目录，复制量不超过 tmpfs 大小；编译失败时保留编译器的退出码
+     */
+    private static final String COMPILE_STAGE_SCRIPT = "cp -R " + SOURCE_DIR + "/. . && \"$@\" && cp -R ./. " + SOURCE_DIR + "/";
+
+    /**
+     * 内置 seccomp 白名单的语言 -> 依次拼接的策略，对应 native/seccomp-策略名.policy
+     */
+    private static final Map<LanguageEnum, List<String>> BUILTIN_POLICIES = new EnumMap<>(LanguageEnum.class);
+
+    static {
+        BUILTIN_POLICIES.put(LanguageEnum.PYTHON3, Collections.singletonList("agent"));
+        BUILTIN_POLICIES.put(LanguageEnum.C, Arrays.asList("agent", "cpp"));
+        BUILTIN_POLICIES.put(LanguageEnum.CPP, Arrays.asList("agent", "cpp"));
+    }
+
+    @Resource
+    private NativeSandboxProperties nativeSandboxProperties;
+
+    @Resource
+    private EngineProperties engineProperties;
+
+    @Resource
+    private JudgeAgent judgeAgent;
+
+    @Resource
+    private HostJavaCompiler hostJavaCompiler;
+
+    @Resource
+    private OutputLimiter outputLimiter;
+
+    @Resource
+    private OutputChecker outputChecker;
+
+    @Resource
+    private SandboxMetrics sandboxMetrics;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    private ExecutorService ioExecutor;
+
+    private File workRoot;
+
+    /**
+     * 代理脚本所在目录，只读挂载到沙箱的 /sandbox-agent
+     */
+    private File agentDir;
+
+    /**
+     * 各语言使用的 seccomp 策略，没有策略的语言不能在本引擎中运行
+     */
+    private final Map<LanguageEnum, File> languagePolicies = new EnumMap<>(LanguageEnum.class);
+
+    /**
+     * 使用内置黑名单策略的语言
+     */
+    private final List<String> blacklistLanguages = new ArrayList<>();
+
+    private volatile boolean available;
+
+    @PostConstruct
+    public void init() {
+        ioExecutor = Executors.newCachedThreadPool(sandboxThreads.newThreadFactory("native-sandbox-io-", true));
+        if (!new File(nativeSandboxProperties.getNsjailPath()).canExecute()) {
+            log.info("未找到 nsjail: {}，本机进程引擎不可用", nativeSandboxProperties.getNsjailPath());
+            return;
+        }
+        try {
+            workRoot = FileUtil.mkdir(nativeSandboxProperties.getWorkRoot());
+            agentDir = FileUtil.mkdir(new File(workRoot, "agent"));
+            openToSandbox(agentDir);
+            for (Map.Entry<String, byte[]> entry : judgeAgent.getFiles().entrySet()) {
+                File agentFile = FileUtil.writeBytes(entry.getValue(), new File(agentDir, entry.getKey()));
+                for (File file = agentFile; !file.equals(agentDir); file = file.getParentFile()) {
+                    file.setReadable(true, false);
+                    file.setExecutable(true, false);
+                }
+            }
+            initPolicies();
+            warnWeakPolicies();
+            available = true;
+        } catch (RuntimeException e) {
+            log.warn("初始化本机进程引擎失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * 按 单独配置的策略文件、内置白名单、seccompPolicyFile、内置黑名单（需显式开启）的顺序为每种语言选择 seccomp 策略
+     */
+    private void initPolicies() {
+        File fallbackPolicy = null;
+        if (StrUtil.isNotBlank(nativeSandboxProperties.getSeccompPolicyFile())) {
+            fallbackPolicy = new File(nativeSandboxProperties.getSeccompPolicyFile());
+        } else if (nativeSandboxProperties.isBlacklistPolicyEnabled()) {
+            fallbackPolicy = FileUtil.writeBytes(ResourceUtil.readBytes("native/seccomp.policy"), new File(workRoot, "seccomp.policy"));
+        }
+        Map<List<String>, File> builtinPolicyFiles = new HashMap<>();
+        for (LanguageEnum language : LanguageEnum.values()) {
+            List<String> builtin = BUILTIN_POLICIES.get(language);
+            if (builtin != null) {
+                languagePolicies.put(language, builtinPolicyFiles.computeIfAbsent(builtin, this::writeBuiltinPolicy));
+            } else if (fallbackPolicy != null) {
+                languagePolicies.put(language, fallbackPolicy);
+                if (StrUtil.isBlank(nativeSandboxProperties.getSeccompPolicyFile())) {
+                    blacklistLanguages.add(language.getLanguage());
+                }
+            }
+        }
+        nativeSandboxProperties.getSeccompPolicyFiles().forEach((language, policyFile) -> {
+            LanguageEnum languageEnum = LanguageEnum.getEnumByValue(language);
+            if (languageEnum == null) {
+                log.warn("seccomp 策略配置了不支持的语言: {}", language);
+            } else {
+                languagePolicies.put(languageEnum, new File(policyFile));
+                blacklistLanguages.remove(languageEnum.getLanguage());
+            }
+        });
+    }
+
+    /**
+     * 拼接内置的白名单策略，未列出的系统调用结束进程
+     */
+    private File writeBuiltinPolicy(List<String> policies) {
+        StringBuilder text = new StringBuilder();
+        for (String policy : policies) {
+            text.append(ResourceUtil.readUtf8Str("native/seccomp-" + policy + ".policy")).append('\n');
+        }
+        text.append("USE ").append(String.join(", ", policies)).append(" DEFAULT KILL\n");
+        return FileUtil.writeUtf8String(text.toString(), new File(workRoot, "seccomp-" + String.join("-", policies) + ".policy"));
+    }
+
+    /**
+     * 选择了本引擎的语言只受黑名单约束或没有策略时，启动时提示
+     */
+    private void warnWeakPolicies() {
+        List<String> blacklisted = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (LanguageEnum language : LanguageEnum.values()) {
+            String engine = engineProperties.getLanguages().getOrDefault(language.getLanguage(), engineProperties.getDefaultEngine());
+            if (!NAME.equals(engine)) {
+                continue;
+            }
+            if (!languagePolicies.containsKey(language)) {
+                missing.add(language.getLanguage());
+            } else if (blacklistLanguages.contains(language.getLanguage())) {
+                blacklisted.add(language.getLanguage());
+            }
+        }
+        if (!blacklisted.isEmpty()) {
+            log.warn("{} 使用本机进程引擎的内置 seccomp 黑名单策略，隔离弱于 Docker 引擎，建议通过 codesandbox.native.seccomp-policy-files 配置白名单", blacklisted);
+        }
+        if (!missing.isEmpty()) {
+            log.warn("{} 没有 seccomp 白名单策略，在本机进程引擎中将返回错误，请通过 codesandbox.native.seccomp-policy-files 配置", missing);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public CodeExecuteResponse execute(CodeExecuteRequest codeExecuteRequest, boolean interact) {
+        SandboxMetrics.PhaseTimer timer = sandboxMetrics.start(interact ? SandboxMetrics.MODE_INTERACT : SandboxMetrics.MODE_ARGS,
+                codeExecuteRequest.getLanguage());
+        CodeExecuteResponse response = null;
+        try {
+            response = doExecute(codeExecuteRequest, interact, timer);
+            return response;
+        } finally {
+            timer.finish(response);
+        }
+    }
+
+    private CodeExecuteResponse doExecute(CodeExecuteRequest codeExecuteRequest, boolean interact, SandboxMetrics.PhaseTimer timer) {
+        timer.phase(PhaseEnum.PREPARE);
+        LanguageEnum languageCmdEnum = LanguageEnum.getEnumByValue(codeExecuteRequest.getLanguage());
+        if (languageCmdEnum == null) {
+            return errorResponse(ExecuteStatusEnum.LANGUAGE_ERROR.getText(), "不支持的编程语言");
+        }
+        if (!languagePolicies.containsKey(languageCmdEnum)) {
+            return errorResponse(ExecuteStatusEnum.LANGUAGE_ERROR.getText(), "本机进程引擎未配置该语言的 seccomp 策略");
+        }
+        SourceFiles sourceFiles = SourceFiles.of(languageCmdEnum, codeExecuteRequest.getCode(), codeExecuteRequest.getFiles());
+
+        // 每次提交独立的工作目录，沙箱内的用户需要写入编译产物
+        String runId = IdUtil.fastSimpleUUID();
+        File runDir = new File(workRoot, "run-" + runId);
+        File logFile = new File(workRoot, "run-" + runId + ".log");
+        try {
+            timer.phase(PhaseEnum.COPY);
+            FileUtil.mkdir(runDir);
+            sourceFiles.writeTo(runDir);
+            openToSandbox(runDir);
+
+            HostJavaCompiler.Result hostCompileResult = null;
+            if (hostJavaCompiler.supports(languageCmdEnum)) {
+                timer.phase(PhaseEnum.COMPILE);
+                hostCompileResult = hostJavaCompiler.compile(sourceFiles);
+                if (hostCompileResult != null && !hostCompileResult.isSuccess()) {
+                    return errorResponse(ExecuteStatusEnum.COMPILE_ERROR.getText(), hostCompileResult.getDiagnostics());
+                }
+                if (hostCompileResult != null) {
+                    for (Map.Entry<String, byte[]> classFile : hostCompileResult.getClassFiles().entrySet()) {
+                        FileUtil.writeBytes(classFile.getValue(), new File(runDir, classFile.getKey()));
+                    }
+                    openToSandbox(runDir);
+                }
+            }
+            if (hostCompileResult == null && languageCmdEnum.getCompileCmd() != null) {
+                timer.phase(PhaseEnum.COMPILE);
+                ExecuteResult compileResult = compile(runDir, languageCmdEnum);
+                if (!compileResult.isSuccess()) {
+                    return errorResponse(ExecuteStatusEnum.COMPILE_ERROR.getText(), compileResult.getErrorMessage());
+                }
+                log.info("编译完成...");
+            }
+
+            timer.phase(PhaseEnum.RUN);
+            List<String> inputList = codeExecuteRequest.getInput();
+            boolean noInput = CollUtil.isEmpty(inputList);
+            List<String> cases = noInput ? Collections.singletonList("") : inputList;
+            try (OutputChecker.Session checkSession = outputChecker.open(noInput ? null : codeExecuteRequest.getCheck())) {
+                List<ExecuteResult> results = runAgent(runDir, logFile, languageCmdEnum, cases, interact,
+                        (index, result) -> {
+                            normalizeResult(result, interact);
+                            return !checkSession.shouldStop(checkSession.apply(index, cases, result));
+                        });
+                return toResponse(results, cases.size(), checkSession);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("本机进程引擎运行失败: {}", e.getMessage());
+            return errorResponse(ExecuteStatusEnum.RUNTIME_ERROR.getText(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorResponse(ExecuteStatusEnum.RUNTIME_ERROR.getText(), e.getMessage());
+        } finally {
+            timer.phase(PhaseEnum.TEARDOWN);
+            FileUtil.del(runDir);
+            FileUtil.del(logFile);
+        }
+    }
+
+    /**
+     * 在沙箱中编译，标准输出和错误输出合并作为编译信息
+     */
+    private ExecuteResult compile(File runDir, LanguageEnum language) throws IOException, InterruptedException {
+        long timeoutMillis = nativeSandboxProperties.getCompileTimeoutMillis();
+        Process process = new ProcessBuilder(jail(runDir, language, Arrays.asList(language.getCompileCmd()), timeoutMillis, true))
+                .redirectErrorStream(true)
+                .start();
+        process.getOutputStream().close();
+        BoundedOutputBuffer output = outputLimiter.newStderrBuffer();
+        try {
+            Future<?> drained = ioExecutor.submit(() -> drain(process.getInputStream(), output));
+            if (!process.waitFor(timeoutMillis + 1000, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                return ExecuteResult.builder().success(false).errorMessage("编译超时").build();
+            }
+            // 进程结束后等待输出读取完毕
+            try {
+                drained.get(1, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                log.debug("读取编译输出未完成: {}", e.getMessage());
+            }
+            String message = output.toString(StandardCharsets.UTF_8);
+            return ExecuteResult.builder().success(process.exitValue() == 0).errorMessage(message).build();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 在沙箱中启动评测代理运行全部用例
+     *
+     * @return 按输入顺序排列的结果，停止时截止到最后一个回调的用例
+     */
+    private List<ExecuteResult> runAgent(File runDir, File logFile, LanguageEnum language, List<String> cases, boolean interact,
+                                         JudgeAgent.CaseListener listener) throws IOException, InterruptedException {
+        long totalMillis = (TIME_LIMIT_MILLIS + 1000) * cases.size() + 1000;
+        // nsjail 已以非特权用户启动整个沙箱，代理无法也无需再切换用户
+        List<String> agentCmd = judgeAgent.buildCommand(language, TIME_LIMIT_MILLIS, interact, null);
+        Process process = new ProcessBuilder(jail(runDir, language, agentCmd, totalMillis, false))
+                .redirectError(logFile)
+                .start();
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(judgeAgent.maxCaseBytes() * cases.size());
+        BlockingQueue<ExecuteResult> decoded = new LinkedBlockingQueue<>();
+        List<ExecuteResult> results = new ArrayList<>();
+        try {
+            // 输入在单独的线程写入，代理输出较多时不会互相阻塞
+            ioExecutor.execute(() -> {
+                try (OutputStream stdin = process.getOutputStream(); InputStream inputs = JudgeAgent.encodeInputs(cases)) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = inputs.read(buffer)) > 0) {
+                        stdin.write(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    log.debug("写入用例输入中断: {}", e.getMessage());
+                }
+            });
+            ioExecutor.execute(() -> {
+                try (InputStream stdout = process.getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = stdout.read(buffer)) > 0) {
+                        decoded.addAll(decoder.feed(buffer, 0, n));
+                    }
+                } catch (IOException e) {
+                    log.debug("读取评测代理输出中断: {}", e.getMessage());
+                } finally {
+                    decoded.add(END);
+                }
+            });
+            long deadline = System.currentTimeMillis() + totalMillis;
+            while (results.size() < cases.size()) {
+                ExecuteResult result = decoded.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    results.add(ExecuteResult.builder()
+                            .success(false)
+                            .errorMessage("执行超时")
+                            .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
+                            .build());
+                    return results;
+                }
+                if (result == END) {
+                    break;
+                }
+                results.add(result);
+                if (!listener.onResult(results.size() - 1, result)) {
+                    return results;
+                }
+            }
+            if (decoder.isExceeded()) {
+                results.add(ExecuteResult.builder()
+                        .success(false)
+                        .errorMessage(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .executeStatus(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText())
+                        .build());
+                return results;
+            }
+            boolean failed = !results.isEmpty() && !results.get(results.size() - 1).isSuccess();
+            if (results.size() < cases.size() && !failed) {
+                // 代理被 cgroup 或 nsjail 结束时没有结果帧
+                String agentError = FileUtil.exist(logFile) ? StrUtil.sub(FileUtil.readUtf8String(logFile), 0, 512).trim() : "";
+                log.warn("评测代理返回 {}/{} 个结果: {}", results.size(), cases.size(), agentError);
+                results.add(ExecuteResult.builder().success(false).errorMessage(agentError).build());
+            }
+            return results;
+        } finally {
+            // 剩余的用例不再需要时直接结束整个沙箱
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * 与容器内代理的结果处理保持一致，并按 cgroup 内存上限识别内存超限
+     */
+    private void normalizeResult(ExecuteResult result, boolean interact) {
+        if (interact) {
+            DockerSandboxInteract.normalizeAgentResult(result);
+        }
+        long memoryLimitKb = nativeSandboxProperties.getMemoryLimitBytes() / 1024;
+        if (!result.isSuccess() && result.getExecuteStatus() == null && result.getMemory() != null
+                && result.getMemory() >= memoryLimitKb * MEMORY_LIMIT_RATIO) {
+            result.setErrorMessage(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText());
+            result.setExecuteStatus(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText());
+        }
+    }
+
+    private CodeExecuteResponse toResponse(List<ExecuteResult> results, int caseCount, OutputChecker.Session checkSession) {
+        List<String> outputList = new ArrayList<>();
+        List<String> caseStatusList = new ArrayList<>();
+        long maxTime = 0;
+        long maxMemory = 0;
+        boolean wrongAnswer = false;
+        for (int i = 0; i < Math.min(results.size(), caseCount); i++) {
+            ExecuteResult executeResult = results.get(i);
+            String caseStatus = executeResult.isSuccess() ? ExecuteStatusEnum.SUCCESS.getText() : failedStatus(executeResult);
+            caseStatusList.add(caseStatus);
+            if (executeResult.isSuccess() || ExecuteStatusEnum.WRONG_ANSWER.getText().equals(caseStatus)) {
+                outputList.add(executeResult.getOutput());
+                maxTime = Math.max(maxTime, executeResult.getTime() == null ? 0 : executeResult.getTime());
+                maxMemory = Math.max(maxMemory, executeResult.getMemory() == null ? 0 : executeResult.getMemory());
+            }
+            if (!executeResult.isSuccess()) {
+                if (checkSession.shouldStop(executeResult)) {
+                    CodeExecuteResponse response = errorResponse(caseStatus, executeResult.getErrorMessage());
+                    response.setOutput(outputList);
+                    response.setTime(maxTime);
+                    response.setMemory(maxMemory);
+                    response.setCaseStatusList(caseStatusList);
+                    return response;
+                }
+                // 不跳过剩余用例时继续运行，最终结果为答案错误
+                wrongAnswer = true;
+            }
+        }
+        return CodeExecuteResponse.builder()
+                .success(!wrongAnswer)
+                .executeStatus(wrongAnswer ? ExecuteStatusEnum.WRONG_ANSWER.getText() : ExecuteStatusEnum.SUCCESS.getText())
+                .errorMessage(wrongAnswer ? ExecuteStatusEnum.WRONG_ANSWER.getText() : null)
+                .time(maxTime)
+                .memory(maxMemory)
+                .output(outputList)
+                .caseStatusList(caseStatusList)
+                .build();
+    }
+
+    /**
+     * 运行失败时的执行状态，输出超限、内存超限、答案错误直接透传，与 Docker 引擎一致，其余视为运行错误
+     */
+    private String failedStatus(ExecuteResult executeResult) {
+        String status = executeResult.getExecuteStatus();
+        if (ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText().equals(status)
+                || ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText().equals(status)
+                || ExecuteStatusEnum.WRONG_ANSWER.getText().equals(status)) {
+            return status;
+        }
+        return ExecuteStatusEnum.RUNTIME_ERROR.getText();
+    }
+
+    /**
+     * 构建 nsjail 命令
+     *
+     * @param runDir          工作目录，挂载为 /box-src，内容复制到 /box 后再执行命令
+     * @param language        语言，用于选择 seccomp 策略
+     * @param cmd             沙箱内执行的命令
+     * @param timeLimitMillis 整个沙箱的墙钟时间上限
+     * @param compile         是否为编译阶段，只有编译阶段需要把产物写回工作目录
+     * @return 命令
+     */
+    private List<String> jail(File runDir, LanguageEnum language, List<String> cmd, long timeLimitMillis, boolean compile) {
+        NativeSandboxProperties props = nativeSandboxProperties;
+        List<String> jail = new ArrayList<>();
+        jail.add(props.getNsjailPath());
+        jail.addAll(Arrays.asList("-Mo", "--quiet",
+                "--user", String.valueOf(props.getUid()),
+                "--group", String.valueOf(props.getGid()),
+                "--hostname", "sandbox",
+                "--cwd", ContainerPool.WORK_DIR,
+                "--time_limit", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(timeLimitMillis + 999)),
+                "--rlimit_fsize", String.valueOf(props.getMaxFileSizeMb()),
+                "--rlimit_nofile", "256",
+                "--max_cpus", "1",
+                "-E", "PATH=/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin",
+                "-E", "HOME=/tmp"));
+        for (String mount : props.getReadOnlyMounts()) {
+            if (new File(mount).exists()) {
+                jail.add("-R");
+                jail.add(mount);
+            }
+        }
+        jail.add(compile ? "-B" : "-R");
+        jail.add(runDir.getAbsolutePath() + ":" + SOURCE_DIR);
+        jail.add("-R");
+        jail.add(agentDir.getAbsolutePath() + ":" + new File(JudgeAgent.AGENT_PATH).getParent());
+        // 每个沙箱单独挂载 tmpfs，写入量受 size 限制，不占用宿主机共享的 /dev/shm，也不直接写宿主机磁盘
+        jail.add("-m");
+        jail.add("none:" + ContainerPool.WORK_DIR + ":tmpfs:size=" + props.getTmpfsSizeBytes());
+        jail.add("-m");
+        jail.add("none:/tmp:tmpfs:size=" + props.getTmpfsSizeBytes());
+        if (props.isCgroupEnabled()) {
+            // 内存由 cgroup 限制，地址空间不再限制，否则 JVM 等运行时无法预留堆
+            jail.addAll(Arrays.asList("--use_cgroupv2",
+                    "--cgroupv2_mount", props.getCgroupRoot(),
+                    "--cgroup_mem_max", String.valueOf(props.getMemoryLimitBytes()),
+                    "--cgroup_pids_max", String.valueOf(props.getPidsLimit()),
+                    "--rlimit_as", "inf"));
+        } else {
+            jail.add("--rlimit_as");
+            jail.add(String.valueOf(props.getMemoryLimitBytes() / 1024 / 1024));
+        }
+        jail.add("--seccomp_policy");
+        jail.add(languagePolicies.get(language).getAbsolutePath());
+        jail.addAll(Arrays.asList("--", "/bin/sh", "-c", compile ? COMPILE_STAGE_SCRIPT : RUN_STAGE_SCRIPT, "sh"));
+        jail.addAll(cmd);
+        return jail;
+    }
+
+    private static void drain(InputStream inputStream, BoundedOutputBuffer output) {
+        byte[] buffer = new byte[8192];
+        int n;
+        try {
+            while ((n = inputStream.read(buffer)) > 0) {
+                output.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            log.debug("读取编译输出中断: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 沙箱内以 nobody 运行，需要能够进入目录，编译阶段复制回工作目录时还要覆盖其中的文件
+     */
+    private static void openToSandbox(File file) {
+        file.setReadable(true, false);
+        file.setWritable(true, false);
+        File[] children = file.listFiles();
+        if (children == null) {
+            return;
+        }
+        file.setExecutable(true, false);
+        for (File child : children) {
+            openToSandbox(child);
+        }
+    }
+
+    private static CodeExecuteResponse errorResponse(String status, String errorMsg) {
+        return CodeExecuteResponse.builder()
+                .success(false)
+                .executeStatus(status)
+                .errorMessage(errorMsg)
+                .build();
+    }
+}
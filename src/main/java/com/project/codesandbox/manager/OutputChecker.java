@@ -0,0 +1,292 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.model.Frame;
+import com.project.codesandbox.config.CheckProperties;
+import com.project.codesandbox.enums.CheckModeEnum;
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.model.CheckConfig;
+import com.project.codesandbox.model.ExecuteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 输出比对
+ * 每次提交打开一个 {@link Session}：exact、whitespace、float 方式在程序输出时流式比对，
+ * special 方式借用一个检查器语言的容器编译检查器，每个用例运行结束后在该容器中判定，与用户代码的容器相互隔离
+ */
+@Slf4j
+@Component
+public class OutputChecker {
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private CheckProperties checkProperties;
+
+    @Resource
+    private ContainerPool containerPool;
+
+    /**
+     * 打开比对会话，使用完毕后必须关闭
+     *
+     * @param check 比对配置，为空时不比对
+     * @return {@link Session}
+     */
+    public Session open(CheckConfig check) throws InterruptedException {
+        if (check == null || CollUtil.isEmpty(check.getExpectedOutputList())) {
+            return new Session(null, null);
+        }
+        CheckModeEnum mode = CheckModeEnum.getEnumByValue(check.getMode());
+        Session session = new Session(check, mode);
+        if (mode == CheckModeEnum.SPECIAL) {
+            session.prepareChecker(LanguageEnum.getEnumByValue(check.getCheckerLanguage()));
+        }
+        return session;
+    }
+
+    /**
+     * 一次提交的比对过程，special 方式下持有检查器容器
+     */
+    public class Session implements AutoCloseable {
+
+        private final CheckConfig check;
+
+        private final CheckModeEnum mode;
+
+        private final double tolerance;
+
+        private SandboxContainer checkerContainer;
+
+        private String[] checkerCmd;
+
+        /**
+         * 检查器不可用的原因，不为空时所有用例判定失败
+         */
+        private String checkerError;
+
+        private Session(CheckConfig check, CheckModeEnum mode) {
+            this.check = check;
+            this.mode = mode;
+            this.tolerance = check != null && check.getFloatTolerance() != null
+                    ? check.getFloatTolerance() : checkProperties.getDefaultFloatTolerance();
+        }
+
+        public boolean isEnabled() {
+            return mode != null;
+        }
+
+        /**
+         * 答案错误后是否跳过剩余用例
+         */
+        public boolean isFailFast() {
+            return check == null || check.getFailFast() == null || check.getFailFast();
+        }
+
+        /**
+         * 创建流式比对器，用于在程序输出期间提前发现错误；不跳过剩余用例时提前结束没有意义
+         *
+         * @param index 用例下标
+         * @return 比对器，不比对、special 方式或不跳过剩余用例时返回 null
+         */
+        public OutputComparator comparator(int index) {
+            if (!isEnabled() || mode == CheckModeEnum.SPECIAL || !isFailFast()) {
+                return null;
+            }
+            return new OutputComparator(mode, expected(index), tolerance);
+        }
+
+        /**
+         * 判定运行成功的用例，答案错误或检查器失败时修改结果
+         *
+         * @param index  用例下标
+         * @param input  用例输入
+         * @param result 运行结果
+         * @return 传入的结果
+         */
+        public ExecuteResult apply(int index, String input, ExecuteResult result) {
+            return apply(index, () -> bytes(input), result);
+        }
+
+        /**
+         * 判定运行成功的用例，只有 special 方式需要把输入交给检查器时才读取用例输入；
+         * 用例保存在 {@link MappedCaseList} 中时直接复制缓冲区，不解码为字符串
+         *
+         * @param index     用例下标
+         * @param inputList 全部用例输入
+         * @param result    运行结果
+         * @return 传入的结果
+         */
+        public ExecuteResult apply(int index, List<String> inputList, ExecuteResult result) {
+            return apply(index, () -> inputBytes(inputList, index), result);
+        }
+
+        private ExecuteResult apply(int index, Supplier<byte[]> input, ExecuteResult result) {
+            if (!isEnabled() || !result.isSuccess()) {
+                return result;
+            }
+            boolean accepted;
+            if (mode == CheckModeEnum.SPECIAL) {
+                Boolean verdict = runChecker(index, input.get(), result.getOutput());
+                if (verdict == null) {
+                    result.setSuccess(false);
+                    result.setExecuteStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText());
+                    result.setErrorMessage(checkerError != null ? checkerError : "检查器运行失败");
+                    return result;
+                }
+                accepted = verdict;
+            } else {
+                accepted = OutputComparator.matches(mode, expected(index), result.getOutput(), tolerance);
+            }
+            if (!accepted) {
+                result.setSuccess(false);
+                result.setExecuteStatus(ExecuteStatusEnum.WRONG_ANSWER.getText());
+                result.setErrorMessage(ExecuteStatusEnum.WRONG_ANSWER.getText());
+            }
+            return result;
+        }
+
+        /**
+         * 是否在该结果之后停止运行剩余用例
+         */
+        public boolean shouldStop(ExecuteResult result) {
+            if (result.isSuccess()) {
+                return false;
+            }
+            return isFailFast() || !ExecuteStatusEnum.WRONG_ANSWER.getText().equals(result.getExecuteStatus());
+        }
+
+        private String expected(int index) {
+            List<String> expectedOutputList = check.getExpectedOutputList();
+            return index < expectedOutputList.size() ? expectedOutputList.get(index) : "";
+        }
+
+        private void prepareChecker(LanguageEnum checkerLanguage) throws InterruptedException {
+            if (checkerLanguage == null) {
+                checkerError = "检查器语言不存在";
+                return;
+            }
+            try {
+                checkerContainer = containerPool.lease(checkerLanguage);
+                byte[] source = check.getCheckerCode() == null ? new byte[0] : check.getCheckerCode().getBytes(StandardCharsets.UTF_8);
+                copyToContainer(Collections.singletonMap(checkerLanguage.getSaveFileName(), source));
+                if (checkerLanguage.getCompileCmd() != null) {
+                    Long exitCode = exec(checkerLanguage.getCompileCmd(), checkProperties.getCheckerCompileTimeoutMillis());
+                    if (exitCode == null || exitCode != 0) {
+                        checkerError = "检查器编译失败";
+                        return;
+                    }
+                }
+                checkerCmd = checkerLanguage.getRunCmd();
+            } catch (RuntimeException e) {
+                log.warn("准备检查器失败: {}", e.getMessage());
+                checkerError = "检查器准备失败";
+            }
+        }
+
+        /**
+         * @return 答案是否正确，检查器不可用时返回 null
+         */
+        private Boolean runChecker(int index, byte[] input, String output) {
+            if (checkerCmd == null) {
+                return null;
+            }
+            String caseDir = "case-" + index + "/";
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            files.put(caseDir + "input", input);
+            files.put(caseDir + "output", bytes(output));
+            files.put(caseDir + "answer", bytes(expected(index)));
+            try {
+                copyToContainer(files);
+                String[] cmd = new String[checkerCmd.length + 3];
+                System.arraycopy(checkerCmd, 0, cmd, 0, checkerCmd.length);
+                cmd[checkerCmd.length] = caseDir + "input";
+                cmd[checkerCmd.length + 1] = caseDir + "output";
+                cmd[checkerCmd.length + 2] = caseDir + "answer";
+                Long exitCode = exec(cmd, checkProperties.getCheckerTimeoutMillis());
+                return exitCode == null ? null : exitCode == 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (RuntimeException e) {
+                log.warn("运行检查器失败: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private void copyToContainer(Map<String, byte[]> files) {
+            byte[] archive;
+            try {
+                archive = TarArchives.build(files, 0644);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            dockerCalls.call(checkerContainer.getDaemon(), "copyIn", client -> client.copyArchiveToContainerCmd(checkerContainer.getId())
+                    .withTarInputStream(new ByteArrayInputStream(archive))
+                    .withRemotePath(ContainerPool.WORK_DIR)
+                    .exec());
+        }
+
+        /**
+         * @return 退出码，超时返回 null
+         */
+        private Long exec(String[] cmd, long timeoutMillis) throws InterruptedException {
+            try (ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<>()) {
+                ExecCreateCmdResponse execCreateCmdResponse = dockerCalls.call(checkerContainer.getDaemon(), "execCreate", client -> client.execCreateCmd(checkerContainer.getId())
+                        .withCmd(cmd)
+                        .withAttachStdout(true)
+                        .withAttachStderr(true)
+                        .exec());
+                String execId = execCreateCmdResponse.getId();
+                boolean completed = dockerCalls.call(checkerContainer.getDaemon(), "execStart", client -> client.execStartCmd(execId)
+                        .exec(callback))
+                        .awaitCompletion(timeoutMillis, TimeUnit.MILLISECONDS);
+                if (!completed) {
+                    checkerContainer.markBroken();
+                    return null;
+                }
+                return dockerCalls.call(checkerContainer.getDaemon(), "inspectExec", client -> client.inspectExecCmd(execId).exec()).getExitCodeLong();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private byte[] bytes(String text) {
+            return (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        }
+
+        private byte[] inputBytes(List<String> inputList, int index) {
+            if (inputList instanceof MappedCaseList) {
+                ByteBuffer buffer = ((MappedCaseList) inputList).buffer(index);
+                byte[] data = new byte[buffer.remaining()];
+                buffer.get(data);
+                return data;
+            }
+            return bytes(inputList.get(index));
+        }
+
+        @Override
+        public void close() {
+            if (checkerContainer != null) {
+                containerPool.release(checkerContainer);
+                checkerContainer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.CheckModeEnum;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式输出比对
+ * 程序输出到达时逐段写入，一旦确定与期望输出不一致立即返回 false，调用方可以提前结束程序。
+ * 支持 exact、whitespace、float 三种方式，special 方式由检查器判定
+ */
+public class OutputComparator {
+
+    private final CheckModeEnum mode;
+
+    /**
+     * exact 方式的期望输出（去掉 \r 和首尾空白）
+     */
+    private final byte[] expectedBytes;
+
+    /**
+     * whitespace、float 方式的期望输出分词
+     */
+    private final String[] expectedTokens;
+
+    private final double tolerance;
+
+    /**
+     * exact 方式为已匹配的字节数，其余方式为已匹配的分词数
+     */
+    private int position;
+
+    /**
+     * exact 方式是否已经越过输出开头的空白
+     */
+    private boolean started;
+
+    /**
+     * exact 方式是否出现了期望输出中没有的空白，之后只允许继续出现空白
+     */
+    private boolean extraWhitespace;
+
+    private boolean mismatched;
+
+    private final ByteArrayOutputStream token = new ByteArrayOutputStream();
+
+    public OutputComparator(CheckModeEnum mode, String expected, double tolerance) {
+        this.mode = mode;
+        this.tolerance = tolerance;
+        String normalized = (expected == null ? "" : expected).replace("\r", "").trim();
+        if (mode == CheckModeEnum.EXACT) {
+            this.expectedBytes = normalized.getBytes(StandardCharsets.UTF_8);
+            this.expectedTokens = null;
+        } else {
+            this.expectedBytes = null;
+            this.expectedTokens = normalized.isEmpty() ? new String[0] : normalized.split("\\s+");
+        }
+    }
+
+    /**
+     * 比对完整的输出
+     *
+     * @return 是否一致
+     */
+    public static boolean matches(CheckModeEnum mode, String expected, String actual, double tolerance) {
+        OutputComparator comparator = new OutputComparator(mode, expected, tolerance);
+        byte[] bytes = (actual == null ? "" : actual).getBytes(StandardCharsets.UTF_8);
+        return comparator.write(bytes, 0, bytes.length) && comparator.finish();
+    }
+
+    public boolean write(byte[] bytes) {
+        return write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 写入一段输出
+     *
+     * @return 目前为止是否仍可能一致，返回 false 后不必再写入
+     */
+    public boolean write(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length && !mismatched; i++) {
+            byte b = bytes[i];
+            if (b == '\r') {
+                continue;
+            }
+            if (mode == CheckModeEnum.EXACT) {
+                acceptExact(b);
+            } else if (isWhitespace(b)) {
+                flushToken();
+            } else {
+                token.write(b);
+            }
+        }
+        return !mismatched;
+    }
+
+    /**
+     * 输出结束
+     *
+     * @return 输出是否与期望一致
+     */
+    public boolean finish() {
+        if (mode == CheckModeEnum.EXACT) {
+            return !mismatched && position == expectedBytes.length;
+        }
+        flushToken();
+        return !mismatched && position == expectedTokens.length;
+    }
+
+    private void acceptExact(byte b) {
+        boolean whitespace = isWhitespace(b);
+        if (!started) {
+            if (whitespace) {
+                return;
+            }
+            started = true;
+        }
+        boolean expectedHere = position < expectedBytes.length && expectedBytes[position] == b;
+        if (whitespace) {
+            // 多出来的空白只有在输出末尾时才允许
+            if (!extraWhitespace && expectedHere) {
+                position++;
+            } else {
+                extraWhitespace = true;
+            }
+            return;
+        }
+        if (extraWhitespace || !expectedHere) {
+            mismatched = true;
+            return;
+        }
+        position++;
+    }
+
+    private void flushToken() {
+        if (token.size() == 0) {
+            return;
+        }
+        String actual = new String(token.toByteArray(), StandardCharsets.UTF_8);
+        token.reset();
+        if (position >= expectedTokens.length || !tokenMatches(expectedTokens[position], actual)) {
+            mismatched = true;
+            return;
+        }
+        position++;
+    }
+
+    private boolean tokenMatches(String expected, String actual) {
+        if (expected.equals(actual)) {
+            return true;
+        }
+        if (mode != CheckModeEnum.FLOAT) {
+            return false;
+        }
+        try {
+            double expectedValue = Double.parseDouble(expected);
+            double actualValue = Double.parseDouble(actual);
+            double diff = Math.abs(expectedValue - actualValue);
+            return diff <= tolerance || diff <= tolerance * Math.abs(expectedValue);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+}
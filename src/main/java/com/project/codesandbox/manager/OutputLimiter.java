@@ -0,0 +1,53 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import com.project.codesandbox.config.OutputLimitProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.util.UUID;
+
+/**
+ * 按配置创建有上限的输出缓冲，并清理过期的输出溢出文件
+ */
+@Component
+public class OutputLimiter {
+
+    @Resource
+    private OutputLimitProperties outputLimitProperties;
+
+    public BoundedOutputBuffer newStdoutBuffer() {
+        return newBuffer(outputLimitProperties.getMaxStdoutBytes(), "stdout");
+    }
+
+    public BoundedOutputBuffer newStderrBuffer() {
+        return newBuffer(outputLimitProperties.getMaxStderrBytes(), "stderr");
+    }
+
+    /**
+     * 清理过期的输出溢出文件
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void purgeSpillFiles() {
+        File[] files = new File(outputLimitProperties.getSpillDir()).listFiles();
+        if (files == null) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - outputLimitProperties.getSpillRetentionMillis();
+        for (File file : files) {
+            if (file.lastModified() < expireBefore) {
+                FileUtil.del(file);
+            }
+        }
+    }
+
+    private BoundedOutputBuffer newBuffer(int maxBytes, String streamName) {
+        if (!outputLimitProperties.isSpillEnabled()) {
+            return new BoundedOutputBuffer(maxBytes);
+        }
+        File spillFile = new File(outputLimitProperties.getSpillDir(), UUID.randomUUID() + "." + streamName);
+        return new BoundedOutputBuffer(maxBytes, spillFile, outputLimitProperties.getSpillMaxBytes());
+    }
+}
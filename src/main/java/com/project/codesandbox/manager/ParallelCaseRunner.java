@@ -0,0 +1,185 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.config.ParallelProperties;
+import com.project.codesandbox.model.ExecuteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * 多用例并行执行
+ * 每个分片持有一个执行环境（容器），按输入顺序依次领取用例，结果按输入顺序返回。
+ * 某个用例失败后不再领取新的用例，与顺序执行时遇错即停的行为一致
+ * 线程池满时分片在队列中等待，用例领取完或已停止后取消尚未开始的分片
+ */
+@Slf4j
+@Component
+public class ParallelCaseRunner {
+
+    @Resource
+    private ParallelProperties parallelProperties;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(parallelProperties.getThreads(), parallelProperties.getThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                sandboxThreads.newThreadFactory("case-runner-", true));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 是否需要并行执行
+     *
+     * @param inputList 用例输入
+     */
+    public boolean shouldParallelize(List<String> inputList) {
+        return parallelProperties.isEnabled()
+                && parallelProperties.getParallelism() > 1
+                && inputList != null
+                && inputList.size() >= parallelProperties.getMinCases();
+    }
+
+    /**
+     * 并行执行用例
+     *
+     * @param inputList     用例输入
+     * @param workerFactory 创建分片执行环境，0 号分片在调用线程上运行
+     * @return 按输入顺序排列的结果，第一个失败用例之后的元素可能为 null
+     */
+    public ExecuteResult[] run(List<String> inputList, CaseWorkerFactory workerFactory) throws InterruptedException {
+        return run(inputList, workerFactory, executeResult -> !executeResult.isSuccess());
+    }
+
+    /**
+     * 并行执行用例
+     *
+     * @param inputList     用例输入
+     * @param workerFactory 创建分片执行环境，0 号分片在调用线程上运行
+     * @param stopOn        结果满足条件时不再领取新的用例
+     * @return 按输入顺序排列的结果，停止之后的元素可能为 null
+     */
+    public ExecuteResult[] run(List<String> inputList, CaseWorkerFactory workerFactory,
+                               Predicate<ExecuteResult> stopOn) throws InterruptedException {
+        int caseCount = inputList.size();
+        int shards = Math.min(parallelProperties.getParallelism(), caseCount);
+        ExecuteResult[] results = new ExecuteResult[caseCount];
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        List<Future<?>> futures = new ArrayList<>(shards - 1);
+        for (int shard = 1; shard < shards; shard++) {
+            int shardIndex = shard;
+            futures.add(executor.submit(() -> runShard(shardIndex, inputList, workerFactory, stopOn, results, next, failed)));
+        }
+        runShard(0, inputList, workerFactory, stopOn, results, next, failed);
+        for (Future<?> future : futures) {
+            // 用例已领取完或已停止时，仍在队列中的分片不再需要，取消并移出队列，不必等它借到环境再退出；
+            // 调用线程的分片没有借到环境时用例还未领取完，仍需等待排队的分片
+            boolean done = failed.get() || next.get() >= caseCount;
+            if (done && future.cancel(false)) {
+                executor.remove((Runnable) future);
+                continue;
+            }
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn("并行执行分片失败: {}", e.getCause().getMessage());
+            }
+        }
+        // 所有分片都无法继续时，剩余未领取的用例视为失败
+        if (!failed.get()) {
+            for (int i = 0; i < caseCount; i++) {
+                if (results[i] == null) {
+                    results[i] = ExecuteResult.builder().success(false).errorMessage("用例未执行").build();
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    private void runShard(int shard, List<String> inputList, CaseWorkerFactory workerFactory,
+                          Predicate<ExecuteResult> stopOn, ExecuteResult[] results, AtomicInteger next, AtomicBoolean failed) {
+        // 分片开始时用例可能已被其他分片领取完，此时不必再创建执行环境
+        if (failed.get() || next.get() >= inputList.size()) {
+            return;
+        }
+        CaseWorker worker;
+        try {
+            worker = workerFactory.create(shard);
+        } catch (Exception e) {
+            log.warn("创建并行执行环境失败: {}", e.getMessage());
+            return;
+        }
+        // 没有可用的执行环境时跳过该分片，用例由其他分片领取
+        if (worker == null) {
+            return;
+        }
+        try (CaseWorker caseWorker = worker) {
+            int index;
+            while (!failed.get() && (index = next.getAndIncrement()) < inputList.size()) {
+                ExecuteResult executeResult;
+                try {
+                    executeResult = caseWorker.run(index, inputList.get(index));
+                } catch (RuntimeException e) {
+                    executeResult = ExecuteResult.builder().success(false).errorMessage(e.getMessage()).build();
+                }
+                results[index] = executeResult;
+                if (stopOn.test(executeResult)) {
+                    failed.set(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 分片执行环境
+     */
+    public interface CaseWorker extends AutoCloseable {
+
+        /**
+         * 执行单个用例
+         *
+         * @param index 用例下标
+         * @param input 用例输入
+         * @return {@link ExecuteResult}
+         */
+        ExecuteResult run(int index, String input);
+
+        @Override
+        default void close() {
+        }
+    }
+
+    /**
+     * 创建分片执行环境，返回 null 表示当前没有可用资源
+     */
+    @FunctionalInterface
+    public interface CaseWorkerFactory {
+
+        CaseWorker create(int shard) throws Exception;
+    }
+}
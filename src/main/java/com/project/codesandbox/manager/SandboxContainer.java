@@ -0,0 +1,50 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.LanguageEnum;
+import lombok.Getter;
+
+/**
+ * 容器池中的沙箱容器
+ */
+@Getter
+public class SandboxContainer {
+
+    private final String id;
+
+    private final LanguageEnum language;
+
+    /**
+     * 容器所在的 Docker 守护进程
+     */
+    private final DockerDaemon daemon;
+
+    private final long createTime;
+
+    /**
+     * 已被借用的次数
+     */
+    private int uses;
+
+    /**
+     * 容器是否可以继续复用，执行超时等异常情况下会被标记为不可复用
+     */
+    private volatile boolean healthy = true;
+
+    public SandboxContainer(String id, LanguageEnum language, DockerDaemon daemon) {
+        this.id = id;
+        this.language = language;
+        this.daemon = daemon;
+        this.createTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 标记容器不可复用，归还时直接销毁
+     */
+    public void markBroken() {
+        this.healthy = false;
+    }
+
+    int incrementUses() {
+        return ++uses;
+    }
+}
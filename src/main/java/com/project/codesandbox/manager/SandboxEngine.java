@@ -0,0 +1,30 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.model.CodeExecuteRequest;
+import com.project.codesandbox.model.CodeExecuteResponse;
+
+/**
+ * 沙箱引擎
+ * 负责在隔离环境中编译、运行代码并比对输出，按语言在配置中选择使用的引擎
+ */
+public interface SandboxEngine {
+
+    /**
+     * 引擎名，对应 codesandbox.engine 配置中的取值
+     */
+    String getName();
+
+    /**
+     * 当前环境是否可以使用该引擎
+     */
+    boolean isAvailable();
+
+    /**
+     * 执行代码
+     *
+     * @param codeExecuteRequest 请求
+     * @param interact           为 true 时用例输入写入标准输入，否则作为命令行参数
+     * @return {@link CodeExecuteResponse}
+     */
+    CodeExecuteResponse execute(CodeExecuteRequest codeExecuteRequest, boolean interact);
+}
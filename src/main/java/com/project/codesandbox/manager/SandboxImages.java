@@ -0,0 +1,340 @@
+package com.project.codesandbox.manager;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Frame;
+import com.project.codesandbox.config.EngineProperties;
+import com.project.codesandbox.config.SandboxImageProperties;
+import com.project.codesandbox.enums.LanguageEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按语言划分的沙箱镜像
+ * 服务启动后在每个守护进程上检查各语言的镜像，缺失时拉取，再为每种语言运行一次预热容器，让工具链进入页缓存；
+ * 所有可用守护进程都完成后才报告就绪，之后熔断恢复或新加入的守护进程在后台补齐，不再影响就绪状态；
+ * Java 预热输出的 javac 版本用于确定宿主机编译的目标版本
+ */
+@Slf4j
+@Component
+public class SandboxImages implements HealthIndicator {
+
+    /**
+     * 各语言的预热命令，执行一次编译器或解释器；命令失败只记录日志，镜像能启动容器即视为可用
+     */
+    private static final Map<LanguageEnum, String> WARMUP_SCRIPTS = new EnumMap<>(LanguageEnum.class);
+
+    static {
+        WARMUP_SCRIPTS.put(LanguageEnum.JAVA, "javac -version && java -Dfile.encoding=UTF-8 -version");
+        WARMUP_SCRIPTS.put(LanguageEnum.CPP, "printf 'int main() { return 0; }\\n' > /tmp/warmup.cpp && g++ -o /tmp/warmup /tmp/warmup.cpp && /tmp/warmup");
+        WARMUP_SCRIPTS.put(LanguageEnum.C, "printf 'int main(void) { return 0; }\\n' > /tmp/warmup.c && gcc -o /tmp/warmup /tmp/warmup.c && /tmp/warmup");
+        WARMUP_SCRIPTS.put(LanguageEnum.PYTHON3, "python3 -c 'import collections, heapq, itertools, math, re'");
+        WARMUP_SCRIPTS.put(LanguageEnum.JAVASCRIPT, "node -e 0");
+        WARMUP_SCRIPTS.put(LanguageEnum.TYPESCRIPT, "node -e 0");
+        WARMUP_SCRIPTS.put(LanguageEnum.GO, "go version");
+    }
+
+    @Resource
+    private SandboxImageProperties imageProperties;
+
+    @Resource
+    private EngineProperties engineProperties;
+
+    @Resource
+    private DockerCalls dockerCalls;
+
+    @Resource
+    private DockerDaemons dockerDaemons;
+
+    @Resource
+    private ContainerReaper containerReaper;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    @Resource
+    private HostJavaCompiler hostJavaCompiler;
+
+    /**
+     * 镜像名 -> 镜像 ID（内容摘要），镜像重建或重新拉取后随之变化
+     */
+    private final Map<String, String> imageIds = new ConcurrentHashMap<>();
+
+    /**
+     * 已完成预热的 守护进程/语言
+     */
+    private final Set<String> prepared = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已提交准备任务的 守护进程/镜像
+     */
+    private final Set<String> preparing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 就绪后不再回退，避免单个守护进程恢复时整个服务被摘除
+     */
+    private volatile boolean ready;
+
+    private ExecutorService prepareExecutor;
+
+    @PostConstruct
+    public void init() {
+        prepareExecutor = Executors.newFixedThreadPool(2, sandboxThreads.newThreadFactory("sandbox-image-", true));
+        ready = !imageProperties.isReadinessGate() || dockerLanguages().isEmpty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prepareExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取语言使用的镜像
+     *
+     * @param language 语言
+     * @return 镜像名
+     */
+    public String get(LanguageEnum language) {
+        return imageProperties.getLanguages().getOrDefault(language.getLanguage(), imageProperties.getDefaultImage());
+    }
+
+    /**
+     * 获取语言对应沙箱镜像的 ID，解析失败时返回 null
+     *
+     * @param language 语言
+     * @return 镜像 ID
+     */
+    public String getImageId(LanguageEnum language) {
+        String image = get(language);
+        String id = imageIds.get(image);
+        return id != null ? id : resolveImageId(image);
+    }
+
+    /**
+     * 重新解析全部镜像的 ID，各守护进程使用同一镜像标签，从当前负载最低的守护进程解析
+     */
+    public void refreshImageIds() {
+        Set<String> images = new LinkedHashSet<>();
+        for (LanguageEnum language : LanguageEnum.values()) {
+            images.add(get(language));
+        }
+        for (String image : images) {
+            imageIds.remove(image);
+            resolveImageId(image);
+        }
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> languages = new LinkedHashMap<>();
+        for (LanguageEnum language : dockerLanguages()) {
+            List<String> hosts = new ArrayList<>();
+            for (DockerDaemon daemon : dockerDaemons.getAll()) {
+                if (prepared.contains(key(daemon, language.getLanguage()))) {
+                    hosts.add(daemon.getHost());
+                }
+            }
+            languages.put(language.getLanguage(), hosts);
+        }
+        return (ready ? Health.up() : Health.outOfService())
+                .withDetail("images", imageProperties.getLanguages().isEmpty() ? imageProperties.getDefaultImage() : imageProperties.getLanguages())
+                .withDetail("prepared", languages)
+                .build();
+    }
+
+    /**
+     * 为可用但尚未准备的守护进程提交准备任务，同一镜像只拉取一次，再依次预热使用它的语言
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${codesandbox.image.check-interval-millis:30000}")
+    public void prepareAll() {
+        Map<String, List<LanguageEnum>> languagesByImage = new LinkedHashMap<>();
+        for (LanguageEnum language : dockerLanguages()) {
+            languagesByImage.computeIfAbsent(get(language), image -> new ArrayList<>()).add(language);
+        }
+        for (DockerDaemon daemon : dockerDaemons.getAll()) {
+            if (daemon.isOpen()) {
+                continue;
+            }
+            languagesByImage.forEach((image, languages) -> {
+                String key = key(daemon, image);
+                boolean done = languages.stream().allMatch(language -> prepared.contains(key(daemon, language.getLanguage())));
+                if (!done && preparing.add(key)) {
+                    prepareExecutor.execute(() -> {
+                        try {
+                            prepare(daemon, image, languages);
+                        } catch (RuntimeException e) {
+                            log.warn("在 {} 上准备镜像 {} 失败: {}", daemon.getHost(), image, e.getMessage());
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            preparing.remove(key);
+                            updateReady();
+                        }
+                    });
+                }
+            });
+        }
+        updateReady();
+    }
+
+    private void prepare(DockerDaemon daemon, String image, List<LanguageEnum> languages) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        ensureImage(daemon, image);
+        for (LanguageEnum language : languages) {
+            if (!prepared.contains(key(daemon, language.getLanguage()))) {
+                warmup(daemon, image, language);
+                prepared.add(key(daemon, language.getLanguage()));
+            }
+        }
+        log.info("{} 上的镜像 {} 已就绪（{}），耗时 {} ms", daemon.getHost(), image, languages, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 检查守护进程上是否有镜像，没有时拉取
+     */
+    private void ensureImage(DockerDaemon daemon, String image) throws InterruptedException {
+        try {
+            dockerCalls.call(daemon, "inspectImage", client -> client.inspectImageCmd(image).exec());
+            return;
+        } catch (NotFoundException e) {
+            if (!imageProperties.isPull()) {
+                throw new IllegalStateException("镜像 " + image + " 不存在且未开启自动拉取");
+            }
+        }
+        log.info("在 {} 上拉取镜像 {}", daemon.getHost(), image);
+        boolean completed = dockerCalls.call(daemon, "pull", client -> client.pullImageCmd(image).start())
+                .awaitCompletion(imageProperties.getPullTimeoutMillis(), TimeUnit.MILLISECONDS);
+        if (!completed) {
+            throw new IllegalStateException("拉取镜像 " + image + " 超过 " + imageProperties.getPullTimeoutMillis() + " 毫秒");
+        }
+        imageIds.remove(image);
+    }
+
+    /**
+     * 用语言的镜像启动一次性容器执行预热命令，等待其结束后删除
+     */
+    private void warmup(DockerDaemon daemon, String image, LanguageEnum language) throws InterruptedException {
+        CreateContainerResponse createContainerResponse = dockerCalls.call(daemon, "create", client -> client.createContainerCmd(image)
+                .withLabels(containerReaper.labels())
+                .withNetworkDisabled(true)
+                .withEntrypoint("sh", "-c", WARMUP_SCRIPTS.getOrDefault(language, "true"))
+                .exec());
+        String containerId = createContainerResponse.getId();
+        containerReaper.track(containerId);
+        try {
+            dockerCalls.call(daemon, "start", client -> client.startContainerCmd(containerId).exec());
+            Integer exitCode = dockerCalls.call(daemon, "wait", client -> client.waitContainerCmd(containerId).start())
+                    .awaitStatusCode(imageProperties.getWarmupTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (exitCode == null || exitCode != 0) {
+                log.warn("{} 上 {} 的预热命令退出码 {}，请确认镜像 {} 包含该语言的工具链", daemon.getHost(), language.getLanguage(), exitCode, image);
+            } else if (language == LanguageEnum.JAVA) {
+                hostJavaCompiler.useImageJavacVersion(readLogs(daemon, containerId));
+            }
+        } finally {
+            containerReaper.reap(daemon, containerId);
+        }
+    }
+
+    /**
+     * 读取已结束容器的标准输出和错误输出，JDK 8 的 javac -version 输出到错误输出
+     */
+    private String readLogs(DockerDaemon daemon, String containerId) throws InterruptedException {
+        ByteArrayOutputStream logs = new ByteArrayOutputStream();
+        try (ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<Frame>() {
+            @Override
+            public void onNext(Frame frame) {
+                logs.write(frame.getPayload(), 0, frame.getPayload().length);
+            }
+        }) {
+            dockerCalls.call(daemon, "logs", client -> client.logContainerCmd(containerId)
+                    .withStdOut(true)
+                    .withStdErr(true)
+                    .exec(callback))
+                    .awaitCompletion(imageProperties.getWarmupTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            log.debug("关闭预热容器日志失败: {}", e.getMessage());
+        }
+        return new String(logs.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 至少有一个可用的守护进程，且所有可用的守护进程都完成了全部语言的预热
+     */
+    private void updateReady() {
+        if (ready) {
+            return;
+        }
+        List<LanguageEnum> languages = dockerLanguages();
+        boolean anyHealthy = false;
+        for (DockerDaemon daemon : dockerDaemons.getAll()) {
+            if (daemon.isOpen()) {
+                continue;
+            }
+            anyHealthy = true;
+            for (LanguageEnum language : languages) {
+                if (!prepared.contains(key(daemon, language.getLanguage()))) {
+                    return;
+                }
+            }
+        }
+        if (anyHealthy) {
+            ready = true;
+            log.info("全部沙箱镜像已就绪");
+        }
+    }
+
+    /**
+     * 配置为 Docker 引擎执行的语言；配置为其他引擎的语言在该引擎不可用时才会退回 Docker，不参与就绪判断
+     */
+    private List<LanguageEnum> dockerLanguages() {
+        List<LanguageEnum> languages = new ArrayList<>();
+        for (LanguageEnum language : LanguageEnum.values()) {
+            String engine = engineProperties.getLanguages().getOrDefault(language.getLanguage(), engineProperties.getDefaultEngine());
+            if (DockerSandboxEngine.NAME.equals(engine)) {
+                languages.add(language);
+            }
+        }
+        return languages;
+    }
+
+    private String resolveImageId(String image) {
+        DockerDaemon daemon = dockerDaemons.select();
+        if (daemon == null) {
+            return null;
+        }
+        try {
+            String id = dockerCalls.call(daemon, "inspectImage", client -> client.inspectImageCmd(image).exec()).getId();
+            imageIds.put(image, id);
+            return id;
+        } catch (RuntimeException e) {
+            log.warn("解析镜像 {} 失败: {}", image, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String key(DockerDaemon daemon, String name) {
+        return daemon.getHost() + "/" + name;
+    }
+}
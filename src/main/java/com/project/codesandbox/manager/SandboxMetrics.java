@@ -0,0 +1,210 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.enums.PhaseEnum;
+import com.project.codesandbox.model.CodeExecuteResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 沙箱执行指标
+ * 每次执行按阶段计时，执行结束后以语言、执行方式和结果为标签记录到各阶段的直方图；
+ * 同时提供容器数、执行中请求数等 gauge，通过 /actuator/prometheus 暴露
+ */
+@Component
+public class SandboxMetrics {
+
+    public static final String MODE_ARGS = "args";
+
+    public static final String MODE_INTERACT = "interact";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ContainerPool containerPool;
+
+    @Resource
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Resource
+    private DockerDaemons dockerDaemons;
+
+    @Resource
+    private ContainerReaper containerReaper;
+
+    @Resource
+    private BuildCache buildCache;
+
+    @Resource
+    private TypeScriptTranspiler typeScriptTranspiler;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        for (LanguageEnum language : LanguageEnum.values()) {
+            Gauge.builder("codesandbox.containers.active", containerPool, pool -> pool.getActiveCount(language))
+                    .description("借出中的容器数")
+                    .tag("language", language.getLanguage())
+                    .register(meterRegistry);
+            Gauge.builder("codesandbox.containers.idle", containerPool, pool -> pool.getIdleCount(language))
+                    .description("空闲的预热容器数")
+                    .tag("language", language.getLanguage())
+                    .register(meterRegistry);
+        }
+        for (LanguageEnum language : LanguageEnum.values()) {
+            if (!buildCache.supports(language)) {
+                continue;
+            }
+            FunctionCounter.builder("codesandbox.build.cache", buildCache, cache -> cache.getHits(language))
+                    .description("编译时构建缓存的命中次数")
+                    .tags("language", language.getLanguage(), "result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("codesandbox.build.cache", buildCache, cache -> cache.getMisses(language))
+                    .description("编译时构建缓存的命中次数")
+                    .tags("language", language.getLanguage(), "result", "miss")
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("codesandbox.typescript.cache", typeScriptTranspiler, TypeScriptTranspiler::getHits)
+                .description("TypeScript 转译结果缓存的查询次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("codesandbox.typescript.cache", typeScriptTranspiler, TypeScriptTranspiler::getMisses)
+                .description("TypeScript 转译结果缓存的查询次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("codesandbox.requests.inflight", inFlight, AtomicInteger::get)
+                .description("正在执行的请求数")
+                .register(meterRegistry);
+        Gauge.builder("codesandbox.limiter.limit", concurrencyLimiter, limiter -> limiter.getStats().getLimit())
+                .description("当前并发上限")
+                .register(meterRegistry);
+        Gauge.builder("codesandbox.reaper.pending", containerReaper, reaper -> reaper.getStats().getPending())
+                .description("等待删除的容器数")
+                .register(meterRegistry);
+        Gauge.builder("codesandbox.docker.breaker.open", dockerDaemons, DockerDaemons::getOpenCount)
+                .description("熔断中的 Docker 守护进程数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始一次执行的计时
+     *
+     * @param mode     执行方式
+     * @param language 语言
+     * @return {@link PhaseTimer}
+     */
+    public PhaseTimer start(String mode, String language) {
+        inFlight.incrementAndGet();
+        // 只使用已知的语言作为标签，避免任意输入导致标签数量膨胀
+        LanguageEnum languageEnum = LanguageEnum.getEnumByValue(language);
+        return new PhaseTimer(mode, languageEnum == null ? "unknown" : languageEnum.getLanguage());
+    }
+
+    /**
+     * 一次执行的分阶段计时，结束时才知道结果，因此先在本地累计各阶段耗时
+     */
+    public class PhaseTimer {
+
+        private final String mode;
+
+        private final String language;
+
+        private final long startNanos = System.nanoTime();
+
+        private final Map<PhaseEnum, Long> phaseNanos = new EnumMap<>(PhaseEnum.class);
+
+        private PhaseEnum current;
+
+        private long currentStartNanos;
+
+        private boolean finished;
+
+        private PhaseTimer(String mode, String language) {
+            this.mode = mode;
+            this.language = language;
+        }
+
+        /**
+         * 进入下一个阶段，上一个阶段随之结束；同一阶段多次进入时耗时累加
+         */
+        public void phase(PhaseEnum phase) {
+            long now = System.nanoTime();
+            stopCurrent(now);
+            current = phase;
+            currentStartNanos = now;
+        }
+
+        /**
+         * 结束计时并记录，除运行用例外各阶段的耗时之和作为服务开销上报给并发限制
+         *
+         * @param response 执行结果，异常时为 null
+         */
+        public void finish(CodeExecuteResponse response) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long now = System.nanoTime();
+            stopCurrent(now);
+            inFlight.decrementAndGet();
+            long overheadNanos = 0;
+            for (Map.Entry<PhaseEnum, Long> entry : phaseNanos.entrySet()) {
+                if (entry.getKey() != PhaseEnum.RUN) {
+                    overheadNanos += entry.getValue();
+                }
+            }
+            concurrencyLimiter.reportOverhead(overheadNanos);
+            String verdict = verdict(response);
+            for (Map.Entry<PhaseEnum, Long> entry : phaseNanos.entrySet()) {
+                Timer.builder("codesandbox.phase")
+                        .description("各执行阶段耗时")
+                        .tag("phase", entry.getKey().getValue())
+                        .tag("mode", mode)
+                        .tag("language", language)
+                        .tag("verdict", verdict)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(entry.getValue(), TimeUnit.NANOSECONDS);
+            }
+            Timer.builder("codesandbox.execute")
+                    .description("执行总耗时")
+                    .tag("mode", mode)
+                    .tag("language", language)
+                    .tag("verdict", verdict)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(now - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void stopCurrent(long now) {
+            if (current != null) {
+                phaseNanos.merge(current, now - currentStartNanos, Long::sum);
+                current = null;
+            }
+        }
+
+        private String verdict(CodeExecuteResponse response) {
+            if (response == null) {
+                return "error";
+            }
+            if (response.isSuccess()) {
+                return ExecuteStatusEnum.SUCCESS.name().toLowerCase();
+            }
+            ExecuteStatusEnum statusEnum = ExecuteStatusEnum.getEnumByText(response.getExecuteStatus());
+            return statusEnum == null ? "unknown" : statusEnum.name().toLowerCase();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.project.codesandbox.config.ThreadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 阻塞等待沙箱的线程工厂
+ * 请求线程和执行线程大部分时间阻塞在 Docker 调用、进程等待上，运行在 Java 21 及以上时改用虚拟线程，
+ * 并发数由限流器和容器池决定，不再受平台线程数限制。项目以 Java 8 编译，虚拟线程通过反射创建
+ */
+@Slf4j
+@Component
+public class SandboxThreads {
+
+    @Resource
+    private ThreadProperties threadProperties;
+
+    private boolean virtual;
+
+    @PostConstruct
+    public void init() {
+        virtual = threadProperties.isVirtual() && virtualThreadFactory("virtual-probe-") != null;
+        log.info("阻塞任务使用{}线程", virtual ? "虚拟" : "平台");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 创建线程工厂，使用虚拟线程时 daemon 参数无效（虚拟线程总是守护线程）
+     *
+     * @param namePrefix 线程名前缀
+     * @param daemon     平台线程是否为守护线程
+     * @return {@link ThreadFactory}
+     */
+    public ThreadFactory newThreadFactory(String namePrefix, boolean daemon) {
+        if (virtual) {
+            return virtualThreadFactory(namePrefix);
+        }
+        return ThreadFactoryBuilder.create().setNamePrefix(namePrefix).setDaemon(daemon).build();
+    }
+
+    /**
+     * 每个任务一个线程的执行器，只在使用虚拟线程时有意义
+     *
+     * @param namePrefix 线程名前缀
+     * @return {@link Executor}
+     */
+    public Executor newPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix, true);
+        return command -> threadFactory.newThread(command).start();
+    }
+
+    /**
+     * 通过 Thread.ofVirtual().name(prefix, 0).factory() 创建虚拟线程工厂，JDK 不支持时返回 null
+     */
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
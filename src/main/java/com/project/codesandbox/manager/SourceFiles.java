@@ -0,0 +1,133 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import com.project.codesandbox.enums.LanguageEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * 一次提交的源码文件
+ * 主文件按语言的保存文件名放置，其余文件按相对路径放置，Docker 引擎在内存中打包后复制到容器工作目录，不经过宿主机磁盘
+ */
+public final class SourceFiles {
+
+    /**
+     * 相对路径的每一段只允许字母、数字、下划线、点和中划线，不允许 . 和 ..
+     */
+    private static final Pattern PATH_SEGMENT_PATTERN = Pattern.compile("[A-Za-z0-9_.-]{1,128}");
+
+    private static final int MAX_DEPTH = 8;
+
+    private final Map<String, byte[]> files;
+
+    private SourceFiles(Map<String, byte[]> files) {
+        this.files = files;
+    }
+
+    /**
+     * @param language 语言
+     * @param code     主文件源码
+     * @param extra    其他文件，相对路径 -> 内容，可为 null
+     * @return {@link SourceFiles}
+     */
+    public static SourceFiles of(LanguageEnum language, String code, Map<String, String> extra) {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put(language.getSaveFileName(), bytes(code));
+        if (extra != null) {
+            // 按路径排序，保证相同的提交得到相同的编译缓存键
+            for (Map.Entry<String, String> file : new TreeMap<>(extra).entrySet()) {
+                files.putIfAbsent(file.getKey(), bytes(file.getValue()));
+            }
+        }
+        return new SourceFiles(files);
+    }
+
+    /**
+     * 校验相对路径，不允许绝对路径和跳出工作目录
+     */
+    public static boolean isValidPath(String path) {
+        if (path == null || path.isEmpty() || path.startsWith("/")) {
+            return false;
+        }
+        String[] segments = path.split("/", -1);
+        if (segments.length > MAX_DEPTH) {
+            return false;
+        }
+        for (String segment : segments) {
+            if (!PATH_SEGMENT_PATTERN.matcher(segment).matches() || ".".equals(segment) || "..".equals(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 除主文件外的文件，用于计算编译缓存键
+     */
+    public Map<String, byte[]> getExtraFiles() {
+        Map<String, byte[]> extra = new LinkedHashMap<>(files);
+        extra.remove(extra.keySet().iterator().next());
+        return Collections.unmodifiableMap(extra);
+    }
+
+    /**
+     * 全部文件，相对路径 -> 内容，第一个为主文件
+     */
+    public Map<String, byte[]> getFiles() {
+        return Collections.unmodifiableMap(files);
+    }
+
+    /**
+     * 加入宿主机生成的文件（如编译产物）后的新实例
+     *
+     * @param generated 相对路径 -> 内容
+     * @return {@link SourceFiles}
+     */
+    public SourceFiles withFiles(Map<String, byte[]> generated) {
+        Map<String, byte[]> merged = new LinkedHashMap<>(files);
+        merged.putAll(generated);
+        return new SourceFiles(merged);
+    }
+
+    /**
+     * 写入本地目录，用于不经过容器的引擎
+     *
+     * @param dir 目录
+     */
+    public void writeTo(File dir) {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            FileUtil.writeBytes(file.getValue(), new File(dir, file.getKey()));
+        }
+    }
+
+    /**
+     * 打包为 tar 流，用于 copyArchiveToContainerCmd
+     */
+    public InputStream toTarStream() throws IOException {
+        return new ByteArrayInputStream(TarArchives.build(files, 0644));
+    }
+
+    /**
+     * 打包为以 dir 为顶层目录的 tar 流，与从容器复制出的工作目录格式相同，用于写入编译缓存
+     *
+     * @param dir 顶层目录名
+     */
+    public InputStream toTarStream(String dir) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        files.forEach((path, content) -> entries.put(dir + "/" + path, content));
+        return new ByteArrayInputStream(TarArchives.build(entries, 0644));
+    }
+
+    private static byte[] bytes(String text) {
+        return (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+    }
+}
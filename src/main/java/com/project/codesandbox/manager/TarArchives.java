@@ -0,0 +1,56 @@
+package com.project.codesandbox.manager;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 在内存中构建 tar 包，用于 copyArchiveToContainerCmd
+ */
+public final class TarArchives {
+
+    private TarArchives() {
+    }
+
+    /**
+     * 构建 tar 包，自动补充父目录
+     *
+     * @param files 相对路径 -> 文件内容
+     * @param mode  文件权限
+     * @return tar 包内容
+     */
+    public static byte[] build(Map<String, byte[]> files, int mode) throws IOException {
+        Set<String> dirs = new LinkedHashSet<>();
+        for (String path : files.keySet()) {
+            int index = path.indexOf('/');
+            while (index > 0) {
+                dirs.add(path.substring(0, index + 1));
+                index = path.indexOf('/', index + 1);
+            }
+        }
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(archive)) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            for (String dir : dirs) {
+                TarArchiveEntry dirEntry = new TarArchiveEntry(dir);
+                dirEntry.setMode(0755);
+                tar.putArchiveEntry(dirEntry);
+                tar.closeArchiveEntry();
+            }
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                TarArchiveEntry fileEntry = new TarArchiveEntry(file.getKey());
+                fileEntry.setMode(mode);
+                fileEntry.setSize(file.getValue().length);
+                tar.putArchiveEntry(fileEntry);
+                tar.write(file.getValue());
+                tar.closeArchiveEntry();
+            }
+        }
+        return archive.toByteArray();
+    }
+}
@@ -0,0 +1,27 @@
+package com.project.codesandbox.manager;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一个题目某个版本的测试数据
+ */
+@Getter
+@AllArgsConstructor
+public class TestDataSet {
+
+    private final String problemId;
+
+    private final int version;
+
+    private final MappedCaseList inputList;
+
+    /**
+     * 期望输出，上传时未提供则为 null
+     */
+    private final MappedCaseList expectedOutputList;
+
+    public long totalBytes() {
+        return inputList.totalBytes() + (expectedOutputList == null ? 0 : expectedOutputList.totalBytes());
+    }
+}
@@ -0,0 +1,265 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.project.codesandbox.config.TestDataProperties;
+import com.project.codesandbox.model.TestDataInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * 测试数据存储
+ * 用例内容按 sha256 保存在 blobs 目录下，相同内容只存一份；每个题目的每个版本是一份清单，记录各用例输入和期望输出的哈希。
+ * 读取时通过内存映射加载，最近使用的数据集保持映射，按总大小 LRU 淘汰
+ */
+@Slf4j
+@Component
+public class TestDataStore {
+
+    private static final Pattern PROBLEM_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private static final String BLOB_DIR = "blobs";
+
+    private static final String PROBLEM_DIR = "problems";
+
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    /**
+     * 清单中没有期望输出时的占位
+     */
+    private static final String NO_OUTPUT = "-";
+
+    @Resource
+    private TestDataProperties testDataProperties;
+
+    /**
+     * 题目 ID@版本 -> 数据集，按访问顺序排列
+     */
+    private final LinkedHashMap<String, TestDataSet> hotDataSets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hotBytes;
+
+    /**
+     * 保护热点数据集和版本分配，上传时锁内会写清单文件
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        FileUtil.mkdir(new File(testDataProperties.getDir(), BLOB_DIR));
+        FileUtil.mkdir(new File(testDataProperties.getDir(), PROBLEM_DIR));
+    }
+
+    public boolean isValidProblemId(String problemId) {
+        return problemId != null && PROBLEM_ID_PATTERN.matcher(problemId).matches();
+    }
+
+    /**
+     * 上传一个题目的测试数据，生成新版本
+     *
+     * @param problemId          题目 ID
+     * @param inputList          用例输入
+     * @param expectedOutputList 期望输出，可为 null
+     * @return 新版本信息
+     */
+    public TestDataInfo upload(String problemId, List<String> inputList, List<String> expectedOutputList) throws IOException {
+        if (!isValidProblemId(problemId)) {
+            throw new IllegalArgumentException("题目 ID 不合法");
+        }
+        StringBuilder manifest = new StringBuilder();
+        long totalBytes = 0;
+        for (int i = 0; i < inputList.size(); i++) {
+            byte[] input = bytes(inputList.get(i));
+            totalBytes += input.length;
+            manifest.append(writeBlob(input)).append(' ');
+            if (expectedOutputList == null) {
+                manifest.append(NO_OUTPUT);
+            } else {
+                byte[] output = bytes(expectedOutputList.get(i));
+                totalBytes += output.length;
+                manifest.append(writeBlob(output));
+            }
+            manifest.append('\n');
+        }
+        File problemDir = FileUtil.mkdir(new File(new File(testDataProperties.getDir(), PROBLEM_DIR), problemId));
+        int version;
+        lock.lock();
+        try {
+            Integer latest = latestVersion(problemId);
+            version = latest == null ? 1 : latest + 1;
+            File tmp = new File(problemDir, version + MANIFEST_SUFFIX + ".tmp");
+            FileUtil.writeString(manifest.toString(), tmp, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), new File(problemDir, version + MANIFEST_SUFFIX).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+        log.info("题目 {} 上传测试数据版本 {}，共 {} 个用例", problemId, version, inputList.size());
+        return TestDataInfo.builder()
+                .problemId(problemId)
+                .version(version)
+                .caseCount(inputList.size())
+                .hasExpectedOutput(expectedOutputList != null)
+                .totalBytes(totalBytes)
+                .build();
+    }
+
+    /**
+     * 查询题目某个版本的信息
+     *
+     * @param version 版本，为 null 时取最新版本
+     * @return 不存在时返回 null
+     */
+    public TestDataInfo getInfo(String problemId, Integer version) throws IOException {
+        TestDataSet dataSet = load(problemId, version);
+        if (dataSet == null) {
+            return null;
+        }
+        return TestDataInfo.builder()
+                .problemId(problemId)
+                .version(dataSet.getVersion())
+                .caseCount(dataSet.getInputList().size())
+                .hasExpectedOutput(dataSet.getExpectedOutputList() != null)
+                .totalBytes(dataSet.totalBytes())
+                .build();
+    }
+
+    /**
+     * 加载测试数据
+     *
+     * @param problemId 题目 ID
+     * @param version   版本，为 null 时取最新版本
+     * @return 不存在时返回 null
+     */
+    public TestDataSet load(String problemId, Integer version) throws IOException {
+        if (!isValidProblemId(problemId)) {
+            return null;
+        }
+        if (version == null) {
+            version = latestVersion(problemId);
+            if (version == null) {
+                return null;
+            }
+        }
+        String key = problemId + "@" + version;
+        lock.lock();
+        try {
+            TestDataSet dataSet = hotDataSets.get(key);
+            if (dataSet != null) {
+                return dataSet;
+            }
+        } finally {
+            lock.unlock();
+        }
+        File manifestFile = new File(new File(new File(testDataProperties.getDir(), PROBLEM_DIR), problemId), version + MANIFEST_SUFFIX);
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        List<ByteBuffer> inputs = new ArrayList<>();
+        List<ByteBuffer> outputs = new ArrayList<>();
+        boolean hasOutput = true;
+        for (String line : FileUtil.readLines(manifestFile, StandardCharsets.UTF_8)) {
+            String[] hashes = line.trim().split(" ");
+            if (hashes.length != 2) {
+                continue;
+            }
+            inputs.add(mapBlob(hashes[0]));
+            if (NO_OUTPUT.equals(hashes[1])) {
+                hasOutput = false;
+            } else {
+                outputs.add(mapBlob(hashes[1]));
+            }
+        }
+        TestDataSet dataSet = new TestDataSet(problemId, version, new MappedCaseList(inputs),
+                hasOutput ? new MappedCaseList(outputs) : null);
+        lock.lock();
+        try {
+            TestDataSet old = hotDataSets.put(key, dataSet);
+            hotBytes += dataSet.totalBytes() - (old == null ? 0 : old.totalBytes());
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        return dataSet;
+    }
+
+    /**
+     * 淘汰最久未使用的数据集，映射在缓冲区不再被引用后释放，调用方需持有锁
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, TestDataSet>> iterator = hotDataSets.entrySet().iterator();
+        // 至少保留最近使用的一个数据集
+        while (hotBytes > testDataProperties.getCacheMaxBytes() && hotDataSets.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, TestDataSet> eldest = iterator.next();
+            iterator.remove();
+            hotBytes -= eldest.getValue().totalBytes();
+        }
+    }
+
+    private Integer latestVersion(String problemId) {
+        File[] manifests = new File(new File(testDataProperties.getDir(), PROBLEM_DIR), problemId)
+                .listFiles((dir, name) -> name.endsWith(MANIFEST_SUFFIX));
+        if (manifests == null) {
+            return null;
+        }
+        Integer latest = null;
+        for (File manifest : manifests) {
+            try {
+                int version = Integer.parseInt(manifest.getName().substring(0, manifest.getName().length() - MANIFEST_SUFFIX.length()));
+                latest = latest == null ? version : Math.max(latest, version);
+            } catch (NumberFormatException ignored) {
+                // 非版本号命名的文件直接忽略
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 写入内容，已存在时直接返回哈希
+     */
+    private String writeBlob(byte[] content) throws IOException {
+        String hash = DigestUtil.sha256Hex(content);
+        File blob = blobFile(hash);
+        if (blob.isFile()) {
+            return hash;
+        }
+        FileUtil.mkParentDirs(blob);
+        File tmp = new File(blob.getParentFile(), hash + "." + Thread.currentThread().getId() + ".tmp");
+        FileUtil.writeBytes(content, tmp);
+        Files.move(tmp.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return hash;
+    }
+
+    private ByteBuffer mapBlob(String hash) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(blobFile(hash), "r");
+             FileChannel channel = file.getChannel()) {
+            // 映射在通道关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private File blobFile(String hash) {
+        return new File(new File(new File(testDataProperties.getDir(), BLOB_DIR), hash.substring(0, 2)), hash);
+    }
+
+    private static byte[] bytes(String text) {
+        return (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+    }
+}
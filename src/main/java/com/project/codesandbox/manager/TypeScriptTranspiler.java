@@ -0,0 +1,267 @@
+package com.project.codesandbox.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.project.codesandbox.config.TypeScriptProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * TypeScript 转译
+ * 服务端常驻一个 node 转译进程，编译器只加载一次，所有提交共用；每个文件按源码哈希缓存转译结果，
+ * 转译后的提交按 JavaScript 在沙箱中运行，每个用例不再重复转译
+ */
+@Slf4j
+@Component
+public class TypeScriptTranspiler {
+
+    private static final String SCRIPT = "typescript/ts_service.js";
+
+    /**
+     * 转译进程结束或不可读时放入的结束标记
+     */
+    private static final JSONObject END = new JSONObject();
+
+    /**
+     * 转译服务找不到 typescript 和 esbuild 时的退出码
+     */
+    private static final int EXIT_NO_COMPILER = 3;
+
+    @Resource
+    private TypeScriptProperties typeScriptProperties;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    /**
+     * 按源码哈希缓存的转译结果，按访问顺序淘汰
+     */
+    private final LinkedHashMap<String, Result> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock cacheLock = new ReentrantLock();
+
+    /**
+     * 转译进程一次处理一个请求
+     */
+    private final ReentrantLock processLock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private File scriptFile;
+
+    /**
+     * 转译服务能否使用，node 或编译器不存在时不再尝试启动
+     */
+    private volatile boolean available = true;
+
+    private Process process;
+
+    private DataOutputStream processInput;
+
+    private BlockingQueue<JSONObject> responses;
+
+    @PostConstruct
+    public void init() {
+        if (!typeScriptProperties.isEnabled()) {
+            return;
+        }
+        scriptFile = FileUtil.writeBytes(ResourceUtil.readBytes(SCRIPT),
+                new File(FileUtil.getTmpDir(), "codesandbox-typescript/" + new File(SCRIPT).getName()));
+        // 启动时加载编译器并转译一次，第一个提交不承担冷启动
+        processLock.lock();
+        try {
+            if (ensureProcess() && request("warmup.ts", "const warmup: number = 1;") != null) {
+                log.info("TypeScript 转译服务已启动");
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        processLock.lock();
+        try {
+            stopProcess();
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * 转译一个 TypeScript 文件
+     *
+     * @param fileName 文件名，用于错误信息
+     * @param source   源码
+     * @return 转译结果，未启用或转译服务不可用时返回 null
+     */
+    public Result transpile(String fileName, String source) {
+        if (!typeScriptProperties.isEnabled() || !available) {
+            return null;
+        }
+        String key = DigestUtil.sha256Hex(fileName + '\0' + source);
+        cacheLock.lock();
+        try {
+            Result cached = cache.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+        misses.incrementAndGet();
+        Result result;
+        processLock.lock();
+        try {
+            if (!ensureProcess()) {
+                return null;
+            }
+            result = request(fileName, source);
+        } finally {
+            processLock.unlock();
+        }
+        if (result == null) {
+            return null;
+        }
+        cacheLock.lock();
+        try {
+            cache.put(key, result);
+            if (cache.size() > typeScriptProperties.getCacheMaxEntries()) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+        return result;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 确保转译进程在运行，已退出时重新启动，需持有 processLock
+     */
+    private boolean ensureProcess() {
+        if (process != null && process.isAlive()) {
+            return true;
+        }
+        stopProcess();
+        ProcessBuilder processBuilder = new ProcessBuilder(typeScriptProperties.getNodePath(), scriptFile.getAbsolutePath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        if (StrUtil.isNotBlank(typeScriptProperties.getNodeModulesPath())) {
+            processBuilder.environment().put("NODE_PATH", typeScriptProperties.getNodeModulesPath());
+        }
+        try {
+            process = processBuilder.start();
+        } catch (IOException e) {
+            log.info("无法启动 TypeScript 转译服务，TypeScript 提交按原样运行: {}", e.getMessage());
+            process = null;
+            available = false;
+            return false;
+        }
+        processInput = new DataOutputStream(process.getOutputStream());
+        BlockingQueue<JSONObject> queue = new LinkedBlockingQueue<>();
+        responses = queue;
+        DataInputStream processOutput = new DataInputStream(process.getInputStream());
+        sandboxThreads.newThreadFactory("typescript-reader-", true).newThread(() -> {
+            try {
+                while (true) {
+                    byte[] frame = new byte[processOutput.readInt()];
+                    processOutput.readFully(frame);
+                    queue.add(JSONUtil.parseObj(new String(frame, StandardCharsets.UTF_8)));
+                }
+            } catch (IOException | RuntimeException e) {
+                queue.add(END);
+            }
+        }).start();
+        return true;
+    }
+
+    /**
+     * 发送一个转译请求并等待结果，需持有 processLock；超时或进程退出时结束进程，下次调用时重启
+     */
+    private Result request(String fileName, String source) {
+        try {
+            byte[] payload = JSONUtil.createObj().set("fileName", fileName).set("source", source).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+            processInput.writeInt(payload.length);
+            processInput.write(payload);
+            processInput.flush();
+            JSONObject response = responses.poll(typeScriptProperties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (response == END && process.waitFor(1, TimeUnit.SECONDS) && process.exitValue() == EXIT_NO_COMPILER) {
+                log.info("未找到 typescript 或 esbuild，TypeScript 提交按原样运行");
+                available = false;
+                stopProcess();
+                return null;
+            }
+            if (response == null || response == END) {
+                log.warn("TypeScript 转译服务{}，将重新启动", response == null ? "超时" : "已退出");
+                stopProcess();
+                return null;
+            }
+            return new Result(response.getBool("ok", false), response.getStr("code", ""), response.getStr("diagnostics", ""));
+        } catch (IOException e) {
+            if (!process.isAlive() && process.exitValue() == EXIT_NO_COMPILER) {
+                log.info("未找到 typescript 或 esbuild，TypeScript 提交按原样运行");
+                available = false;
+            } else {
+                log.warn("TypeScript 转译服务通信失败: {}", e.getMessage());
+            }
+            stopProcess();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void stopProcess() {
+        if (process != null) {
+            process.destroyForcibly();
+            process = null;
+        }
+    }
+
+    /**
+     * 转译结果，成功时 code 为 JavaScript 代码，失败时 diagnostics 为错误信息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+
+        private final boolean success;
+
+        private final String code;
+
+        private final String diagnostics;
+    }
+}
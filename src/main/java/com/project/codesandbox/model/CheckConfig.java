@@ -0,0 +1,51 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 输出比对配置
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckConfig implements Serializable {
+
+    /**
+     * 期望输出，与输入一一对应
+     */
+    private List<String> expectedOutputList;
+
+    /**
+     * 比对方式：exact（默认）、whitespace、float、special
+     */
+    private String mode;
+
+    /**
+     * float 方式的误差，绝对误差或相对误差不超过该值即视为相同
+     */
+    private Double floatTolerance;
+
+    /**
+     * special 方式的检查器代码，以 输入文件 输出文件 期望输出文件 为参数运行，退出码为 0 表示答案正确
+     */
+    private String checkerCode;
+
+    /**
+     * 检查器的语言
+     */
+    private String checkerLanguage;
+
+    /**
+     * 答案错误后是否跳过剩余用例，默认跳过
+     */
+    private Boolean failFast;
+
+    public static final long serialVersionUID = 1L;
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -12,9 +13,16 @@ public class CodeExecuteRequest implements Serializable {
 
     private String code;
 
+    /**
+     * 主文件以外的源码文件，相对路径 -> 内容
+     */
+    private Map<String, String> files;
+
     private String language;
 
     private List<String> input;
 
+    private CheckConfig check;
+
     public static final long serialVersionUID = 1L;
 }
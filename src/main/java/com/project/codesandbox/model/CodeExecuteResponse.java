@@ -22,5 +22,10 @@ public class CodeExecuteResponse implements Serializable {
 
     private Long time;
 
+    /**
+     * 已执行用例的状态
+     */
+    private List<String> caseStatusList;
+
     public static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,36 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Docker 守护进程状态
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DaemonStats {
+
+    /**
+     * 守护进程地址
+     */
+    private String host;
+
+    /**
+     * 是否参与调度，熔断时为 false
+     */
+    private Boolean healthy;
+
+    /**
+     * 借出中的容器数
+     */
+    private Integer activeContainers;
+
+    /**
+     * 最近调用耗时的加权平均，单位毫秒
+     */
+    private Double latencyMillis;
+}
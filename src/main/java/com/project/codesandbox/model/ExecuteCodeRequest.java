@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -15,7 +16,27 @@ public class ExecuteCodeRequest {
 
     public String code;
 
+    /**
+     * 主文件以外的源码文件，相对路径 -> 内容，可为空
+     */
+    public Map<String, String> files;
+
     public String language;
 
     public List<String> inputList;
+
+    /**
+     * 题目 ID，不为空时从测试数据存储读取输入，忽略 inputList
+     */
+    public String problemId;
+
+    /**
+     * 测试数据版本，为空时使用最新版本
+     */
+    public Integer version;
+
+    /**
+     * 输出比对配置，为空时只返回输出
+     */
+    public CheckConfig check;
 }
\ No newline at end of file
@@ -20,4 +20,9 @@ public class ExecuteCodeResponse {
     public Integer status;
 
     public JudgeInfo judgeInfo;
+
+    /**
+     * 已执行用例的状态，与输入一一对应，答案错误后跳过的用例不包含在内
+     */
+    public List<Integer> caseStatusList;
 }
@@ -0,0 +1,36 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 异步任务信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobInfo {
+
+    private String jobId;
+
+    /**
+     * 任务状态，取值见 JobStatusEnum
+     */
+    private Integer status;
+
+    private String message;
+
+    /**
+     * 执行结果，任务完成后才有值
+     */
+    private ExecuteCodeResponse result;
+
+    private Long submitTime;
+
+    private Long startTime;
+
+    private Long finishTime;
+}
@@ -0,0 +1,55 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 异步任务队列统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobStats {
+
+    /**
+     * 排队中的任务数
+     */
+    private Integer queueDepth;
+
+    /**
+     * 队列容量
+     */
+    private Integer queueCapacity;
+
+    /**
+     * 正在执行的任务数
+     */
+    private Integer running;
+
+    private Long submitted;
+
+    private Long completed;
+
+    /**
+     * 队列已满被拒绝的任务数
+     */
+    private Long rejected;
+
+    /**
+     * 平均排队时间，单位毫秒
+     */
+    private Double avgQueueMillis;
+
+    /**
+     * 平均任务耗时（提交到完成），单位毫秒
+     */
+    private Double avgLatencyMillis;
+
+    /**
+     * 最大任务耗时，单位毫秒
+     */
+    private Long maxLatencyMillis;
+}
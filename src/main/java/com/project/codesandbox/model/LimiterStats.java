@@ -0,0 +1,41 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 并发限制统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LimiterStats {
+
+    /**
+     * 当前并发上限
+     */
+    private Integer limit;
+
+    /**
+     * 正在执行的请求数
+     */
+    private Integer inFlight;
+
+    /**
+     * 因繁忙被拒绝的请求数
+     */
+    private Long rejected;
+
+    /**
+     * 宿主机可用内存占比
+     */
+    private Double freeMemoryRatio;
+
+    /**
+     * 宿主机 CPU 使用率
+     */
+    private Double cpuLoad;
+}
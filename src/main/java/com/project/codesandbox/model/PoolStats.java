@@ -0,0 +1,59 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 容器池统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PoolStats {
+
+    /**
+     * 直接借到预热容器的次数
+     */
+    private Long warmLeases;
+
+    /**
+     * 临时新建容器的次数
+     */
+    private Long coldLeases;
+
+    /**
+     * 平均借用等待时间，单位毫秒
+     */
+    private Double avgLeaseWaitMillis;
+
+    /**
+     * 最大借用等待时间，单位毫秒
+     */
+    private Double maxLeaseWaitMillis;
+
+    /**
+     * 因复用次数达到上限或状态异常而回收的容器数
+     */
+    private Long recycled;
+
+    /**
+     * 各语言空闲容器数
+     */
+    private Map<String, Integer> idle;
+
+    /**
+     * 各语言容器总数（空闲 + 借出）
+     */
+    private Map<String, Integer> total;
+
+    /**
+     * 各 Docker 守护进程的状态
+     */
+    private List<DaemonStats> daemons;
+}
@@ -0,0 +1,51 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 容器回收统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReaperStats {
+
+    /**
+     * 等待删除的容器数
+     */
+    private Integer pending;
+
+    /**
+     * 当前跟踪的容器数
+     */
+    private Integer tracked;
+
+    /**
+     * 已删除的容器数
+     */
+    private Long reaped;
+
+    /**
+     * 删除失败的次数，失败的容器由孤儿扫描再次回收
+     */
+    private Long failed;
+
+    /**
+     * 扫描发现的孤儿容器数
+     */
+    private Long orphansFound;
+
+    /**
+     * 从提交回收到删除完成的平均耗时，单位毫秒
+     */
+    private Double avgLagMillis;
+
+    /**
+     * 从提交回收到删除完成的最大耗时，单位毫秒
+     */
+    private Long maxLagMillis;
+}
@@ -0,0 +1,55 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 异步执行任务请求
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmitJobRequest {
+
+    private String code;
+
+    /**
+     * 主文件以外的源码文件，相对路径 -> 内容，可为空
+     */
+    private Map<String, String> files;
+
+    private String language;
+
+    private List<String> inputList;
+
+    /**
+     * 题目 ID，不为空时从测试数据存储读取输入
+     */
+    private String problemId;
+
+    /**
+     * 测试数据版本，为空时使用最新版本
+     */
+    private Integer version;
+
+    /**
+     * 输出比对配置，可为空
+     */
+    private CheckConfig check;
+
+    /**
+     * 执行方式：args 传参（默认）或 interact 交互式输入
+     */
+    private String mode;
+
+    /**
+     * 任务完成后回调的地址，可为空
+     */
+    private String callbackUrl;
+}
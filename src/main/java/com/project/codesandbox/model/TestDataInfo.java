@@ -0,0 +1,32 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 测试数据版本信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TestDataInfo {
+
+    private String problemId;
+
+    private Integer version;
+
+    private Integer caseCount;
+
+    /**
+     * 是否包含期望输出
+     */
+    private Boolean hasExpectedOutput;
+
+    /**
+     * 输入与期望输出的总字节数
+     */
+    private Long totalBytes;
+}
@@ -0,0 +1,28 @@
+package com.project.codesandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 上传测试数据请求
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadTestDataRequest {
+
+    /**
+     * 用例输入
+     */
+    private List<String> inputList;
+
+    /**
+     * 期望输出，可为空，不为空时与输入一一对应
+     */
+    private List<String> expectedOutputList;
+}
@@ -0,0 +1,367 @@
+package com.project.codesandbox.service;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.project.codesandbox.config.EngineProperties;
+import com.project.codesandbox.enums.CheckModeEnum;
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.enums.LanguageEnum;
+import com.project.codesandbox.manager.AdaptiveConcurrencyLimiter;
+import com.project.codesandbox.manager.DockerSandboxEngine;
+import com.project.codesandbox.manager.SandboxEngine;
+import com.project.codesandbox.manager.SourceFiles;
+import com.project.codesandbox.manager.TestDataSet;
+import com.project.codesandbox.manager.TestDataStore;
+import com.project.codesandbox.manager.TypeScriptTranspiler;
+import com.project.codesandbox.model.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代码沙箱执行服务，负责参数校验、调用沙箱以及结果转换，供同步接口和异步任务共用
+ */
+@Slf4j
+@Service
+public class CodeSandboxService {
+
+    /**
+     * 全部沙箱引擎，按语言在 codesandbox.engine 中选择
+     */
+    @Resource
+    private List<SandboxEngine> sandboxEngines;
+
+    @Resource
+    private EngineProperties engineProperties;
+
+    @Resource
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Resource
+    private TestDataStore testDataStore;
+
+    @Resource
+    private TypeScriptTranspiler typeScriptTranspiler;
+
+    /**
+     * 通过传参执行代码，繁忙时立即返回
+     */
+    public ExecuteCodeResponse executeByArgs(ExecuteCodeRequest executeCodeRequest) {
+        return execute(executeCodeRequest, false, 0);
+    }
+
+    /**
+     * 通过交互式输入执行代码，繁忙时立即返回
+     */
+    public ExecuteCodeResponse executeByInteract(ExecuteCodeRequest executeCodeRequest) {
+        return execute(executeCodeRequest, true, 0);
+    }
+
+    /**
+     * 执行代码
+     *
+     * @param executeCodeRequest 请求
+     * @param interact           是否使用交互式输入
+     * @param permitWaitMillis   获取执行许可的最长等待时间，为 0 时不等待
+     * @return {@link ExecuteCodeResponse}
+     */
+    public ExecuteCodeResponse execute(ExecuteCodeRequest executeCodeRequest, boolean interact, long permitWaitMillis) {
+        ExecuteCodeResponse errorResponse = validate(executeCodeRequest.getCode(), executeCodeRequest.getLanguage());
+        if (errorResponse == null) {
+            errorResponse = validateFiles(executeCodeRequest.getFiles());
+        }
+        if (errorResponse == null) {
+            errorResponse = resolveTestData(executeCodeRequest);
+        }
+        if (errorResponse == null) {
+            errorResponse = validateCheck(executeCodeRequest.getCheck(), executeCodeRequest.getInputList());
+        }
+        if (errorResponse != null) {
+            return errorResponse;
+        }
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = permitWaitMillis > 0 ? concurrencyLimiter.acquire(permitWaitMillis) : concurrencyLimiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permit = null;
+        }
+        if (permit == null) {
+            return ExecuteCodeResponse.builder()
+                    .status(ExecuteStatusEnum.SYSTEM_BUSY.getValue())
+                    .message(ExecuteStatusEnum.SYSTEM_BUSY.getText())
+                    .build();
+        }
+        boolean dropped = true;
+        try {
+            CodeExecuteRequest codeExecuteRequest = toCodeExecuteRequest(executeCodeRequest);
+            CodeExecuteResponse codeExecuteResponse = transpileTypeScript(codeExecuteRequest);
+            if (codeExecuteResponse == null) {
+                codeExecuteResponse = selectEngine(codeExecuteRequest.getLanguage()).execute(codeExecuteRequest, interact);
+            }
+            dropped = false;
+            return toExecuteCodeResponse(codeExecuteResponse);
+        } finally {
+            permit.release(dropped);
+        }
+    }
+
+    /**
+     * TypeScript 提交在服务端转译为 JavaScript，之后按 JavaScript 运行；转译服务不可用时请求保持不变
+     *
+     * @param codeExecuteRequest 请求，转译成功时原地替换为 JavaScript
+     * @return 转译出错时返回编译错误响应，否则返回 null
+     */
+    private CodeExecuteResponse transpileTypeScript(CodeExecuteRequest codeExecuteRequest) {
+        if (!LanguageEnum.TYPESCRIPT.getLanguage().equals(codeExecuteRequest.getLanguage())) {
+            return null;
+        }
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put(LanguageEnum.TYPESCRIPT.getSaveFileName(), codeExecuteRequest.getCode());
+        if (codeExecuteRequest.getFiles() != null) {
+            sources.putAll(codeExecuteRequest.getFiles());
+        }
+        Map<String, String> outputs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            String fileName = source.getKey();
+            if (!fileName.endsWith(".ts")) {
+                outputs.put(fileName, source.getValue());
+                continue;
+            }
+            TypeScriptTranspiler.Result result = typeScriptTranspiler.transpile(fileName, source.getValue());
+            if (result == null) {
+                return null;
+            }
+            if (!result.isSuccess()) {
+                return CodeExecuteResponse.builder()
+                        .success(false)
+                        .executeStatus(ExecuteStatusEnum.COMPILE_ERROR.getText())
+                        .errorMessage(result.getDiagnostics())
+                        .build();
+            }
+            outputs.put(StrUtil.removeSuffix(fileName, ".ts") + ".js", result.getCode());
+        }
+        codeExecuteRequest.setLanguage(LanguageEnum.JAVASCRIPT.getLanguage());
+        codeExecuteRequest.setCode(outputs.remove(LanguageEnum.JAVASCRIPT.getSaveFileName()));
+        codeExecuteRequest.setFiles(codeExecuteRequest.getFiles() == null ? null : outputs);
+        return null;
+    }
+
+    /**
+     * 选择语言配置的沙箱引擎，配置的引擎不可用时退回 Docker 引擎
+     *
+     * @param language 语言
+     * @return {@link SandboxEngine}
+     */
+    private SandboxEngine selectEngine(String language) {
+        String name = engineProperties.getLanguages().getOrDefault(language, engineProperties.getDefaultEngine());
+        SandboxEngine fallback = null;
+        for (SandboxEngine engine : sandboxEngines) {
+            if (engine.getName().equals(name) && engine.isAvailable()) {
+                return engine;
+            }
+            if (DockerSandboxEngine.NAME.equals(engine.getName())) {
+                fallback = engine;
+            }
+        }
+        log.warn("沙箱引擎 {} 不可用，{} 使用 Docker 引擎执行", name, language);
+        return fallback;
+    }
+
+    /**
+     * 校验代码和语言
+     *
+     * @return 校验失败时返回错误响应，通过时返回 null
+     */
+    public ExecuteCodeResponse validate(String code, String language) {
+        if (StrUtil.isBlank(code)){
+            return ExecuteCodeResponse.builder()
+                    .outputList(null)
+                    .status(1)
+                    .message("代码不可为空！")
+                    .judgeInfo(null)
+                    .build();
+        }
+        LanguageEnum enumByValue = LanguageEnum.getEnumByValue(language);
+        if (enumByValue == null){
+            return ExecuteCodeResponse.builder()
+                    .outputList(null)
+                    .status(1)
+                    .message("选择的语言不存在！")
+                    .judgeInfo(null)
+                    .build();
+        }
+        return null;
+    }
+
+    /**
+     * 校验主文件以外的源码文件路径
+     *
+     * @return 校验失败时返回错误响应，通过时返回 null
+     */
+    public ExecuteCodeResponse validateFiles(Map<String, String> files) {
+        if (files == null) {
+            return null;
+        }
+        for (String path : files.keySet()) {
+            if (!SourceFiles.isValidPath(path)) {
+                return ExecuteCodeResponse.builder()
+                        .outputList(null)
+                        .status(1)
+                        .message("文件路径不合法：" + path)
+                        .judgeInfo(null)
+                        .build();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 校验输出比对配置
+     *
+     * @return 校验失败时返回错误响应，通过时返回 null
+     */
+    public ExecuteCodeResponse validateCheck(CheckConfig check, List<String> inputList) {
+        if (check == null || CollUtil.isEmpty(check.getExpectedOutputList())) {
+            return null;
+        }
+        String message = null;
+        CheckModeEnum checkModeEnum = CheckModeEnum.getEnumByValue(check.getMode());
+        if (checkModeEnum == null) {
+            message = "比对方式不存在！";
+        } else if (inputList == null || inputList.size() != check.getExpectedOutputList().size()) {
+            message = "期望输出数量与输入数量不一致！";
+        } else if (checkModeEnum == CheckModeEnum.SPECIAL && StrUtil.isBlank(check.getCheckerCode())) {
+            message = "检查器代码不可为空！";
+        } else if (checkModeEnum == CheckModeEnum.SPECIAL && LanguageEnum.getEnumByValue(check.getCheckerLanguage()) == null) {
+            message = "检查器语言不存在！";
+        }
+        if (message == null) {
+            return null;
+        }
+        return ExecuteCodeResponse.builder()
+                .outputList(null)
+                .status(1)
+                .message(message)
+                .judgeInfo(null)
+                .build();
+    }
+
+    /**
+     * 请求指定了题目时从测试数据存储读取输入，未提供期望输出时使用存储中的期望输出
+     *
+     * @return 测试数据不存在时返回错误响应，否则返回 null
+     */
+    public ExecuteCodeResponse resolveTestData(ExecuteCodeRequest executeCodeRequest) {
+        String problemId = executeCodeRequest.getProblemId();
+        if (StrUtil.isBlank(problemId)) {
+            return null;
+        }
+        TestDataSet dataSet;
+        try {
+            dataSet = testDataStore.load(problemId, executeCodeRequest.getVersion());
+        } catch (IOException e) {
+            log.error("读取题目 {} 的测试数据失败", problemId, e);
+            dataSet = null;
+        }
+        if (dataSet == null) {
+            return ExecuteCodeResponse.builder()
+                    .outputList(null)
+                    .status(1)
+                    .message("测试数据不存在！")
+                    .judgeInfo(null)
+                    .build();
+        }
+        executeCodeRequest.setInputList(dataSet.getInputList());
+        if (dataSet.getExpectedOutputList() != null) {
+            CheckConfig check = executeCodeRequest.getCheck();
+            if (check == null) {
+                executeCodeRequest.setCheck(CheckConfig.builder().expectedOutputList(dataSet.getExpectedOutputList()).build());
+            } else if (CollUtil.isEmpty(check.getExpectedOutputList())) {
+                check.setExpectedOutputList(dataSet.getExpectedOutputList());
+            }
+        }
+        return null;
+    }
+
+    private CodeExecuteRequest toCodeExecuteRequest(ExecuteCodeRequest executeCodeRequest) {
+        return CodeExecuteRequest.builder()
+                .input(executeCodeRequest.getInputList())
+                .language(executeCodeRequest.getLanguage())
+                .code(executeCodeRequest.getCode())
+                .files(executeCodeRequest.getFiles())
+                .check(executeCodeRequest.getCheck())
+                .build();
+    }
+
+    private ExecuteCodeResponse toExecuteCodeResponse(CodeExecuteResponse codeExecuteResponse) {
+        String executeStatus = codeExecuteResponse.getExecuteStatus();
+        Long time = codeExecuteResponse.getTime();
+        List<String> output = codeExecuteResponse.getOutput();
+        Long memory = codeExecuteResponse.getMemory();
+        String errorMessage = codeExecuteResponse.getErrorMessage();
+        boolean success = codeExecuteResponse.isSuccess();
+        ExecuteCodeResponse executeCodeResponse = ExecuteCodeResponse.builder().build();
+        executeCodeResponse.setCaseStatusList(toCaseStatusValues(codeExecuteResponse.getCaseStatusList()));
+        if (!success){
+            if (ExecuteStatusEnum.COMPILE_ERROR.getText().equals(executeStatus)){
+                executeCodeResponse.setStatus(0);
+                executeCodeResponse.setMessage(errorMessage);
+                return executeCodeResponse;
+            }
+            else if (ExecuteStatusEnum.WRONG_ANSWER.getText().equals(executeStatus)){
+                // 答案错误时同样返回输出和资源使用，便于调用方展示
+                JudgeInfo judgeInfo = new JudgeInfo();
+                judgeInfo.setMessage(ExecuteStatusEnum.WRONG_ANSWER.getText());
+                judgeInfo.setTime(time);
+                judgeInfo.setMemory(memory);
+                executeCodeResponse.setStatus(ExecuteStatusEnum.WRONG_ANSWER.getValue());
+                executeCodeResponse.setOutputList(output);
+                executeCodeResponse.setJudgeInfo(judgeInfo);
+                executeCodeResponse.setMessage(errorMessage);
+                return executeCodeResponse;
+            }
+            else if (ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText().equals(executeStatus)
+                    || ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText().equals(executeStatus)){
+                executeCodeResponse.setStatus(ExecuteStatusEnum.getEnumByText(executeStatus).getValue());
+                executeCodeResponse.setMessage(errorMessage);
+                return executeCodeResponse;
+            }
+            else{
+                executeCodeResponse.setStatus(1);
+                executeCodeResponse.setMessage(errorMessage);
+                return executeCodeResponse;
+            }
+        }
+        JudgeInfo judgeInfo = new JudgeInfo();
+        judgeInfo.setMessage(ExecuteStatusEnum.SUCCESS.getText());
+        judgeInfo.setTime(time);
+        judgeInfo.setMemory(memory);
+        executeCodeResponse.setStatus(2);
+        executeCodeResponse.setOutputList(output);
+        executeCodeResponse.setJudgeInfo(judgeInfo);
+        executeCodeResponse.setMessage(ExecuteStatusEnum.SUCCESS.getText());
+        return executeCodeResponse;
+    }
+
+    /**
+     * 用例状态转换为状态值，无法识别的状态视为运行错误
+     */
+    private List<Integer> toCaseStatusValues(List<String> caseStatusList) {
+        if (caseStatusList == null) {
+            return null;
+        }
+        List<Integer> values = new ArrayList<>(caseStatusList.size());
+        for (String caseStatus : caseStatusList) {
+            ExecuteStatusEnum statusEnum = ExecuteStatusEnum.getEnumByText(caseStatus);
+            values.add(statusEnum == null ? ExecuteStatusEnum.RUNTIME_ERROR.getValue() : statusEnum.getValue());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,361 @@
+package com.project.codesandbox.service;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.codesandbox.config.JobProperties;
+import com.project.codesandbox.config.LimiterProperties;
+import com.project.codesandbox.enums.JobStatusEnum;
+import com.project.codesandbox.manager.SandboxThreads;
+import com.project.codesandbox.model.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步执行任务
+ * 任务进入有界队列，由专用线程池执行，结果在内存中保留一段时间供轮询，可选在完成后回调
+ * 已完成的任务按完成顺序记录，超过保留时间或保留数量上限时从最早完成的开始移除；完成后即释放提交的代码和输入
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    private static final String MODE_INTERACT = "interact";
+
+    @Resource
+    private JobProperties jobProperties;
+
+    @Resource
+    private LimiterProperties limiterProperties;
+
+    @Resource
+    private CodeSandboxService codeSandboxService;
+
+    @Resource
+    private SandboxThreads sandboxThreads;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 已完成任务的 ID，按完成顺序排列，由 retainLock 保护
+     */
+    private final Deque<String> finishedJobIds = new ArrayDeque<>();
+
+    private final ReentrantLock retainLock = new ReentrantLock();
+
+    private ThreadPoolExecutor jobExecutor;
+
+    private ThreadPoolExecutor callbackExecutor;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong totalQueueMillis = new AtomicLong();
+
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        jobExecutor = new ThreadPoolExecutor(jobProperties.getWorkers(), jobProperties.getWorkers(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(jobProperties.getQueueCapacity()),
+                sandboxThreads.newThreadFactory("sandbox-job-", false),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 回调不占用执行线程，队列满时丢弃，调用方仍可轮询结果
+        callbackExecutor = new ThreadPoolExecutor(1, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(jobProperties.getQueueCapacity()),
+                sandboxThreads.newThreadFactory("sandbox-job-callback-", true),
+                (runnable, executor) -> log.warn("回调队列已满，丢弃回调"));
+        Gauge.builder("codesandbox.jobs.queued", jobExecutor, executor -> executor.getQueue().size())
+                .description("排队中的任务数")
+                .register(meterRegistry);
+        Gauge.builder("codesandbox.jobs.running", jobExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("执行中的任务数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        callbackExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param submitJobRequest 任务请求
+     * @return 任务信息，队列已满时返回 null
+     */
+    public JobInfo submit(SubmitJobRequest submitJobRequest) {
+        Job job = new Job(UUID.randomUUID().toString(), submitJobRequest);
+        // 参数错误直接完成，不进入队列
+        ExecuteCodeResponse errorResponse = codeSandboxService.validate(submitJobRequest.getCode(), submitJobRequest.getLanguage());
+        if (errorResponse == null) {
+            errorResponse = codeSandboxService.validateFiles(submitJobRequest.getFiles());
+        }
+        if (errorResponse == null && StrUtil.isNotBlank(submitJobRequest.getCallbackUrl())
+                && !isAllowedCallback(submitJobRequest.getCallbackUrl())) {
+            errorResponse = ExecuteCodeResponse.builder()
+                    .outputList(null)
+                    .status(1)
+                    .message("回调地址不在允许范围内！")
+                    .judgeInfo(null)
+                    .build();
+        }
+        // 引用题目时输入在执行前才从存储读取，比对配置随之校验
+        if (errorResponse == null && StrUtil.isBlank(submitJobRequest.getProblemId())) {
+            errorResponse = codeSandboxService.validateCheck(submitJobRequest.getCheck(), submitJobRequest.getInputList());
+        }
+        if (errorResponse != null) {
+            job.finish(JobStatusEnum.FINISHED, errorResponse, null);
+            jobs.put(job.jobId, job);
+            retain(job);
+            return job.toJobInfo();
+        }
+        jobs.put(job.jobId, job);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            rejected.incrementAndGet();
+            return null;
+        }
+        submitted.incrementAndGet();
+        return job.toJobInfo();
+    }
+
+    /**
+     * 查询任务
+     *
+     * @param jobId 任务 ID
+     * @return 任务信息，不存在或已过期时返回 null
+     */
+    public JobInfo getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.toJobInfo();
+    }
+
+    public JobStats getStats() {
+        long completedCount = completed.get();
+        return JobStats.builder()
+                .queueDepth(jobExecutor.getQueue().size())
+                .queueCapacity(jobProperties.getQueueCapacity())
+                .running(jobExecutor.getActiveCount())
+                .submitted(submitted.get())
+                .completed(completedCount)
+                .rejected(rejected.get())
+                .avgQueueMillis(completedCount == 0 ? 0 : (double) totalQueueMillis.get() / completedCount)
+                .avgLatencyMillis(completedCount == 0 ? 0 : (double) totalLatencyMillis.get() / completedCount)
+                .maxLatencyMillis(maxLatencyMillis.get())
+                .build();
+    }
+
+    /**
+     * 清理过期的已完成任务
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - jobProperties.getRetentionMillis();
+        retainLock.lock();
+        try {
+            while (!finishedJobIds.isEmpty()) {
+                Job job = jobs.get(finishedJobIds.peekFirst());
+                if (job != null && job.finishTime >= expireBefore) {
+                    break;
+                }
+                jobs.remove(finishedJobIds.pollFirst());
+            }
+        } finally {
+            retainLock.unlock();
+        }
+    }
+
+    /**
+     * 记录已完成的任务，超过保留数量上限时移除最早完成的任务
+     */
+    private void retain(Job job) {
+        retainLock.lock();
+        try {
+            finishedJobIds.addLast(job.jobId);
+            while (finishedJobIds.size() > jobProperties.getMaxRetainedJobs()) {
+                jobs.remove(finishedJobIds.pollFirst());
+            }
+        } finally {
+            retainLock.unlock();
+        }
+    }
+
+    private void run(Job job) {
+        job.start();
+        ExecuteCodeResponse result;
+        try {
+            SubmitJobRequest request = job.request;
+            ExecuteCodeRequest executeCodeRequest = ExecuteCodeRequest.builder()
+                    .code(request.getCode())
+                    .files(request.getFiles())
+                    .language(request.getLanguage())
+                    .inputList(request.getInputList())
+                    .problemId(request.getProblemId())
+                    .version(request.getVersion())
+                    .check(request.getCheck())
+                    .build();
+            // 任务已经排过队，等待执行许可而不是直接返回繁忙
+            result = codeSandboxService.execute(executeCodeRequest, MODE_INTERACT.equals(request.getMode()),
+                    limiterProperties.getJobWaitMillis());
+            job.finish(JobStatusEnum.FINISHED, result, null);
+        } catch (RuntimeException e) {
+            log.error("任务 {} 执行失败", job.jobId, e);
+            job.finish(JobStatusEnum.FAILED, null, e.getMessage());
+        }
+        long queueMillis = job.startTime - job.submitTime;
+        long latencyMillis = job.finishTime - job.submitTime;
+        completed.incrementAndGet();
+        totalQueueMillis.addAndGet(queueMillis);
+        totalLatencyMillis.addAndGet(latencyMillis);
+        maxLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+        log.info("任务 {} 完成，排队 {} ms，总耗时 {} ms", job.jobId, queueMillis, latencyMillis);
+        retain(job);
+
+        String callbackUrl = job.callbackUrl;
+        if (StrUtil.isNotBlank(callbackUrl)) {
+            callbackExecutor.execute(() -> callback(callbackUrl, job.toJobInfo()));
+        }
+    }
+
+    private void callback(String callbackUrl, JobInfo jobInfo) {
+        if (!isAllowedCallback(callbackUrl)) {
+            log.warn("任务 {} 的回调地址 {} 不在允许范围内，跳过回调", jobInfo.getJobId(), callbackUrl);
+            return;
+        }
+        try {
+            String body = objectMapper.writeValueAsString(jobInfo);
+            // 不跟随重定向，否则允许的主机可以把回调转到任意地址
+            HttpRequest.post(callbackUrl)
+                    .setFollowRedirects(false)
+                    .body(body, "application/json")
+                    .timeout(jobProperties.getCallbackTimeoutMillis())
+                    .execute()
+                    .close();
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("任务 {} 回调 {} 失败: {}", jobInfo.getJobId(), callbackUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * 回调地址只能是 http/https，且主机名在配置的允许列表中
+     */
+    private boolean isAllowedCallback(String callbackUrl) {
+        URI uri;
+        try {
+            uri = new URI(callbackUrl.trim());
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (host == null || uri.getUserInfo() != null
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return false;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        for (String allowed : jobProperties.getCallbackAllowedHosts()) {
+            String pattern = allowed.trim().toLowerCase(Locale.ROOT);
+            if (pattern.startsWith("*.") ? host.endsWith(pattern.substring(1)) : host.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 内存中的任务记录
+     */
+    private static class Job {
+
+        private final String jobId;
+
+        /**
+         * 提交的请求，包含代码和全部输入，任务完成后释放
+         */
+        private volatile SubmitJobRequest request;
+
+        private final String callbackUrl;
+
+        private final long submitTime = System.currentTimeMillis();
+
+        private volatile JobStatusEnum status = JobStatusEnum.QUEUED;
+
+        private volatile Long startTime;
+
+        private volatile Long finishTime;
+
+        private volatile ExecuteCodeResponse result;
+
+        private volatile String message;
+
+        private Job(String jobId, SubmitJobRequest request) {
+            this.jobId = jobId;
+            this.request = request;
+            this.callbackUrl = request.getCallbackUrl();
+        }
+
+        private void start() {
+            startTime = System.currentTimeMillis();
+            status = JobStatusEnum.RUNNING;
+        }
+
+        private void finish(JobStatusEnum status, ExecuteCodeResponse result, String message) {
+            if (startTime == null) {
+                startTime = submitTime;
+            }
+            this.result = result;
+            this.message = message;
+            this.finishTime = System.currentTimeMillis();
+            this.status = status;
+            this.request = null;
+        }
+
+        private JobInfo toJobInfo() {
+            return JobInfo.builder()
+                    .jobId(jobId)
+                    .status(status.getValue())
+                    .message(message == null ? status.getText() : message)
+                    .result(result)
+                    .submitTime(submitTime)
+                    .startTime(startTime)
+                    .finishTime(finishTime)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+# C++ 编译包装，由 LanguageEnum.CPP 以 sh -c 脚本内容 sh 编译器 参数... 的方式执行
+# 编译器加上 -H 输出头文件轨迹，据此判断是否用上了 /cache/pch 下的预编译头：
+# 编译成功且用上时在标准输出打印 BuildCache.PCH_HIT，其余错误输出去掉轨迹行后照常输出，退出码与编译器一致
+err=$(mktemp) || exit 1
+compiler=$1
+shift
+"$compiler" -H "$@" 2>"$err"
+status=$?
+[ $status -eq 0 ] && grep -q '^! /cache/pch/' "$err" && echo 'codesandbox: pch hit'
+# 去掉的轨迹行：
+#   . /usr/include/...           -H 的头文件，. 的个数为嵌套深度；x 开头为不可用的 .gch
+#   ! /cache/pch/...gch 及其下一行  预编译头命中
+#   Multiple include guards may be useful for: 及其后的路径列表
+awk '/^Multiple include guards may be useful for:$/ {guards = 1; next} guards && /^\// {next} {guards = 0}
+/^! \// {pch = 1; next} pch && /^ [^ ]*$/ {pch = 0; next} {pch = 0}
+/^(\.+|x) \// {next} {print}' "$err" >&2
+rm -f "$err"
+exit $status
@@ -0,0 +1,360 @@
+#!/usr/bin/env python3
+# -*- coding: utf-8 -*-
+"""
+沙箱内的评测代理，每次提交只启动一次，依次运行全部用例
+
+输入（stdin）：4 字节大端用例数，之后每个用例为 4 字节大端长度 + 输入内容
+输出（stdout）：每个用例依次为 元信息 JSON、标准输出、错误输出 三帧，每帧为 4 字节大端长度 + 内容
+元信息：{"status": "ok|timeout|ole|mle|error", "exitCode": 0, "time": 毫秒, "memory": KB}
+
+用法：judge_agent.py [选项] -- 运行命令...
+  --time-limit    单个用例的墙钟时间上限，毫秒
+  --max-stdout    单个用例标准输出上限，字节
+  --max-stderr    单个用例错误输出上限，字节
+  --args          用例内容按空格拆分后追加为命令行参数，不写入标准输入
+  --merge-stderr  错误输出合并到标准输出
+  --newline       用例内容末尾补一个换行后写入标准输入
+  --fail-fast     用例失败后不再运行后续用例
+  --python-zygote 运行命令为 python3 脚本...：代理自身作为 zygote，预先导入常用标准库并把脚本编译为字节码一次，
+                  每个用例 fork 一个子进程执行，不再重复启动解释器
+  --run-as        uid:gid，用例进程在 exec 前切换到该用户，使其无法打开代理的 /proc/<pid>/fd/1 伪造输出帧；
+                  需要代理以 root 运行，否则拒绝运行（退出码 3），由服务端退化为逐个用例 exec
+"""
+import io
+import json
+import os
+import resource
+import signal
+import struct
+import subprocess
+import sys
+import threading
+import time
+import traceback
+import types
+import warnings
+
+MEMORY_EVENTS = "/sys/fs/cgroup/memory.events"
+
+# zygote 预先导入的标准库，fork 出的子进程直接复用
+PRELOAD_MODULES = ("bisect", "collections", "copy", "decimal", "fractions", "functools", "heapq", "itertools",
+                   "math", "operator", "random", "re", "statistics", "string")
+
+
+def read_exactly(stream, size):
+    data = b""
+    while len(data) < size:
+        chunk = stream.read(size - len(data))
+        if not chunk:
+            raise EOFError("unexpected end of input")
+        data += chunk
+    return data
+
+
+def write_frame(stream, payload):
+    stream.write(struct.pack(">I", len(payload)))
+    stream.write(payload)
+
+
+def oom_kill_count():
+    try:
+        with open(MEMORY_EVENTS) as f:
+            for line in f:
+                parts = line.split()
+                if len(parts) == 2 and parts[0] == "oom_kill":
+                    return int(parts[1])
+    except (IOError, OSError, ValueError):
+        pass
+    return 0
+
+
+class Capture(threading.Thread):
+    """读取子进程的一个输出流，超过上限时回调 on_exceed"""
+
+    def __init__(self, stream, limit, on_exceed):
+        threading.Thread.__init__(self)
+        self.daemon = True
+        self.stream = stream
+        self.limit = limit
+        self.on_exceed = on_exceed
+        self.data = bytearray()
+        self.exceeded = False
+
+    def run(self):
+        while True:
+            chunk = self.stream.read1(65536) if hasattr(self.stream, "read1") else self.stream.read(65536)
+            if not chunk:
+                break
+            if len(self.data) + len(chunk) > self.limit:
+                self.data.extend(chunk[:self.limit - len(self.data)])
+                self.exceeded = True
+                self.on_exceed()
+                break
+            self.data.extend(chunk)
+        self.stream.close()
+
+
+def set_limits(time_limit_ms):
+    cpu_seconds = time_limit_ms // 1000 + 1
+    resource.setrlimit(resource.RLIMIT_CPU, (cpu_seconds, cpu_seconds + 1))
+    resource.setrlimit(resource.RLIMIT_CORE, (0, 0))
+
+
+def parse_run_as(value):
+    uid, _, gid = value.partition(":")
+    return int(uid), int(gid or uid)
+
+
+def drop_privileges(run_as):
+    """在子进程中切换到运行用例的用户，先清空附加组再切换 gid、uid，顺序不能颠倒"""
+    if run_as is None:
+        return
+    uid, gid = run_as
+    os.setgroups([])
+    os.setgid(gid)
+    os.setuid(uid)
+
+
+def prepare_child(options):
+    set_limits(options["time_limit"])
+    drop_privileges(options["run_as"])
+
+
+class Zygote(object):
+    """预先导入标准库并编译脚本，每个用例 fork 一个子进程执行字节码"""
+
+    def __init__(self, script):
+        warnings.filterwarnings("ignore", category=DeprecationWarning)
+        for name in PRELOAD_MODULES:
+            try:
+                __import__(name)
+            except ImportError:
+                pass
+        self.script = script
+        self.code = None
+        self.error = None
+        try:
+            with open(script, "rb") as f:
+                self.code = compile(f.read(), script, "exec")
+        except (SyntaxError, ValueError) as e:
+            self.error = "".join(traceback.format_exception_only(type(e), e))
+
+    def spawn(self, argv, options):
+        """fork 子进程，返回与 subprocess.Popen 相同用法的 pid 和管道"""
+        in_r, in_w = os.pipe()
+        out_r, out_w = os.pipe()
+        merge_stderr = options["merge_stderr"]
+        err_r, err_w = (None, None) if merge_stderr else os.pipe()
+        pid = os.fork()
+        if pid == 0:
+            try:
+                os.setsid()
+                os.dup2(in_r, 0)
+                os.dup2(out_w, 1)
+                os.dup2(out_w if merge_stderr else err_w, 2)
+                for fd in (in_r, in_w, out_r, out_w, err_r, err_w):
+                    if fd is not None and fd > 2:
+                        os.close(fd)
+                prepare_child(options)
+                os._exit(self.execute(argv))
+            except BaseException:
+                os._exit(120)
+        os.close(in_r)
+        os.close(out_w)
+        if err_w is not None:
+            os.close(err_w)
+        return ForkedProcess(pid, os.fdopen(in_w, "wb"), os.fdopen(out_r, "rb"),
+                             os.fdopen(err_r, "rb") if err_r is not None else None)
+
+    def execute(self, argv):
+        """在子进程中按 python3 脚本 的方式执行，返回退出码"""
+        sys.stdin = io.TextIOWrapper(io.BufferedReader(io.FileIO(0, "r", closefd=False)), encoding="utf-8")
+        sys.stdout = io.TextIOWrapper(io.BufferedWriter(io.FileIO(1, "w", closefd=False)), encoding="utf-8")
+        sys.stderr = io.TextIOWrapper(io.BufferedWriter(io.FileIO(2, "w", closefd=False)), encoding="utf-8",
+                                      line_buffering=True)
+        sys.argv = list(argv)
+        exit_code = 0
+        if self.code is None:
+            sys.stderr.write(self.error)
+            exit_code = 1
+        else:
+            main = types.ModuleType("__main__")
+            main.__file__ = self.script
+            sys.modules["__main__"] = main
+            try:
+                exec(self.code, main.__dict__)
+            except SystemExit as e:
+                if e.code is None:
+                    exit_code = 0
+                elif isinstance(e.code, int):
+                    exit_code = e.code & 0xff
+                else:
+                    sys.stderr.write(str(e.code) + "\n")
+                    exit_code = 1
+            except BaseException:
+                # 去掉代理自身的栈帧，与 python3 直接运行时的输出一致
+                error_type, error, tb = sys.exc_info()
+                traceback.print_exception(error_type, error, tb.tb_next)
+                exit_code = 1
+        for stream in (sys.stdout, sys.stderr):
+            try:
+                stream.flush()
+            except (IOError, OSError, ValueError):
+                pass
+        return exit_code
+
+
+class ForkedProcess(object):
+    def __init__(self, pid, stdin, stdout, stderr):
+        self.pid = pid
+        self.stdin = stdin
+        self.stdout = stdout
+        self.stderr = stderr
+        self.returncode = None
+
+
+def run_case(cmd, data, options, zygote=None):
+    argv = list(cmd)
+    stdin_data = data
+    if options["args"]:
+        text = data.decode("utf-8")
+        if text.strip():
+            parts = text.split(" ")
+            while parts and parts[-1] == "":
+                parts.pop()
+            argv.extend(parts)
+        stdin_data = b""
+    elif options["newline"]:
+        stdin_data = data + b"\n"
+
+    oom_before = oom_kill_count()
+    if zygote is not None:
+        # 子进程看到的 sys.argv 与 python3 脚本 参数... 一致
+        proc = zygote.spawn(argv[1:], options)
+    else:
+        proc = subprocess.Popen(argv, stdin=subprocess.PIPE, stdout=subprocess.PIPE,
+                                stderr=subprocess.STDOUT if options["merge_stderr"] else subprocess.PIPE,
+                                preexec_fn=lambda: prepare_child(options), start_new_session=True)
+    killed = {"reason": None}
+    lock = threading.Lock()
+
+    def kill(reason):
+        with lock:
+            if killed["reason"] is None:
+                killed["reason"] = reason
+                try:
+                    os.killpg(proc.pid, signal.SIGKILL)
+                except OSError:
+                    pass
+
+    stdout = Capture(proc.stdout, options["max_stdout"], lambda: kill("ole"))
+    stdout.start()
+    stderr = None
+    if not options["merge_stderr"]:
+        stderr = Capture(proc.stderr, options["max_stderr"], lambda: kill("ole"))
+        stderr.start()
+
+    def feed():
+        try:
+            proc.stdin.write(stdin_data)
+        except (IOError, OSError):
+            pass
+        finally:
+            try:
+                proc.stdin.close()
+            except (IOError, OSError):
+                pass
+
+    feeder = threading.Thread(target=feed)
+    feeder.daemon = True
+    feeder.start()
+    timer = threading.Timer(options["time_limit"] / 1000.0, lambda: kill("timeout"))
+    timer.start()
+
+    _, wait_status, usage = os.wait4(proc.pid, 0)
+    proc.returncode = 0
+    timer.cancel()
+    # 进程组中可能还有残留的子进程
+    try:
+        os.killpg(proc.pid, signal.SIGKILL)
+    except OSError:
+        pass
+    stdout.join()
+    if stderr is not None:
+        stderr.join()
+
+    if os.WIFEXITED(wait_status):
+        exit_code = os.WEXITSTATUS(wait_status)
+    else:
+        exit_code = 128 + os.WTERMSIG(wait_status)
+    if killed["reason"] is not None:
+        status = killed["reason"]
+    elif oom_kill_count() > oom_before:
+        status = "mle"
+    elif os.WIFSIGNALED(wait_status) and os.WTERMSIG(wait_status) == signal.SIGXCPU:
+        status = "timeout"
+    else:
+        status = "ok"
+    meta = {
+        "status": status,
+        "exitCode": exit_code,
+        "time": int((usage.ru_utime + usage.ru_stime) * 1000),
+        "memory": usage.ru_maxrss,
+    }
+    return meta, bytes(stdout.data), bytes(stderr.data) if stderr is not None else b""
+
+
+def main():
+    argv = sys.argv[1:]
+    if "--" not in argv:
+        sys.stderr.write("usage: judge_agent.py [options] -- cmd...\n")
+        return 2
+    split = argv.index("--")
+    flags, cmd = argv[:split], argv[split + 1:]
+    options = {"time_limit": 3000, "max_stdout": 1 << 20, "max_stderr": 64 << 10,
+               "args": False, "merge_stderr": False, "newline": False, "fail_fast": False, "python_zygote": False,
+               "run_as": None}
+    i = 0
+    while i < len(flags):
+        flag = flags[i]
+        if flag in ("--time-limit", "--max-stdout", "--max-stderr"):
+            options[flag[2:].replace("-", "_")] = int(flags[i + 1])
+            i += 2
+            continue
+        if flag == "--run-as":
+            options["run_as"] = parse_run_as(flags[i + 1])
+            i += 2
+            continue
+        options[flag[2:].replace("-", "_")] = True
+        i += 1
+
+    if options["run_as"] is not None and os.geteuid() != 0:
+        # 用例与代理同一用户时可以打开代理的标准输出，不能用代理运行
+        sys.stderr.write("judge_agent.py: --run-as requires root, running as uid %d\n" % os.geteuid())
+        return 3
+
+    stdin = sys.stdin.buffer
+    stdout = sys.stdout.buffer
+    count = struct.unpack(">I", read_exactly(stdin, 4))[0]
+    inputs = []
+    for _ in range(count):
+        size = struct.unpack(">I", read_exactly(stdin, 4))[0]
+        inputs.append(read_exactly(stdin, size))
+
+    zygote = Zygote(cmd[-1]) if options["python_zygote"] else None
+    for data in inputs:
+        try:
+            meta, out, err = run_case(cmd, data, options, zygote)
+        except (IOError, OSError) as e:
+            meta, out, err = {"status": "error", "exitCode": -1, "time": 0, "memory": 0}, b"", str(e).encode("utf-8")
+        write_frame(stdout, json.dumps(meta).encode("utf-8"))
+        write_frame(stdout, out)
+        write_frame(stdout, err)
+        stdout.flush()
+        if options["fail_fast"] and (meta["status"] != "ok" or meta["exitCode"] != 0):
+            break
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
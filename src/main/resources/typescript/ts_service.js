@@ -0,0 +1,81 @@
+/*
+ * 常驻的 TypeScript 转译服务，由代码沙箱启动后一直复用，避免每次提交重新加载编译器
+ *
+ * 输入（stdin）：每个请求为 4 字节大端长度 + JSON {"fileName": "main.ts", "source": "..."}
+ * 输出（stdout）：每个响应为 4 字节大端长度 + JSON {"ok": true, "code": "...", "diagnostics": "..."}
+ * 优先使用 typescript 的 transpileModule，未安装时使用 esbuild，模块目录通过 NODE_PATH 指定
+ */
+"use strict";
+
+function tryRequire(name) {
+    try {
+        return require(name);
+    } catch (e) {
+        return null;
+    }
+}
+
+const ts = tryRequire("typescript");
+const esbuild = ts ? null : tryRequire("esbuild");
+if (!ts && !esbuild) {
+    process.stderr.write("typescript or esbuild not found\n");
+    process.exit(3);
+}
+
+function transpile(fileName, source) {
+    if (ts) {
+        const output = ts.transpileModule(source, {
+            fileName: fileName,
+            reportDiagnostics: true,
+            compilerOptions: {
+                target: ts.ScriptTarget.ES2020,
+                module: ts.ModuleKind.CommonJS,
+                esModuleInterop: true
+            }
+        });
+        const errors = (output.diagnostics || []).filter(d => d.category === ts.DiagnosticCategory.Error);
+        if (errors.length > 0) {
+            const host = {
+                getCanonicalFileName: f => f,
+                getCurrentDirectory: () => "",
+                getNewLine: () => "\n"
+            };
+            return {ok: false, code: "", diagnostics: ts.formatDiagnostics(errors, host)};
+        }
+        return {ok: true, code: output.outputText, diagnostics: ""};
+    }
+    try {
+        const output = esbuild.transformSync(source, {loader: "ts", format: "cjs", target: "es2020", sourcefile: fileName});
+        return {ok: true, code: output.code, diagnostics: ""};
+    } catch (e) {
+        return {ok: false, code: "", diagnostics: String(e.message)};
+    }
+}
+
+function writeFrame(payload) {
+    const body = Buffer.from(JSON.stringify(payload), "utf8");
+    const header = Buffer.alloc(4);
+    header.writeUInt32BE(body.length, 0);
+    process.stdout.write(Buffer.concat([header, body]));
+}
+
+let pending = Buffer.alloc(0);
+process.stdin.on("data", chunk => {
+    pending = Buffer.concat([pending, chunk]);
+    while (pending.length >= 4) {
+        const size = pending.readUInt32BE(0);
+        if (pending.length < 4 + size) {
+            break;
+        }
+        const request = JSON.parse(pending.slice(4, 4 + size).toString("utf8"));
+        pending = pending.slice(4 + size);
+        let response;
+        try {
+            response = transpile(request.fileName, request.source);
+        } catch (e) {
+            response = {ok: false, code: "", diagnostics: String(e && e.stack || e)};
+        }
+        writeFrame(response);
+    }
+});
+process.stdin.on("end", () => process.exit(0));
@@ -0,0 +1,38 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.agent.JavaRunner;
+import com.project.codesandbox.agent.JavacWorker;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按类路径扫描运行器和编译进程的类文件，内部类不能遗漏，也不能带上其他类
+ */
+class ClassFilesTest {
+
+    @Test
+    void javaRunnerIncludesEveryNestedClass() throws IOException {
+        Map<String, byte[]> classFiles = ClassFiles.read(JavaRunner.class);
+        for (Class<?> nested : JavaRunner.class.getDeclaredClasses()) {
+            assertTrue(classFiles.containsKey(nested.getName().replace('.', '/') + ".class"), nested.getName());
+        }
+        assertTrue(classFiles.containsKey("com/project/codesandbox/agent/JavaRunner$RunnerPolicy.class"));
+        assertEquals(JavaRunner.class.getDeclaredClasses().length + 1, classFiles.size());
+    }
+
+    @Test
+    void javacWorkerDoesNotPickUpOtherClasses() throws IOException {
+        Map<String, byte[]> classFiles = ClassFiles.read(JavacWorker.class);
+        assertTrue(classFiles.containsKey("com/project/codesandbox/agent/JavacWorker.class"));
+        for (String path : classFiles.keySet()) {
+            assertFalse(path.contains("JavaRunner"), path);
+            assertTrue(classFiles.get(path).length > 0, path);
+        }
+    }
+}
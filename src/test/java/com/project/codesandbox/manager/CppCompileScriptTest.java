@@ -0,0 +1,114 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.LanguageEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * C++ 编译包装脚本：用假的编译器输出 -H 头文件轨迹，检查预编译头命中标记、轨迹行过滤和退出码
+ */
+class CppCompileScriptTest {
+
+    private static final String PCH_TRACE = "! /cache/pch/bits/stdc++.h.gch\n"
+            + " /cache/pch/bits/stdc++.h\n";
+
+    private static final String HEADER_TRACE = ". /usr/include/stdio.h\n"
+            + ".. /usr/include/features.h\n"
+            + "x /cache/pch/bits/stdc++.h.gch\n"
+            + "Multiple include guards may be useful for:\n"
+            + "/usr/include/a.h\n"
+            + "/usr/include/b.h\n";
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void requireShell() {
+        assumeTrue(new File("/bin/sh").canExecute(), "需要 /bin/sh 与 awk");
+    }
+
+    @Test
+    void pchHitIsReportedAndTraceIsRemoved() throws Exception {
+        Outcome outcome = compile(PCH_TRACE + HEADER_TRACE + "main.cpp:3:5: warning: unused variable 'x'\n", 0);
+        assertEquals(0, outcome.exitCode);
+        assertEquals(BuildCache.PCH_HIT + "\n", outcome.stdout);
+        assertEquals("main.cpp:3:5: warning: unused variable 'x'\n", outcome.stderr);
+    }
+
+    @Test
+    void successWithoutPchIsNotAHit() throws Exception {
+        Outcome outcome = compile(HEADER_TRACE, 0);
+        assertEquals(0, outcome.exitCode);
+        assertFalse(outcome.stdout.contains(BuildCache.PCH_HIT));
+        assertEquals("", outcome.stderr);
+    }
+
+    @Test
+    void failureKeepsDiagnosticsAndExitCode() throws Exception {
+        Outcome outcome = compile(PCH_TRACE + "main.cpp:1:1: error: 'foo' does not name a type\n", 1);
+        assertEquals(1, outcome.exitCode);
+        assertFalse(outcome.stdout.contains(BuildCache.PCH_HIT));
+        assertTrue(outcome.stderr.contains("error: 'foo' does not name a type"));
+        assertFalse(outcome.stderr.contains("/cache/pch"));
+    }
+
+    /**
+     * 用 LanguageEnum.CPP 的编译命令运行脚本，编译器换成输出给定错误输出和退出码的假程序，其余参数不变
+     */
+    private Outcome compile(String fakeStderr, int fakeExitCode) throws IOException, InterruptedException {
+        Path stderrFile = dir.resolve("stderr.txt");
+        Files.write(stderrFile, fakeStderr.getBytes(StandardCharsets.UTF_8));
+        Path compiler = dir.resolve("fake-g++");
+        Files.write(compiler, ("#!/bin/sh\n"
+                + "[ \"$1\" = -H ] || exit 99\n"
+                + "cat '" + stderrFile + "' >&2\n"
+                + "exit " + fakeExitCode + "\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(compiler.toFile().setExecutable(true));
+
+        List<String> cmd = new ArrayList<>(Arrays.asList(LanguageEnum.CPP.getCompileCmd()));
+        cmd.set(cmd.indexOf("g++"), compiler.toString());
+        Process process = new ProcessBuilder(cmd).directory(dir.toFile()).start();
+        process.getOutputStream().close();
+        Outcome outcome = new Outcome();
+        outcome.stdout = read(process.getInputStream());
+        outcome.stderr = read(process.getErrorStream());
+        outcome.exitCode = process.waitFor();
+        return outcome;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class Outcome {
+
+        private int exitCode;
+
+        private String stdout;
+
+        private String stderr;
+    }
+}
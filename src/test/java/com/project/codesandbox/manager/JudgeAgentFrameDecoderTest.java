@@ -0,0 +1,141 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.model.ExecuteResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 评测代理输出的帧解码：每个用例依次为 元信息、stdout、stderr 三帧，每帧为 4 字节大端长度 + 内容
+ */
+class JudgeAgentFrameDecoderTest {
+
+    @Test
+    void decodesCompleteCase() throws IOException {
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(1 << 20);
+        List<ExecuteResult> results = decoder.feed(encodeCase("{\"status\":\"ok\",\"exitCode\":0,\"time\":12,\"memory\":3456}", "42\n", ""));
+        assertEquals(1, results.size());
+        ExecuteResult result = results.get(0);
+        assertTrue(result.isSuccess());
+        assertEquals("42\n", result.getOutput());
+        assertEquals("", result.getErrorMessage());
+        assertEquals(12L, result.getTime());
+        assertEquals(3456L, result.getMemory());
+        assertNull(result.getExecuteStatus());
+    }
+
+    @Test
+    void nonZeroExitCodeIsFailure() throws IOException {
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(1 << 20);
+        ExecuteResult result = decoder.feed(encodeCase("{\"status\":\"ok\",\"exitCode\":1}", "", "Traceback")).get(0);
+        assertFalse(result.isSuccess());
+        assertEquals("Traceback", result.getErrorMessage());
+    }
+
+    @Test
+    void statusesMapToExecuteStatus() throws IOException {
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(1 << 20);
+        List<ExecuteResult> results = decoder.feed(concat(
+                encodeCase("{\"status\":\"timeout\",\"exitCode\":-9}", "", ""),
+                encodeCase("{\"status\":\"ole\",\"exitCode\":-9}", "", ""),
+                encodeCase("{\"status\":\"mle\",\"exitCode\":-9}", "", "")));
+        assertEquals(3, results.size());
+        assertEquals(ExecuteStatusEnum.TIMEOUT.getText(), results.get(0).getExecuteStatus());
+        assertEquals(ExecuteStatusEnum.OUTPUT_LIMIT_EXCEEDED.getText(), results.get(1).getExecuteStatus());
+        assertEquals(ExecuteStatusEnum.MEMORY_LIMIT_EXCEEDED.getText(), results.get(2).getExecuteStatus());
+        for (ExecuteResult result : results) {
+            assertFalse(result.isSuccess());
+        }
+    }
+
+    @Test
+    void truncatedFramesWaitForRemainingBytes() throws IOException {
+        byte[] data = concat(
+                encodeCase("{\"status\":\"ok\",\"exitCode\":0}", "first", ""),
+                encodeCase("{\"status\":\"ok\",\"exitCode\":0}", "第二个", "warn"));
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(1 << 20);
+        List<ExecuteResult> results = new ArrayList<>();
+        // 逐字节送入，长度前缀、帧内容和多字节字符都会被截断
+        for (byte b : data) {
+            results.addAll(decoder.feed(new byte[]{b}));
+        }
+        assertEquals(2, results.size());
+        assertEquals("first", results.get(0).getOutput());
+        assertEquals("第二个", results.get(1).getOutput());
+        assertEquals("warn", results.get(1).getErrorMessage());
+    }
+
+    @Test
+    void incompleteCaseProducesNoResult() throws IOException {
+        byte[] data = encodeCase("{\"status\":\"ok\",\"exitCode\":0}", "out", "err");
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(1 << 20);
+        // 缺少最后一个字节时 stderr 帧不完整
+        assertTrue(decoder.feed(Arrays.copyOf(data, data.length - 1)).isEmpty());
+        List<ExecuteResult> results = decoder.feed(new byte[]{data[data.length - 1]});
+        assertEquals(1, results.size());
+        assertEquals("err", results.get(0).getErrorMessage());
+    }
+
+    @Test
+    void largeOutputSpanningManyChunksIsDecoded() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            large.append(i % 10);
+        }
+        byte[] data = concat(
+                encodeCase("{\"status\":\"ok\",\"exitCode\":0}", "small", ""),
+                encodeCase("{\"status\":\"ok\",\"exitCode\":0}", large.toString(), ""),
+                encodeCase("{\"status\":\"ok\",\"exitCode\":0}", "tail", ""));
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(1 << 20);
+        List<ExecuteResult> results = new ArrayList<>();
+        // 块大小与帧边界错开，覆盖缓冲区前移和扩容
+        for (int offset = 0; offset < data.length; offset += 1000) {
+            results.addAll(decoder.feed(data, offset, Math.min(1000, data.length - offset)));
+        }
+        assertEquals(3, results.size());
+        assertEquals("small", results.get(0).getOutput());
+        assertEquals(large.toString(), results.get(1).getOutput());
+        assertEquals("tail", results.get(2).getOutput());
+    }
+
+    @Test
+    void outputOverLimitIsRejected() throws IOException {
+        byte[] data = encodeCase("{\"status\":\"ok\",\"exitCode\":0}", "0123456789", "");
+        JudgeAgent.FrameDecoder decoder = new JudgeAgent.FrameDecoder(data.length - 1);
+        assertThrows(IOException.class, () -> decoder.feed(data));
+        assertTrue(decoder.isExceeded());
+    }
+
+    private static byte[] encodeCase(String meta, String stdout, String stderr) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String frame : new String[]{meta, stdout, stderr}) {
+            byte[] payload = frame.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.config.CheckProperties;
+import com.project.codesandbox.enums.ExecuteStatusEnum;
+import com.project.codesandbox.model.CheckConfig;
+import com.project.codesandbox.model.ExecuteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 比对会话：非 special 方式的判定、误差配置和是否跳过剩余用例，不需要 Docker
+ */
+class OutputCheckerTest {
+
+    private OutputChecker outputChecker;
+
+    private CheckProperties checkProperties;
+
+    @BeforeEach
+    void setUp() {
+        outputChecker = new OutputChecker();
+        checkProperties = new CheckProperties();
+        ReflectionTestUtils.setField(outputChecker, "checkProperties", checkProperties);
+    }
+
+    @Test
+    void sessionWithoutExpectedOutputDoesNotCheck() throws InterruptedException {
+        try (OutputChecker.Session session = outputChecker.open(null)) {
+            assertFalse(session.isEnabled());
+            ExecuteResult result = success("anything");
+            assertSame(result, session.apply(0, "", result));
+            assertTrue(result.isSuccess());
+            assertNull(session.comparator(0));
+        }
+    }
+
+    @Test
+    void trailingWhitespaceIsAccepted() throws InterruptedException {
+        try (OutputChecker.Session session = outputChecker.open(check("exact", "1 2\n3"))) {
+            ExecuteResult result = session.apply(0, "", success("1 2\r\n3\r\n\n"));
+            assertTrue(result.isSuccess());
+            assertNull(result.getExecuteStatus());
+        }
+    }
+
+    @Test
+    void wrongAnswerIsMarked() throws InterruptedException {
+        try (OutputChecker.Session session = outputChecker.open(check("whitespace", "1 2 3"))) {
+            ExecuteResult result = session.apply(0, "", success("1 2 4"));
+            assertFalse(result.isSuccess());
+            assertEquals(ExecuteStatusEnum.WRONG_ANSWER.getText(), result.getExecuteStatus());
+            assertEquals(ExecuteStatusEnum.WRONG_ANSWER.getText(), result.getErrorMessage());
+        }
+    }
+
+    @Test
+    void failedRunIsNotCompared() throws InterruptedException {
+        try (OutputChecker.Session session = outputChecker.open(check("exact", "ok"))) {
+            ExecuteResult result = ExecuteResult.builder()
+                    .success(false)
+                    .executeStatus(ExecuteStatusEnum.TIMEOUT.getText())
+                    .build();
+            session.apply(0, "", result);
+            assertEquals(ExecuteStatusEnum.TIMEOUT.getText(), result.getExecuteStatus());
+        }
+    }
+
+    @Test
+    void floatToleranceComesFromCheckOrDefault() throws InterruptedException {
+        checkProperties.setDefaultFloatTolerance(1e-6);
+        try (OutputChecker.Session session = outputChecker.open(check("float", "0.5"))) {
+            assertTrue(session.apply(0, "", success("0.5000009")).isSuccess());
+            assertFalse(session.apply(0, "", success("0.50001")).isSuccess());
+        }
+        CheckConfig loose = check("float", "0.5");
+        loose.setFloatTolerance(1e-3);
+        try (OutputChecker.Session session = outputChecker.open(loose)) {
+            assertTrue(session.apply(0, "", success("0.5009")).isSuccess());
+            assertFalse(session.apply(0, "", success("0.502")).isSuccess());
+        }
+    }
+
+    @Test
+    void expectedOutputIsSelectedByCaseIndex() throws InterruptedException {
+        try (OutputChecker.Session session = outputChecker.open(check("exact", "a", "b"))) {
+            assertTrue(session.apply(1, "", success("b")).isSuccess());
+            assertFalse(session.apply(1, "", success("a")).isSuccess());
+        }
+    }
+
+    @Test
+    void mappedInputListIsAccepted() throws InterruptedException {
+        List<String> inputs = new MappedCaseList(Arrays.asList(
+                ByteBuffer.wrap("1".getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap("2".getBytes(StandardCharsets.UTF_8))));
+        try (OutputChecker.Session session = outputChecker.open(check("exact", "x", "y"))) {
+            assertTrue(session.apply(1, inputs, success("y")).isSuccess());
+            assertFalse(session.apply(0, inputs, success("y")).isSuccess());
+        }
+    }
+
+    @Test
+    void failFastControlsStoppingAndStreamingComparator() throws InterruptedException {
+        ExecuteResult wrongAnswer = ExecuteResult.builder()
+                .success(false)
+                .executeStatus(ExecuteStatusEnum.WRONG_ANSWER.getText())
+                .build();
+        ExecuteResult runtimeError = ExecuteResult.builder()
+                .success(false)
+                .executeStatus(ExecuteStatusEnum.RUNTIME_ERROR.getText())
+                .build();
+        try (OutputChecker.Session session = outputChecker.open(check("exact", "ok"))) {
+            assertTrue(session.isFailFast());
+            assertTrue(session.shouldStop(wrongAnswer));
+            assertFalse(session.shouldStop(success("ok")));
+            assertNotNull(session.comparator(0));
+        }
+        CheckConfig keepGoing = check("exact", "ok");
+        keepGoing.setFailFast(false);
+        try (OutputChecker.Session session = outputChecker.open(keepGoing)) {
+            assertFalse(session.shouldStop(wrongAnswer));
+            assertTrue(session.shouldStop(runtimeError));
+            // 不跳过剩余用例时提前结束程序没有意义
+            assertNull(session.comparator(0));
+        }
+    }
+
+    private static CheckConfig check(String mode, String... expected) {
+        return CheckConfig.builder()
+                .mode(mode)
+                .expectedOutputList(expected.length == 1 ? Collections.singletonList(expected[0]) : Arrays.asList(expected))
+                .build();
+    }
+
+    private static ExecuteResult success(String output) {
+        return ExecuteResult.builder().success(true).output(output).build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.project.codesandbox.manager;
+
+import com.project.codesandbox.enums.CheckModeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流式输出比对：三种比对方式的空白处理、浮点误差和分段写入
+ */
+class OutputComparatorTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    void exactIgnoresCarriageReturnsAndSurroundingWhitespace() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.EXACT, "1 2\n3\n", "\n  1 2\r\n3\r\n\n  ", TOLERANCE));
+    }
+
+    @Test
+    void exactRejectsWhitespaceInsideOutput() {
+        assertFalse(OutputComparator.matches(CheckModeEnum.EXACT, "1 2", "1  2", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.EXACT, "1 2", "1 2 3", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.EXACT, "1 2", "1", TOLERANCE));
+    }
+
+    @Test
+    void exactRejectsTextAfterTrailingWhitespace() {
+        OutputComparator comparator = new OutputComparator(CheckModeEnum.EXACT, "ab", TOLERANCE);
+        assertTrue(comparator.write(bytes("ab \n")));
+        assertFalse(comparator.write(bytes("c")));
+        assertFalse(comparator.finish());
+    }
+
+    @Test
+    void whitespaceModeComparesTokens() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.IGNORE_WHITESPACE, "1 2\n3", "1\t\t2   3 \n\n", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.IGNORE_WHITESPACE, "1 2 3", "1 2", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.IGNORE_WHITESPACE, "1 2", "1 2 3", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.IGNORE_WHITESPACE, "1.0", "1", TOLERANCE));
+    }
+
+    @Test
+    void floatModeAcceptsAbsoluteTolerance() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.FLOAT, "0.1 2", "0.1000005 2.0000009", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.FLOAT, "0.1", "0.100002", TOLERANCE));
+    }
+
+    @Test
+    void floatModeAcceptsRelativeTolerance() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.FLOAT, "1000000", "1000000.5", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.FLOAT, "1000000", "1000002", TOLERANCE));
+    }
+
+    @Test
+    void floatModeComparesNonNumericTokensExactly() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.FLOAT, "YES 0.5", "YES 0.5000001", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.FLOAT, "YES 0.5", "yes 0.5", TOLERANCE));
+    }
+
+    @Test
+    void emptyExpectedOutputMatchesOnlyWhitespace() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.EXACT, "", " \n", TOLERANCE));
+        assertTrue(OutputComparator.matches(CheckModeEnum.IGNORE_WHITESPACE, null, "", TOLERANCE));
+        assertFalse(OutputComparator.matches(CheckModeEnum.IGNORE_WHITESPACE, "", "0", TOLERANCE));
+    }
+
+    @Test
+    void tokensSplitAcrossWritesAreJoined() {
+        OutputComparator comparator = new OutputComparator(CheckModeEnum.FLOAT, "3.14159 42", TOLERANCE);
+        for (String chunk : new String[]{"3.1", "41", "59", " 4", "2\n"}) {
+            assertTrue(comparator.write(bytes(chunk)));
+        }
+        assertTrue(comparator.finish());
+    }
+
+    @Test
+    void mismatchIsReportedBeforeOutputEnds() {
+        OutputComparator exact = new OutputComparator(CheckModeEnum.EXACT, "hello world", TOLERANCE);
+        assertTrue(exact.write(bytes("hello ")));
+        assertFalse(exact.write(bytes("there")));
+
+        OutputComparator tokens = new OutputComparator(CheckModeEnum.IGNORE_WHITESPACE, "1 2 3", TOLERANCE);
+        assertTrue(tokens.write(bytes("1 ")));
+        assertFalse(tokens.write(bytes("5 ")));
+    }
+
+    @Test
+    void exactHandlesMultiByteCharacters() {
+        assertTrue(OutputComparator.matches(CheckModeEnum.EXACT, "你好 世界", "你好 世界\n", TOLERANCE));
+        byte[] output = bytes("你好 世界");
+        OutputComparator comparator = new OutputComparator(CheckModeEnum.EXACT, "你好 世界", TOLERANCE);
+        // 按字节拆开写入，多字节字符被截断时不能误判
+        for (int i = 0; i < output.length; i++) {
+            assertTrue(comparator.write(output, i, 1));
+        }
+        assertTrue(comparator.finish());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}